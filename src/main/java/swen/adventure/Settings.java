@@ -11,4 +11,26 @@ public class Settings {
     public static final int EventsTillServerBackup = 4096;
     public static final boolean IntelGraphicsWorkaround = !Boolean.getBoolean("swen.adventure.NoIntelGraphics");
     public static final boolean DeferredShading = Boolean.getBoolean("swen.adventure.DeferredShading");
+    public static final boolean NonBlockingServer = Boolean.getBoolean("swen.adventure.NonBlockingServer");
+    public static final boolean LoopbackServer = Boolean.getBoolean("swen.adventure.LoopbackServer");
+    public static final int LoopbackLatencyMillis = Integer.getInteger("swen.adventure.LoopbackLatencyMillis", 0);
+    public static final int LoopbackJitterMillis = Integer.getInteger("swen.adventure.LoopbackJitterMillis", 0);
+    public static final float LoopbackLoss = Float.parseFloat(System.getProperty("swen.adventure.LoopbackLoss", "0"));
+    public static final boolean BinaryEventCodec = !Boolean.getBoolean("swen.adventure.TextEventCodec");
+    public static final boolean FullSnapshots = Boolean.getBoolean("swen.adventure.FullSnapshots");
+    public static final boolean CompressSnapshots = Boolean.getBoolean("swen.adventure.CompressSnapshots");
+    public static final int ServerShards = Integer.getInteger("swen.adventure.ServerShards", 1);
+    public static final int ServerIOThreads = Integer.getInteger("swen.adventure.ServerIOThreads", 2);
+    public static final int ServerQueueHighWaterMark = Integer.getInteger("swen.adventure.ServerQueueHighWaterMark", 1024 * 1024);
+    public static final int ServerTickRate = Integer.getInteger("swen.adventure.ServerTickRate", 30);
+    public static final int ServerTickReportSeconds = Integer.getInteger("swen.adventure.ServerTickReportSeconds", 10);
+    public static final float ServerInterestRadius = Float.parseFloat(System.getProperty("swen.adventure.ServerInterestRadius", "600"));
+    public static final boolean DatagramMovement = Boolean.getBoolean("swen.adventure.DatagramMovement");
+    public static final boolean DropSlowClientUpdates = Boolean.getBoolean("swen.adventure.DropSlowClientUpdates");
+    public static final boolean ServerLogEvents = !Boolean.getBoolean("swen.adventure.QuietServer");
+    public static final int ServerMetricsPort = Integer.getInteger("swen.adventure.ServerMetricsPort", 0);
+    public static final boolean DeferredPlayerMoves = !Boolean.getBoolean("swen.adventure.ImmediatePlayerMoves");
+    public static final int EventCascadeLimit = Integer.getInteger("swen.adventure.EventCascadeLimit", 16);
+    public static final boolean ProfileEvents = Boolean.getBoolean("swen.adventure.ProfileEvents");
+    public static final int RemotePlayerDelayMillis = Integer.getInteger("swen.adventure.RemotePlayerDelayMillis", 100);
 }
\ No newline at end of file
@@ -3,7 +3,6 @@
  /* Joseph Bennett (bennetjose) (300319773) */ 
  package swen.adventure.engine;
 
-import java.lang.reflect.Field;
 import java.util.Map;
 
 /**
@@ -27,30 +26,19 @@ public interface Action<E, T, L> {
      * Takes a name for an action (e.g. OpenDoor) and tries to find the action corresponding to the name.
      * Firstly, it looks for a field on the listeningObject of the name action{name}.
      * Then, it looks for a concrete class implementing Action called {name}.
+     * Both are looked up once and cached, see {@link EventBindings}.
      * @param name A name in UpperCamelCase for the action (minus the action- prefix).
      * @return The action.
      * @throws RuntimeException if the action could not be found.
      */
     static <L> Action<?, ?, L> actionWithName(String name, L listeningObject) {
-        String fieldName = "action" + name;
-
-        try {
-            Field field = listeningObject.getClass().getField(fieldName);
-            return (Action<?, ?, L>) field.get(listeningObject);
-        } catch (IllegalAccessException e) {
-            System.err.println("Error accessing action with name " + name + ": " + e);
-        } catch (NoSuchFieldException ignored) {
-
+        Action<?, ?, L> action = EventBindings.forClass(listeningObject.getClass()).action(listeningObject, name);
+        if (action == null) {
+            action = EventBindings.newAction(name);
         }
-
-        try {
-            Class<? extends Action<?, ?, L>> actionClass = (Class<? extends Action<?, ?, L>>) Class.forName(name);
-            return actionClass.newInstance();
-        } catch (InstantiationException | IllegalAccessException e) {
-            System.err.println("Error instantiating Action class for name " + name + ": ");
-        } catch (ClassNotFoundException ignored) {
+        if (action == null) {
+            throw new RuntimeException("Could not find an action with name " + name + " on object " + listeningObject);
         }
-
-        throw new RuntimeException("Could not find an action with name " + name + " on object " + listeningObject);
+        return action;
     }
 }
\ No newline at end of file
@@ -5,7 +5,7 @@
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -40,6 +40,18 @@ public class Event<E, T> {
 
     private static boolean ShowEventDebugLog = false;
 
+    /**
+     * How an event's actions are performed when it is triggered.
+     */
+    public enum Dispatch {
+        /** The actions are performed by the trigger. */
+        Immediate,
+        /** The trigger is queued, and the actions performed when the world's event queue is flushed. */
+        Deferred,
+        /** As Deferred, but a trigger replaces the last queued trigger of the event by the same object. */
+        Coalesced
+    }
+
     /**
      * ActionData is used to internally store records of registered actions.
      * @param <E> The type of object that the event is attached to.
@@ -55,6 +67,18 @@ public class Event<E, T> {
             this.action = action;
         }
 
+        /**
+         * Performs the action, unless its listener has expired.
+         * @return The listener the action was performed for, or null if the listener has expired.
+         */
+        L execute(E eventObject, T triggeringObject, Map<String, Object> data) {
+            L listener = this.listener.get();
+            if (listener != null) {
+                action.execute(eventObject, triggeringObject, listener, data);
+            }
+            return listener;
+        }
+
         @Override
         public boolean equals(final Object o) {
             if (this == o) return true;
@@ -62,13 +86,13 @@ public class Event<E, T> {
 
             final ActionData<?, ?, ?> that = (ActionData<?, ?, ?>) o;
 
-            return listener == that.listener && action == that.action;
+            return listener.get() == that.listener.get() && action == that.action;
 
         }
 
         @Override
         public int hashCode() {
-            int result = listener.hashCode();
+            int result = System.identityHashCode(listener.get());
             result = 31 * result + action.hashCode();
             return result;
         }
@@ -84,6 +108,7 @@ public class Event<E, T> {
         public final String eventName;
         private List<Event<E, T>> _events = new ArrayList<>();
         private List<ActionData<E, T, ?>> _actions = new ArrayList<>();
+        private Dispatch _dispatch = Dispatch.Immediate;
 
         public EventSet(String eventName) {
             this.eventName = eventName;
@@ -115,12 +140,25 @@ public class Event<E, T> {
             _actions.remove(new ActionData<>(listener, action));
         }
 
+        /**
+         * Sets how the events collected by this event set, now and in future, are dispatched.
+         * @param dispatch How the events are dispatched.
+         */
+        public void setDispatch(Dispatch dispatch) {
+            _dispatch = dispatch;
+            for (Event<E, T> event : _events) {
+                event.setDispatch(dispatch);
+            }
+        }
+
         /**
          * Adds an event to this object's internal list of events.
          * @param event the event to add.
          */
         private void addEvent(Event<E, T> event) {
+            event.setDispatch(_dispatch);
             _events.add(event);
+            _actions.removeIf(action -> action.listener.get() == null);
             for (ActionData action : _actions) {
                 event.addAction(action.listener.get(), action.action);
             }
@@ -128,61 +166,68 @@ public class Event<E, T> {
 
     }
 
-    private static Map<String, EventSet> _eventNamesToEvents = new HashMap<>();
+    private static final ActionData<?, ?, ?>[] NoActions = new ActionData<?, ?, ?>[0];
 
-    private List<ActionData<E, T, ?>> _actions = new ArrayList<>();
+    // replaced rather than changed, so a trigger can walk the array it started with while actions are added or removed
+    private ActionData<E, T, ?>[] _actions = newActions(0);
+    private Dispatch _dispatch = Dispatch.Immediate;
+    private EventQueue.QueuedTrigger _lastQueued; // the last trigger queued that has not been dispatched
     private final E _eventObject;
+    private final EventRegistry _registry;
     public final String name;
+    /**
+     * The id of this event's name, shared by every event with that name.
+     * @see EventBindings#idForEventName(String)
+     */
+    public final int id;
 
     /**
      * Given an event attached to an object, this will return the event set that encompassing this event occuring on any object.
      * @return The event set of this event occurring on any object.
      */
     public EventSet<E, T> onAllObjects() {
-        EventSet<?, ?> events = _eventNamesToEvents.get(this.name);
-        if (events == null) {
-            events = new EventSet<>(this.name);
-            _eventNamesToEvents.put(this.name, events);
-        }
-        return (EventSet<E, T>)events;
+        return (EventSet<E, T>)_registry.eventSetForName(this.name);
     }
 
     /**
-     * Finds and returns the event set for events with a given name.
+     * Finds and returns the event set for events with a given name in the current world.
      * @param name The name of the events in the event set.
      * @return The event set for that name.
+     * @see EventRegistry#current()
      */
     public static EventSet<?, ?> eventSetForName(String name) {
-        EventSet<?, ?> events = _eventNamesToEvents.get(name);
-        if (events == null) {
-            events = new EventSet<>(name);
-            _eventNamesToEvents.put(name, events);
-        }
-        return events;
+        return EventRegistry.current().eventSetForName(name);
     }
 
     /**
-     * Adds an event with a given name to the event set for that name.
-     */
-    private static <E, T> void addEventForName(Event<E, T> event, String name) {
-        EventSet<E, T> events = _eventNamesToEvents.get(name);
-        if (events == null) {
-            events = new EventSet<>(name);
-            _eventNamesToEvents.put(name, events);
-        }
-        events.addEvent(event);
-    }
-
-    /**
-     * Constructs a new event with the given name on the given object.
+     * Constructs a new event with the given name on the given object, in the event set for that name of the current world.
      * @param name The name of the event.
      * @param eventObject The object that the event is attached to.
      */
     public Event(String name, E eventObject) {
         this.name = name;
+        this.id = EventBindings.idForEventName(name);
         _eventObject = eventObject;
+        _registry = EventRegistry.current();
+
+        onAllObjects().addEvent(this);
+    }
+
+    /**
+     * Sets how this event's actions are performed when it is triggered.
+     * Triggers already queued are still dispatched when the queue is flushed.
+     * @param dispatch How the event is dispatched.
+     * @see EventQueue
+     */
+    public void setDispatch(Dispatch dispatch) {
+        _dispatch = dispatch;
+    }
 
-        Event.addEventForName(this, name);
+    /**
+     * @return How this event's actions are performed when it is triggered.
+     */
+    public Dispatch dispatch() {
+        return _dispatch;
     }
 
     /**
@@ -192,7 +237,9 @@ public class Event<E, T> {
      * @param <L> The type of object that is listening to the action.
      */
     public <L> void addAction(L listener, Action<? super E, ? super T, L> action) {
-        _actions.add(new ActionData<>(listener, action));
+        ActionData<E, T, ?>[] actions = Arrays.copyOf(_actions, _actions.length + 1);
+        actions[actions.length - 1] = new ActionData<>(listener, action);
+        _actions = actions;
     }
 
     /**
@@ -202,26 +249,146 @@ public class Event<E, T> {
      * @param <L> The type of object that is listening to the action.
      */
     public <L> void removeAction(L listener, Action<? super E, ? super T, L> action) {
-        _actions.remove(new ActionData<>(listener, action));
+        ActionData<E, T, ?>[] actions = _actions;
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i].listener.get() == listener && actions[i].action == action) {
+                ActionData<E, T, ?>[] remaining = newActions(actions.length - 1);
+                System.arraycopy(actions, 0, remaining, 0, i);
+                System.arraycopy(actions, i + 1, remaining, i, remaining.length - i);
+                _actions = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The number of actions registered on this event, including any whose listener has expired since the last trigger.
+     */
+    int actionCount() {
+        return _actions.length;
     }
 
     /**
-     * Trigger this event.
+     * Removes the actions whose listener objects have been garbage collected.
+     */
+    private void removeExpiredActions() {
+        ActionData<E, T, ?>[] actions = _actions;
+        int live = 0;
+        for (ActionData<E, T, ?> actionData : actions) {
+            if (actionData.listener.get() != null) {
+                live++;
+            }
+        }
+        ActionData<E, T, ?>[] remaining = newActions(live);
+        int i = 0;
+        for (ActionData<E, T, ?> actionData : actions) {
+            if (i < live && actionData.listener.get() != null) {
+                remaining[i++] = actionData;
+            }
+        }
+        _actions = i == live ? remaining : Arrays.copyOf(remaining, i);
+    }
+
+    /**
+     * Creates an array of actions, sharing one array between all events when it is empty.
+     * @param length The number of actions.
+     * @return The array.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E, T> ActionData<E, T, ?>[] newActions(int length) {
+        return (ActionData<E, T, ?>[]) (length == 0 ? NoActions : new ActionData<?, ?, ?>[length]);
+    }
+
+    /**
+     * Trigger this event, or queue the trigger in the world's event queue if the event is deferred.
+     * Actions are performed even if their listener is the triggering object, since objects listen to their own events (e.g. key input).
+     * Actions added or removed by an action are only affected from the next trigger, and actions whose listener has expired are removed.
+     * Triggering an event that is not deferred does not allocate.
+     * A pooled EventPayload passed as the data is released once the actions have been performed.
      * @param triggeringObject The object that produced the event signal
-     * @param data A dictionary of extraneous data that can be passed as an argument.
+     * @param data A dictionary of extraneous data that can be passed as an argument, which must not be changed after a deferred event is triggered.
      */
     public <U extends T> void trigger(final U triggeringObject, final Map<String, Object> data) {
-        for (ActionData actionData : _actions) {
+        if (_dispatch != Dispatch.Immediate) {
+            _lastQueued = _registry.queue().enqueue(this, triggeringObject, data, _lastQueued, _dispatch == Dispatch.Coalesced);
+            return;
+        }
+        this.perform(triggeringObject, data, 0);
+        release(data);
+    }
+
+    /**
+     * Performs the actions of a trigger taken from the event queue.
+     * @param trigger The queued trigger.
+     */
+    void dispatchQueued(EventQueue.QueuedTrigger trigger) {
+        if (_lastQueued == trigger) {
+            _lastQueued = null; // a trigger by an action is queued after this rather than replacing it
+        }
+        this.perform(trigger.triggeringObject, trigger.data, trigger.depth);
+        release(trigger.data);
+    }
+
+    /**
+     * Returns the data to its pool if it is a pooled payload, once no action will read it.
+     * @param data The data an event was triggered with.
+     */
+    static void release(Map<String, Object> data) {
+        if (data instanceof EventPayload) {
+            ((EventPayload) data).release();
+        }
+    }
+
+    /**
+     * Performs the actions, profiling them if the registry has a profiler.
+     * @param queuedDepth How deep in a cascade of deferred triggers the trigger was queued, or 0.
+     */
+    @SuppressWarnings("unchecked")
+    private void perform(final Object triggeringObject, final Map<String, Object> data, int queuedDepth) {
+        EventProfiler profiler = _registry.profiler();
+        if (profiler != null) {
+            this.performProfiled(profiler, triggeringObject, data, queuedDepth);
+            return;
+        }
 
-            // if the listener is the trigger, then it doesn't need to know about the update it sent out
-            if (actionData.listener == triggeringObject) {
-                System.out.println("Skipping action - listener is the trigger and probably already knows");
-                continue;
+        boolean expired = false;
+        for (ActionData<E, T, ?> actionData : _actions) {
+            if (actionData.execute(_eventObject, (T) triggeringObject, data) == null) { //skipped if the listener object has expired.
+                expired = true;
             }
+        }
+        if (expired) {
+            removeExpiredActions();
+        }
+        this.log(triggeringObject, data);
+    }
 
-            if (actionData.listener.get() == null) { continue; } //skip if the listener object has expired.
-            actionData.action.execute(_eventObject, triggeringObject, actionData.listener.get(), data);
+    @SuppressWarnings("unchecked")
+    private void performProfiled(EventProfiler profiler, final Object triggeringObject, final Map<String, Object> data, int queuedDepth) {
+        ActionData<E, T, ?>[] actions = _actions;
+        profiler.triggered(this, actions.length, queuedDepth);
+        long start = System.nanoTime();
+        boolean expired = false;
+        try {
+            for (ActionData<E, T, ?> actionData : actions) {
+                long actionStart = System.nanoTime();
+                Object listener = actionData.execute(_eventObject, (T) triggeringObject, data);
+                if (listener == null) {
+                    expired = true;
+                    continue;
+                }
+                profiler.performed(this, actionData.action, listener, System.nanoTime() - actionStart);
+            }
+        } finally {
+            profiler.finished(this, System.nanoTime() - start);
+        }
+        if (expired) {
+            removeExpiredActions();
         }
+        this.log(triggeringObject, data);
+    }
+
+    private void log(final Object triggeringObject, final Map<String, Object> data) {
 
         if (ShowEventDebugLog) {
             String log = name;
@@ -0,0 +1,245 @@
+package swen.adventure.engine;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The events and actions a class declares as public fields named event{Name} and action{Name}, looked up once per
+ * class and kept as method handles, so that finding an event or action by name does not use reflection each time.
+ *
+ * Every event name is also given a small integer id, the same for every class and world in the process, so an
+ * event can be found on an object by its id instead of its name.
+ */
+public final class EventBindings {
+
+    private static final String EventPrefix = "event";
+    private static final String ActionPrefix = "action";
+    private static final MethodType Getter = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType Constructor = MethodType.methodType(Object.class);
+
+    private static final ClassValue<EventBindings> Bindings = new ClassValue<EventBindings>() {
+        @Override
+        protected EventBindings computeValue(Class<?> type) {
+            return new EventBindings(type);
+        }
+    };
+
+    private static final Map<String, Integer> EventIds = new ConcurrentHashMap<>();
+    private static volatile String[] EventNames = new String[0]; // guarded by EventIds when written
+
+    // constructors of the Action classes found by name, or NoAction if there is no such class
+    private static final Map<String, MethodHandle> ActionClasses = new ConcurrentHashMap<>();
+    private static final MethodHandle NoAction = MethodHandles.constant(Object.class, null);
+
+    private final Class<?> _type;
+    private final MethodHandle[] _eventsById;
+    private final Map<String, MethodHandle> _actions = new HashMap<>();
+
+    private EventBindings(Class<?> type) {
+        _type = type;
+
+        Map<Integer, MethodHandle> events = new HashMap<>();
+        int maxId = -1;
+        for (Field field : type.getFields()) {
+            String name = field.getName();
+            try {
+                // getField finds the field a subclass hides, rather than the one it hides
+                Field resolved = type.getField(name);
+                if (!resolved.equals(field)) {
+                    continue;
+                }
+            } catch (NoSuchFieldException e) {
+                continue;
+            }
+
+            if (name.startsWith(EventPrefix) && name.length() > EventPrefix.length()
+                    && Event.class.isAssignableFrom(field.getType())) {
+                int id = idForEventName(name.substring(EventPrefix.length()));
+                events.put(id, getter(field));
+                maxId = Math.max(maxId, id);
+            } else if (name.startsWith(ActionPrefix) && name.length() > ActionPrefix.length()
+                    && Action.class.isAssignableFrom(field.getType())) {
+                MethodHandle action = getter(field);
+                if (Modifier.isStatic(field.getModifiers()) && Modifier.isFinal(field.getModifiers())) {
+                    // the same action for every object, so look it up now rather than on every call
+                    try {
+                        action = MethodHandles.dropArguments(
+                                MethodHandles.constant(Object.class, action.invokeExact((Object) null)), 0, Object.class);
+                    } catch (Throwable e) {
+                        System.err.println("Error accessing action " + name + " of " + type.getName() + ": " + e);
+                    }
+                }
+                _actions.put(name.substring(ActionPrefix.length()), action);
+            }
+        }
+
+        _eventsById = new MethodHandle[maxId + 1];
+        events.forEach((id, getter) -> _eventsById[id] = getter);
+    }
+
+    private static MethodHandle getter(Field field) {
+        try {
+            field.setAccessible(true); // the class itself may not be public
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            return getter.asType(Getter);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Could not access " + field, e);
+        }
+    }
+
+    /**
+     * @param type a class
+     * @return the events and actions of that class
+     */
+    public static EventBindings forClass(Class<?> type) {
+        return Bindings.get(type);
+    }
+
+    /**
+     * @param eventName The name of an event e.g. DoorOpened.
+     * @return The id of events with that name, given to the name the first time it is asked for.
+     */
+    public static int idForEventName(String eventName) {
+        Integer id = EventIds.get(eventName);
+        if (id != null) {
+            return id;
+        }
+        synchronized (EventIds) {
+            id = EventIds.get(eventName);
+            if (id == null) {
+                String[] names = Arrays.copyOf(EventNames, EventNames.length + 1);
+                id = EventNames.length;
+                names[id] = eventName;
+                EventNames = names;
+                EventIds.put(eventName, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @param eventId The id of an event name.
+     * @return The name with that id.
+     * @throws IllegalArgumentException if no name has that id.
+     */
+    public static String eventNameForId(int eventId) {
+        String[] names = EventNames;
+        if (eventId < 0 || eventId >= names.length) {
+            throw new IllegalArgumentException("No event has the id " + eventId);
+        }
+        return names[eventId];
+    }
+
+    /**
+     * @param object An object of this class.
+     * @param eventId The id of the event's name.
+     * @return The event with that id on the object, or null if the class has no such event.
+     */
+    @SuppressWarnings("unchecked")
+    public <E, T> Event<E, T> event(Object object, int eventId) {
+        if (eventId < 0 || eventId >= _eventsById.length || _eventsById[eventId] == null) {
+            return null;
+        }
+        try {
+            return (Event<E, T>) (Object) _eventsById[eventId].invokeExact(object);
+        } catch (Throwable e) {
+            throw new RuntimeException("Error accessing event " + eventNameForId(eventId) + " on " + object, e);
+        }
+    }
+
+    /**
+     * @param object An object of this class.
+     * @param eventName The name of the event e.g. DoorOpened.
+     * @return The event with that name on the object, or null if the class has no such event.
+     */
+    public <E, T> Event<E, T> event(Object object, String eventName) {
+        Integer id = EventIds.get(eventName);
+        return id == null ? null : event(object, id);
+    }
+
+    /**
+     * @param object An object of this class.
+     * @param actionName The name of the action e.g. OpenDoor.
+     * @return The action with that name on the object, or null if the class has no such action.
+     */
+    @SuppressWarnings("unchecked")
+    public <L> Action<?, ?, L> action(Object object, String actionName) {
+        MethodHandle getter = _actions.get(actionName);
+        if (getter == null) {
+            return null;
+        }
+        try {
+            return (Action<?, ?, L>) (Object) getter.invokeExact(object);
+        } catch (Throwable e) {
+            throw new RuntimeException("Error accessing action " + actionName + " on " + object, e);
+        }
+    }
+
+    /**
+     * Finds the name of the field an action came from. This gets every action field of the object, so it is only
+     * meant for reports.
+     * @param object An object of this class.
+     * @param action An action.
+     * @return The name of the action field on the object holding that action e.g. OpenDoor, or null if there is none.
+     */
+    public String nameOfAction(Object object, Action<?, ?, ?> action) {
+        for (Map.Entry<String, MethodHandle> entry : _actions.entrySet()) {
+            try {
+                if ((Object) entry.getValue().invokeExact(object) == action) {
+                    return entry.getKey();
+                }
+            } catch (Throwable e) {
+                // muffu muffu~
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates an instance of a class implementing Action, whose constructor is looked up the first time the class is asked for.
+     * @param className The fully qualified name of the class.
+     * @return A new instance of the class, or null if there is no such class that can be instantiated.
+     */
+    @SuppressWarnings("unchecked")
+    public static <L> Action<?, ?, L> newAction(String className) {
+        MethodHandle constructor = ActionClasses.computeIfAbsent(className, EventBindings::findActionConstructor);
+        try {
+            return (Action<?, ?, L>) (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            System.err.println("Error instantiating Action class for name " + className + ": " + e);
+            return null;
+        }
+    }
+
+    private static MethodHandle findActionConstructor(String className) {
+        try {
+            Class<?> actionClass = Class.forName(className);
+            if (!Action.class.isAssignableFrom(actionClass)) {
+                return NoAction;
+            }
+            return MethodHandles.publicLookup()
+                    .findConstructor(actionClass, MethodType.methodType(void.class))
+                    .asType(Constructor);
+        } catch (ClassNotFoundException e) {
+            return NoAction;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            System.err.println("Error instantiating Action class for name " + className + ": " + e);
+            return NoAction;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EventBindings for " + _type.getName();
+    }
+}
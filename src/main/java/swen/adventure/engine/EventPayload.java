@@ -0,0 +1,116 @@
+package swen.adventure.engine;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Data for an event kept in typed fields instead of a map, for events that are triggered every frame.
+ *
+ * A payload is still a Map from the keys in EventDataKeys to its fields, so actions that read the data by key keep
+ * working, while those that know the payload's type can read its fields without casting or unboxing. Looking up a
+ * key does not allocate, but reading a primitive field through the map boxes it.
+ *
+ * Payloads are taken from a pool with <code>obtain</code> and go back to it once the event has been dispatched, or
+ * once a coalesced trigger has been replaced, so the trigger that a payload is passed to owns it. Actions must copy
+ * anything they want to keep rather than keep the payload. Each thread has a pool of its own.
+ */
+public abstract class EventPayload extends AbstractMap<String, Object> {
+
+    /**
+     * Payloads of one type that are not in use on the calling thread
+     * @param <P> The type of payload.
+     */
+    public static final class Pool<P extends EventPayload> {
+        private final Supplier<P> _supplier;
+        private final ThreadLocal<ArrayDeque<P>> _unused = ThreadLocal.withInitial(ArrayDeque::new);
+
+        /**
+         * @param supplier Creates a payload when the pool is empty.
+         */
+        public Pool(Supplier<P> supplier) {
+            _supplier = supplier;
+        }
+
+        /**
+         * @return A payload that is not in use, with every field cleared.
+         */
+        @SuppressWarnings("unchecked")
+        public P obtain() {
+            P payload = _unused.get().poll();
+            if (payload == null) {
+                payload = _supplier.get();
+            }
+            EventPayload pooled = payload;
+            pooled._pool = (Pool<EventPayload>) this;
+            pooled._inUse = true;
+            return payload;
+        }
+
+        private void release(P payload) {
+            _unused.get().add(payload);
+        }
+    }
+
+    private Pool<EventPayload> _pool;
+    private boolean _inUse;
+
+    /**
+     * @param key One of the keys in EventDataKeys.
+     * @return The field for that key, boxed if it is a primitive, or null if the payload has no such field or it is not set.
+     */
+    protected abstract Object field(String key);
+
+    /**
+     * @return The keys this payload has fields for.
+     */
+    protected abstract String[] keys();
+
+    /**
+     * Clears every field, so the payload does not keep the objects it referred to while it is in the pool.
+     */
+    protected abstract void reset();
+
+    /**
+     * Returns this payload to its pool, if it came from one and has not already been returned.
+     */
+    public void release() {
+        if (!_inUse) {
+            return;
+        }
+        _inUse = false;
+        this.reset();
+        if (_pool != null) {
+            _pool.release(this);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        return key instanceof String ? this.field((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Not used when triggering, only by actions that copy or print the data.
+     * @return The fields that are set, as a new set of entries.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> entries = new HashMap<>();
+        for (String key : this.keys()) {
+            Object value = this.field(key);
+            if (value != null) {
+                entries.put(key, value);
+            }
+        }
+        return entries.entrySet();
+    }
+}
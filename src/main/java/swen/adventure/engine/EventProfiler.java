@@ -0,0 +1,262 @@
+package swen.adventure.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Counts how often each event in a world is triggered and times each action performed in response, to find the
+ * actions that take up a frame or tick. An event's registry profiles its triggers while it has a profiler, which it
+ * has from the start when <code>Settings.ProfileEvents</code> is set.
+ *
+ * For each event name it records the number of triggers, the most listeners an event had when triggered and the
+ * deepest cascade it was triggered in, counting both triggers made by actions and deferred triggers queued by
+ * actions. Actions are grouped by the event they listen to and the action field they come from, or the class their
+ * lambda is written in if they are not a field. An action's time includes that of the events it triggers.
+ *
+ * Like its registry, a profiler should only be used by one thread at a time.
+ */
+public class EventProfiler {
+
+    private static final String LambdaMarker = "$$Lambda";
+
+    /**
+     * The figures for one event name
+     */
+    private static class EventStats {
+        final String name;
+        long triggers;
+        long nanos;
+        int maxListeners;
+        int maxDepth;
+        // the actions seen listening to events with this name, weakly as they may hold their listener
+        final Map<Object, ActionStats> actions = new WeakHashMap<>();
+        final Map<String, ActionStats> actionsByName = new HashMap<>();
+
+        EventStats(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * The figures for the actions with one name listening to one event name
+     */
+    private static class ActionStats {
+        final String name;
+        long calls;
+        long nanos;
+        long maxNanos;
+
+        ActionStats(String name) {
+            this.name = name;
+        }
+    }
+
+    private EventStats[] _events = new EventStats[0];
+    private int _nesting = 0;
+    private int _maxDepth = 0;
+
+    /**
+     * Called as an event starts performing its actions.
+     * @param event The event.
+     * @param listeners The number of actions it has.
+     * @param queuedDepth How deep in a cascade of deferred triggers it was queued, or 0 if it was not queued.
+     */
+    void triggered(Event<?, ?> event, int listeners, int queuedDepth) {
+        EventStats stats = this.stats(event);
+        int depth = _nesting + queuedDepth;
+        _nesting++;
+        stats.triggers++;
+        stats.maxListeners = Math.max(stats.maxListeners, listeners);
+        stats.maxDepth = Math.max(stats.maxDepth, depth);
+        _maxDepth = Math.max(_maxDepth, depth);
+    }
+
+    /**
+     * Called when an action has been performed in response to an event.
+     * @param event The event.
+     * @param action The action.
+     * @param listener The object that was listening.
+     * @param nanos How long the action took.
+     */
+    void performed(Event<?, ?> event, Action<?, ?, ?> action, Object listener, long nanos) {
+        EventStats stats = this.stats(event);
+        ActionStats actionStats = stats.actions.get(action);
+        if (actionStats == null) {
+            String name = nameOf(action, listener);
+            actionStats = stats.actionsByName.computeIfAbsent(name, ActionStats::new);
+            stats.actions.put(action, actionStats);
+        }
+        actionStats.calls++;
+        actionStats.nanos += nanos;
+        actionStats.maxNanos = Math.max(actionStats.maxNanos, nanos);
+    }
+
+    /**
+     * Called when an event has performed all of its actions.
+     * @param event The event.
+     * @param nanos How long the actions took altogether.
+     */
+    void finished(Event<?, ?> event, long nanos) {
+        _nesting--;
+        this.stats(event).nanos += nanos;
+    }
+
+    private EventStats stats(Event<?, ?> event) {
+        if (event.id >= _events.length) {
+            _events = Arrays.copyOf(_events, Math.max(event.id + 1, _events.length * 2));
+        }
+        EventStats stats = _events[event.id];
+        if (stats == null) {
+            stats = new EventStats(event.name);
+            _events[event.id] = stats;
+        }
+        return stats;
+    }
+
+    /**
+     * @param action An action.
+     * @param listener An object listening with the action.
+     * @return The name of the field on the listener's class holding the action, or the class its lambda is written in.
+     */
+    private static String nameOf(Action<?, ?, ?> action, Object listener) {
+        String field = EventBindings.forClass(listener.getClass()).nameOfAction(listener, action);
+        if (field != null) {
+            return listener.getClass().getSimpleName() + ".action" + field;
+        }
+        String className = action.getClass().getName();
+        int lambda = className.indexOf(LambdaMarker);
+        if (lambda >= 0) {
+            className = className.substring(0, lambda);
+            return className.substring(className.lastIndexOf('.') + 1) + " lambda";
+        }
+        return action.getClass().getSimpleName();
+    }
+
+    /**
+     * @return The deepest cascade any event has been triggered in.
+     */
+    public int maxDepth() {
+        return _maxDepth;
+    }
+
+    /**
+     * @param eventName The name of an event.
+     * @return The number of times events with that name have been triggered.
+     */
+    public long triggers(String eventName) {
+        int id = EventBindings.idForEventName(eventName);
+        return id < _events.length && _events[id] != null ? _events[id].triggers : 0;
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        _events = new EventStats[0];
+        _maxDepth = 0;
+    }
+
+    private List<EventStats> sortedEvents() {
+        List<EventStats> events = new ArrayList<>();
+        for (EventStats stats : _events) {
+            if (stats != null) {
+                events.add(stats);
+            }
+        }
+        events.sort(Comparator.comparingLong((EventStats stats) -> stats.nanos).reversed());
+        return events;
+    }
+
+    private static List<ActionStats> sortedActions(EventStats event) {
+        List<ActionStats> actions = new ArrayList<>(event.actionsByName.values());
+        actions.sort(Comparator.comparingLong((ActionStats stats) -> stats.nanos).reversed());
+        return actions;
+    }
+
+    /**
+     * Writes the events, then the actions, as a table for the log, each sorted by the time spent in them.
+     * @param out The builder to append to.
+     */
+    public void writeTable(StringBuilder out) {
+        List<EventStats> events = this.sortedEvents();
+        out.append(String.format("%-40s %10s %10s %10s %9s %6s%n", "Event", "Triggers", "Total ms", "Mean us", "Listeners", "Depth"));
+        for (EventStats event : events) {
+            out.append(String.format("%-40s %10d %10.2f %10.2f %9d %6d%n", event.name, event.triggers, event.nanos / 1e6,
+                    event.triggers == 0 ? 0 : event.nanos / 1e3 / event.triggers, event.maxListeners, event.maxDepth));
+        }
+
+        List<Map.Entry<String, ActionStats>> actions = new ArrayList<>();
+        for (EventStats event : events) {
+            for (ActionStats action : event.actionsByName.values()) {
+                actions.add(new AbstractMap.SimpleImmutableEntry<>(event.name + ": " + action.name, action));
+            }
+        }
+        actions.sort(Comparator.comparingLong((Map.Entry<String, ActionStats> entry) -> entry.getValue().nanos).reversed());
+
+        out.append(String.format("%n%-60s %10s %10s %10s %10s%n", "Action", "Calls", "Total ms", "Mean us", "Max us"));
+        for (Map.Entry<String, ActionStats> entry : actions) {
+            ActionStats action = entry.getValue();
+            out.append(String.format("%-60s %10d %10.2f %10.2f %10.2f%n", entry.getKey(), action.calls, action.nanos / 1e6,
+                    action.calls == 0 ? 0 : action.nanos / 1e3 / action.calls, action.maxNanos / 1e3));
+        }
+        out.append("Deepest cascade: ").append(_maxDepth).append(System.lineSeparator());
+    }
+
+    /**
+     * @return The table written by writeTable.
+     */
+    public String table() {
+        StringBuilder out = new StringBuilder();
+        this.writeTable(out);
+        return out.toString();
+    }
+
+    /**
+     * Writes a line for each event name then for each action, sorted as in the table, with times in nanoseconds.
+     * @param out The builder to append to.
+     */
+    public void writeCsv(StringBuilder out) {
+        out.append("kind,event,action,count,total_nanos,max_nanos,max_listeners,max_depth\n");
+        for (EventStats event : this.sortedEvents()) {
+            out.append("event,").append(csv(event.name)).append(",,").append(event.triggers).append(',')
+                    .append(event.nanos).append(",,").append(event.maxListeners).append(',').append(event.maxDepth).append('\n');
+            for (ActionStats action : sortedActions(event)) {
+                out.append("action,").append(csv(event.name)).append(',').append(csv(action.name)).append(',')
+                        .append(action.calls).append(',').append(action.nanos).append(',').append(action.maxNanos)
+                        .append(",,\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the CSV to a file, replacing it.
+     * @param file The file to write to.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeCsv(File file) throws IOException {
+        StringBuilder out = new StringBuilder();
+        this.writeCsv(out);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(out.toString());
+        }
+    }
+
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,150 @@
+package swen.adventure.engine;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+
+/**
+ * The triggers of deferred events in one world, waiting to be dispatched when the game or server flushes the queue
+ * at a fixed point in its frame or tick.
+ *
+ * Triggers are dispatched in the order they were queued. A coalesced event triggered again by the same object
+ * before the queue is flushed replaces its earlier trigger, taking its place at the back of the queue, so a
+ * property that changes many times in a frame is only acted on once with its newest value.
+ *
+ * Deferred events triggered by actions during a flush are dispatched by the same flush, after everything queued
+ * before them, rather than inside the action that triggered them. Each one is a step deeper in the cascade than the
+ * trigger whose actions queued it, and a trigger more than the registry's cascade limit steps deep is
+ * left for the next flush, so events that keep triggering each other cannot stall a frame.
+ *
+ * Like its registry, a queue should only be used by one thread at a time.
+ */
+public class EventQueue {
+
+    /**
+     * A trigger waiting in the queue, reused once it has been dispatched
+     */
+    static class QueuedTrigger {
+        Event<?, ?> event;
+        Object triggeringObject;
+        Map<String, Object> data;
+        int depth;
+        boolean replaced;
+    }
+
+    private final ArrayDeque<QueuedTrigger> _queued = new ArrayDeque<>();
+    private final ArrayDeque<QueuedTrigger> _nextFlush = new ArrayDeque<>();
+    private final ArrayDeque<QueuedTrigger> _unused = new ArrayDeque<>();
+    private final int _cascadeLimit;
+
+    private boolean _flushing = false;
+    private int _depth = 0;
+    private long _coalesced = 0;
+    private long _cascadesCut = 0;
+
+    /**
+     * @param cascadeLimit how many steps deep deferred events may trigger each other in one flush
+     */
+    public EventQueue(int cascadeLimit) {
+        _cascadeLimit = cascadeLimit;
+    }
+
+    /**
+     * Adds a trigger to the back of the queue, replacing the event's last queued trigger if the event is coalesced
+     * and that was by the same object.
+     * @param event The event that was triggered.
+     * @param triggeringObject The object that triggered it.
+     * @param data The data it was triggered with, which must not be changed until it has been dispatched.
+     * @param lastQueued The event's last queued trigger that has not been dispatched, or null.
+     * @param coalesce Whether to replace the event's last queued trigger.
+     * @return The queued trigger.
+     */
+    QueuedTrigger enqueue(Event<?, ?> event, Object triggeringObject, Map<String, Object> data,
+                          QueuedTrigger lastQueued, boolean coalesce) {
+        if (coalesce && lastQueued != null && !lastQueued.replaced && lastQueued.event == event
+                && lastQueued.triggeringObject == triggeringObject) {
+            lastQueued.replaced = true;
+            Event.release(lastQueued.data);
+            lastQueued.data = null;
+            _coalesced++;
+        }
+
+        QueuedTrigger trigger = _unused.poll();
+        if (trigger == null) {
+            trigger = new QueuedTrigger();
+        }
+        trigger.event = event;
+        trigger.triggeringObject = triggeringObject;
+        trigger.data = data;
+        trigger.depth = _flushing ? _depth + 1 : 0;
+        trigger.replaced = false;
+        _queued.add(trigger);
+        return trigger;
+    }
+
+    /**
+     * Dispatches every trigger in the queue, and those queued by their actions up to the cascade limit.
+     * Does nothing if called by an action while the queue is being flushed.
+     * @return The number of triggers dispatched.
+     */
+    public int flush() {
+        if (_flushing) {
+            return 0;
+        }
+        _flushing = true;
+        int dispatched = 0;
+        try {
+            QueuedTrigger trigger;
+            while ((trigger = _queued.poll()) != null) {
+                if (trigger.replaced) {
+                    release(trigger);
+                } else if (trigger.depth > _cascadeLimit) {
+                    trigger.depth = 0;
+                    _nextFlush.add(trigger);
+                    _cascadesCut++;
+                } else {
+                    _depth = trigger.depth;
+                    try {
+                        trigger.event.dispatchQueued(trigger);
+                    } finally {
+                        release(trigger);
+                    }
+                    dispatched++;
+                }
+            }
+        } finally {
+            _depth = 0;
+            _flushing = false;
+            _queued.addAll(_nextFlush);
+            _nextFlush.clear();
+        }
+        return dispatched;
+    }
+
+    private void release(QueuedTrigger trigger) {
+        trigger.event = null;
+        trigger.triggeringObject = null;
+        trigger.data = null;
+        _unused.add(trigger);
+    }
+
+    /**
+     * @return The number of triggers waiting to be dispatched, including those that have been replaced.
+     */
+    public int size() {
+        return _queued.size();
+    }
+
+    /**
+     * @return The number of triggers that have been replaced by a newer trigger of the same event by the same object.
+     */
+    public long coalesced() {
+        return _coalesced;
+    }
+
+    /**
+     * @return The number of triggers left for the next flush because they were too deep in a cascade.
+     */
+    public long cascadesCut() {
+        return _cascadesCut;
+    }
+}
@@ -0,0 +1,118 @@
+package swen.adventure.engine;
+
+import swen.adventure.Settings;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The event sets of one world, so that listening to an event on all objects only hears about the objects in that
+ * world when several run in the same process.
+ *
+ * A thread uses the shared registry unless it has entered another one. Events join the event sets of the registry
+ * that is current when they are created and keep using it afterwards, so a world should enter its registry while
+ * its scene graph is loaded and on the thread that runs it, e.g.
+ *
+ * <pre>
+ * EventRegistry.Scope scope = registry.enter();
+ * try {
+ *     ... load and run the world
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ *
+ * A registry is not thread safe, it should only be used by one thread at a time.
+ */
+public class EventRegistry {
+
+    /**
+     * The time a registry is current on a thread, closing it goes back to the registry that was current before
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final EventRegistry Shared = new EventRegistry();
+    private static final ThreadLocal<EventRegistry> Current = new ThreadLocal<>();
+
+    private final Map<String, Event.EventSet<?, ?>> _eventNamesToEvents = new HashMap<>();
+    private final EventQueue _queue;
+    // null unless profiling, so events only have to check for it
+    private EventProfiler _profiler;
+
+    public EventRegistry() {
+        this(Settings.EventCascadeLimit);
+    }
+
+    /**
+     * @param cascadeLimit how many steps deep deferred events may trigger each other in one flush of the queue
+     */
+    public EventRegistry(int cascadeLimit) {
+        _queue = new EventQueue(cascadeLimit);
+        if (Settings.ProfileEvents) {
+            _profiler = new EventProfiler();
+        }
+    }
+
+    /**
+     * @return the registry entered on the calling thread, or the shared one if none has been entered
+     */
+    public static EventRegistry current() {
+        EventRegistry registry = Current.get();
+        return registry == null ? Shared : registry;
+    }
+
+    /**
+     * Make this registry current on the calling thread until the scope is closed
+     *
+     * @return the scope, to be closed on the same thread
+     */
+    public Scope enter() {
+        EventRegistry previous = Current.get();
+        Current.set(this);
+        return () -> {
+            if (previous == null) {
+                Current.remove();
+            } else {
+                Current.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return The queue of this world's deferred event triggers, to be flushed once a frame or tick.
+     */
+    public EventQueue queue() {
+        return _queue;
+    }
+
+    /**
+     * @return The profiler timing this world's events, or null if they are not being profiled.
+     */
+    public EventProfiler profiler() {
+        return _profiler;
+    }
+
+    /**
+     * @param profiler The profiler to time this world's events with from now on, or null to stop profiling them.
+     */
+    public void setProfiler(EventProfiler profiler) {
+        _profiler = profiler;
+    }
+
+    /**
+     * Finds and returns the event set for events with a given name, creating it if there is none.
+     * @param name The name of the events in the event set.
+     * @return The event set for that name.
+     */
+    public Event.EventSet<?, ?> eventSetForName(String name) {
+        Event.EventSet<?, ?> events = _eventNamesToEvents.get(name);
+        if (events == null) {
+            events = new Event.EventSet<>(name);
+            _eventNamesToEvents.put(name, events);
+        }
+        return events;
+    }
+}
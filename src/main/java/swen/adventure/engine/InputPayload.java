@@ -0,0 +1,52 @@
+package swen.adventure.engine;
+
+import swen.adventure.game.EventDataKeys;
+
+/**
+ * The data of a key or mouse button event: the event itself, and how long the key has been held for if it is held.
+ */
+public final class InputPayload extends EventPayload {
+
+    public static final Pool<InputPayload> Payloads = new Pool<>(InputPayload::new);
+
+    private static final String[] Keys = {EventDataKeys.Event, EventDataKeys.ElapsedMillis};
+
+    public Event<?, ?> event;
+    /** The time since the last frame if the key is held, or -1. */
+    public long elapsedMillis = -1;
+
+    /**
+     * @param event The event that was triggered.
+     * @param elapsedMillis The time since the last frame if the key is held, or -1.
+     * @return A payload from the pool.
+     */
+    public static InputPayload obtain(Event<?, ?> event, long elapsedMillis) {
+        InputPayload payload = Payloads.obtain();
+        payload.event = event;
+        payload.elapsedMillis = elapsedMillis;
+        return payload;
+    }
+
+    @Override
+    protected Object field(String key) {
+        switch (key) {
+            case EventDataKeys.Event:
+                return event;
+            case EventDataKeys.ElapsedMillis:
+                return elapsedMillis < 0 ? null : elapsedMillis;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    protected String[] keys() {
+        return Keys;
+    }
+
+    @Override
+    protected void reset() {
+        event = null;
+        elapsedMillis = -1;
+    }
+}
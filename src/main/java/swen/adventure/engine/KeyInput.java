@@ -3,8 +3,6 @@
  /* Joseph Bennett (bennetjose) (300319773) */ 
  package swen.adventure.engine;
 
-import swen.adventure.game.EventDataKeys;
-
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -21,32 +19,23 @@ public abstract class KeyInput implements Input {
     public void pressKey(Character key) {
         Event<KeyInput, KeyInput> event = this.onPressMappings.get(key);
         if (event != null) {
-            event.trigger(this, new HashMap<String, Object>() {{
-                put(EventDataKeys.Event, event);
-            }});
+            event.trigger(this, InputPayload.obtain(event, -1));
         }
     }
 
     public void checkHeldKeys(Function<Character, Boolean> isKeyPressedFunc, long elapsedTime) {
-        onHeldMappings.entrySet()
-                .stream()
-                .filter(entry -> isKeyPressedFunc.apply(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .forEach(event -> {
-                    event.trigger(this, new HashMap<String, Object>() {{
-                        put(EventDataKeys.Event, event);
-                        put(EventDataKeys.ElapsedMillis, elapsedTime);
-                    }});
-                });
+        for (Map.Entry<Character, Event<KeyInput, KeyInput>> entry : onHeldMappings.entrySet()) {
+            if (isKeyPressedFunc.apply(entry.getKey())) {
+                entry.getValue().trigger(this, InputPayload.obtain(entry.getValue(), elapsedTime));
+            }
+        }
     }
 
 
     public void releaseKey(Character key) {
         Event<KeyInput, KeyInput> event = this.onReleasedMappings.get(key);
         if (event != null) {
-            event.trigger(this, new HashMap<String, Object>() {{
-                put(EventDataKeys.Event, event);
-            }});
+            event.trigger(this, InputPayload.obtain(event, -1));
         }
     }
 }
\ No newline at end of file
@@ -3,10 +3,7 @@
  /* Joseph Bennett (bennetjose) (300319773) */ 
  package swen.adventure.engine;
 
-import swen.adventure.game.EventDataKeys;
-
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -22,24 +19,17 @@ public class MouseInput implements Input {
     public void pressButton(Button button) {
         Event<MouseInput, MouseInput> event = this.onPressMappings.get(button);
         if (event != null) {
-            event.trigger(this, new HashMap<String, Object>() {{
-                put(EventDataKeys.Event, event);
-            }});
+            event.trigger(this, InputPayload.obtain(event, -1));
         }
     }
 
 
     public void checkHeldButtons(Function<Button, Boolean> isButtonPressedFunc, long elapsedTime) {
-        onHeldMappings.entrySet()
-                .stream()
-                .filter(entry -> isButtonPressedFunc.apply(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .forEach(event -> {
-                    event.trigger(this, new HashMap<String, Object>() {{
-                        put(EventDataKeys.Event, event);
-                        put(EventDataKeys.ElapsedMillis, elapsedTime);
-                    }});
-                });
+        for (Map.Entry<Button, Event<MouseInput, MouseInput>> entry : onHeldMappings.entrySet()) {
+            if (isButtonPressedFunc.apply(entry.getKey())) {
+                entry.getValue().trigger(this, InputPayload.obtain(entry.getValue(), elapsedTime));
+            }
+        }
     }
 
 
@@ -51,9 +41,7 @@ public class MouseInput implements Input {
     public void releaseButton(Button button) {
         Event<MouseInput, MouseInput> event = this.onReleasedMappings.get(button);
         if (event != null) {
-            event.trigger(this, new HashMap<String, Object>() {{
-                put(EventDataKeys.Event, event);
-            }});
+            event.trigger(this, InputPayload.obtain(event, -1));
         }
     }
 }
\ No newline at end of file
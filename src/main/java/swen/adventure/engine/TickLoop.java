@@ -0,0 +1,141 @@
+package swen.adventure.engine;
+
+import swen.adventure.engine.metrics.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a tick at a fixed rate on the calling thread, recording how long each tick takes.
+ *
+ * A tick that runs past the start of the next one is counted as an overrun, and the loop starts the next
+ * tick straight away rather than trying to catch up with a burst of ticks.
+ */
+public class TickLoop implements Runnable {
+
+    /**
+     * The work done once per tick
+     */
+    @FunctionalInterface
+    public interface Tick {
+        /**
+         * @param tick number of the tick, starting from zero
+         */
+        void tick(long tick);
+    }
+
+    private final long periodNanos;
+    private final Tick tick;
+    private final Histogram durations;
+    private final Histogram recentDurations;
+
+    private volatile boolean running;
+    private volatile long ticks;
+    private volatile long overruns;
+    private volatile Thread thread;
+
+    /**
+     * @param ticksPerSecond how often to tick
+     * @param tick the work to do each tick
+     */
+    public TickLoop(int ticksPerSecond, Tick tick) {
+        if (ticksPerSecond < 1) {
+            throw new IllegalArgumentException("A tick loop needs at least one tick per second");
+        }
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+        this.tick = tick;
+        this.durations = new Histogram();
+        this.recentDurations = new Histogram();
+    }
+
+    /**
+     * Tick until stopped
+     */
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        running = true;
+
+        long next = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            tick.tick(ticks);
+            long end = System.nanoTime();
+
+            durations.record(end - start);
+            recentDurations.record(end - start);
+            ticks++;
+
+            next += periodNanos;
+            if (end > next) {
+                overruns++;
+                next = end;
+            } else {
+                sleepUntil(next);
+            }
+        }
+        thread = null;
+    }
+
+    private void sleepUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Stop after the current tick, can be called from the tick itself or any other thread
+     */
+    public void stop() {
+        running = false;
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * @return time between the start of each tick in milliseconds
+     */
+    public long periodMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(periodNanos);
+    }
+
+    /**
+     * @return number of ticks run
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * @return number of ticks that took longer than the tick period
+     */
+    public long overruns() {
+        return overruns;
+    }
+
+    /**
+     * @return how long each tick took in nanoseconds, since the loop was made, for exporting as a metric
+     */
+    public Histogram durations() {
+        return durations;
+    }
+
+    /**
+     * @return how long each tick took in nanoseconds, since this histogram was last reset, for summaries in the log
+     */
+    public Histogram recentDurations() {
+        return recentDurations;
+    }
+
+    /**
+     * @return the recent tick duration percentiles and the overruns as a line for the log
+     */
+    public String summary() {
+        return String.format("tick p50=%.2fms p99=%.2fms max=%.2fms overruns=%d/%d",
+                recentDurations.percentile(50) / 1e6, recentDurations.percentile(99) / 1e6,
+                recentDurations.max() / 1e6, overruns, ticks);
+    }
+}
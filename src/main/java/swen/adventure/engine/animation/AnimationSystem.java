@@ -3,6 +3,7 @@
  package swen.adventure.engine.animation;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -12,7 +13,8 @@ import java.util.List;
  */
 public class AnimationSystem {
 
-    private static List<Animation> _animations = new ArrayList<>();
+    // animations can be started by any world's thread, so additions are synchronized
+    private static List<Animation> _animations = Collections.synchronizedList(new ArrayList<>());
 
     protected static double currentTime() {
         return System.currentTimeMillis()/1000.0;
@@ -0,0 +1,206 @@
+package swen.adventure.engine.animation;
+
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.scenegraph.TransformNode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An InterpolationBuffer smooths out the movement of something whose transform arrives in irregular updates,
+ * such as a player controlled by another client.
+ *
+ * Each update is stored with the time it arrived, and the transform is shown a fixed delay in the past so there
+ * is normally an update on either side of the time being shown. The position is interpolated linearly and the
+ * rotation with a slerp between them. When the updates stop coming the position carries on at its last velocity
+ * for a short while, then stays where it is.
+ */
+public class InterpolationBuffer {
+    // a gap this long means the object stopped moving or was out of sight, so it starts afresh rather than sliding
+    private static final long ResetAfterNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private final long _delayNanos;
+    private final long _maxExtrapolationNanos;
+
+    // ring of the most recent states, oldest at _start
+    private final long[] _times;
+    private final Vector3[] _positions;
+    private final Quaternion[] _rotations;
+    private int _start;
+    private int _count;
+
+    /**
+     * @param capacity number of states kept, enough to cover the delay at the rate updates arrive
+     * @param delayMillis how far in the past the transform is shown
+     * @param maxExtrapolationMillis how long to keep moving past the last state when updates are late
+     */
+    public InterpolationBuffer(int capacity, long delayMillis, long maxExtrapolationMillis) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("An interpolation buffer needs room for at least two states");
+        }
+        _delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        _maxExtrapolationNanos = TimeUnit.MILLISECONDS.toNanos(maxExtrapolationMillis);
+        _times = new long[capacity];
+        _positions = new Vector3[capacity];
+        _rotations = new Quaternion[capacity];
+    }
+
+    /**
+     * Add a state, states older than the latest are ignored.
+     *
+     * @param timeNanos when the state arrived, from System.nanoTime()
+     * @param position the position, or null if it is unchanged
+     * @param rotation the rotation, or null if it is unchanged
+     * @return false if the state was ignored or the buffer was empty and a position and rotation were not both given
+     */
+    public boolean add(long timeNanos, Vector3 position, Quaternion rotation) {
+        if (_count > 0) {
+            long latestTime = _times[index(_count - 1)];
+            if (timeNanos < latestTime) {
+                return false;
+            }
+            if (position == null) {
+                position = _positions[index(_count - 1)];
+            }
+            if (rotation == null) {
+                rotation = _rotations[index(_count - 1)];
+            }
+            if (timeNanos - latestTime > ResetAfterNanos) {
+                _start = 0;
+                _count = 0;
+            }
+        }
+        if (position == null || rotation == null) {
+            return false;
+        }
+
+        if (_count == _times.length) {
+            _start = index(1);
+            _count--;
+        }
+        int i = index(_count);
+        _times[i] = timeNanos;
+        _positions[i] = position;
+        _rotations[i] = rotation;
+        _count++;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return _count == 0;
+    }
+
+    /**
+     * Forget every state, e.g. when the object is moved some other way
+     */
+    public void clear() {
+        _start = 0;
+        _count = 0;
+    }
+
+    /**
+     * @param nowNanos the current time from System.nanoTime()
+     * @return the position to show at this time, or null if the buffer is empty
+     */
+    public Vector3 positionAt(long nowNanos) {
+        if (_count == 0) {
+            return null;
+        }
+
+        long renderTime = nowNanos - _delayNanos;
+        int before = indexAtOrBefore(renderTime);
+        if (before < 0) {
+            return _positions[index(0)];
+        }
+        if (before == _count - 1) {
+            return extrapolatedPosition(renderTime);
+        }
+
+        int from = index(before);
+        int to = index(before + 1);
+        return _positions[from].lerpTo(_positions[to], fraction(_times[from], _times[to], renderTime));
+    }
+
+    /**
+     * @param nowNanos the current time from System.nanoTime()
+     * @return the rotation to show at this time, or null if the buffer is empty
+     */
+    public Quaternion rotationAt(long nowNanos) {
+        if (_count == 0) {
+            return null;
+        }
+
+        long renderTime = nowNanos - _delayNanos;
+        int before = indexAtOrBefore(renderTime);
+        if (before < 0) {
+            return _rotations[index(0)];
+        }
+        if (before == _count - 1) {
+            return _rotations[index(before)]; // turning is not predicted, it is too easily overshot
+        }
+
+        int from = index(before);
+        int to = index(before + 1);
+        return slerp(_rotations[from], _rotations[to], fraction(_times[from], _times[to], renderTime));
+    }
+
+    /**
+     * Move a transform to where it should be shown at this time, does nothing if the buffer is empty
+     *
+     * @param transform the transform to move
+     * @param nowNanos the current time from System.nanoTime()
+     */
+    public void applyTo(TransformNode transform, long nowNanos) {
+        if (_count == 0) {
+            return;
+        }
+        transform.setTranslation(positionAt(nowNanos));
+        transform.setRotation(rotationAt(nowNanos));
+    }
+
+    private Vector3 extrapolatedPosition(long renderTime) {
+        int latest = index(_count - 1);
+        if (_count < 2) {
+            return _positions[latest];
+        }
+
+        int previous = index(_count - 2);
+        long interval = _times[latest] - _times[previous];
+        long ahead = Math.min(renderTime - _times[latest], _maxExtrapolationNanos);
+        if (interval <= 0 || ahead <= 0) {
+            return _positions[latest];
+        }
+        return _positions[previous].lerpTo(_positions[latest], 1 + (float) ahead / interval);
+    }
+
+    /**
+     * @return position in the buffer of the latest state at or before the time, or -1 if they are all after it
+     */
+    private int indexAtOrBefore(long time) {
+        for (int i = _count - 1; i >= 0; i--) {
+            if (_times[index(i)] <= time) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int index(int i) {
+        return (_start + i) % _times.length;
+    }
+
+    private static float fraction(long from, long to, long time) {
+        return to == from ? 1 : (float) (time - from) / (to - from);
+    }
+
+    /**
+     * Slerp along the shorter way round, <code>slerpTo</code> takes the longer way when the quaternions are in
+     * opposite hemispheres
+     */
+    private static Quaternion slerp(Quaternion from, Quaternion to, float t) {
+        if (from.x * to.x + from.y * to.y + from.z * to.z + from.w * to.w < 0) {
+            to = new Quaternion(-to.x, -to.y, -to.z, -to.w);
+        }
+        return from.slerpTo(to, t);
+    }
+}
@@ -7,8 +7,8 @@ import swen.adventure.engine.rendering.Material;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Thomas Roughton, Student ID 300313924, on 5/10/15.
@@ -16,7 +16,8 @@ import java.util.Map;
  */
 public class MaterialLibrary {
 
-    private static final Map<String, MaterialLibrary> _materialLibraries = new HashMap<>();
+    // shared by every world in the process
+    private static final Map<String, MaterialLibrary> _materialLibraries = new ConcurrentHashMap<>();
 
     private final Map<String, Material> _materials;
 
@@ -50,25 +51,23 @@ public class MaterialLibrary {
     }
 
     /**
-     * Returns the material library with a particular name and directory.
+     * Returns the material library with a particular name and directory. Safe to call from several threads, a library
+     * is only loaded once.
      * @param directory The directory in resources in which the mtllib file is located
      * @param fileName The name of the mttlib file, including its extension
      * @return The material library, or null if it can't be found.
      */
     public static MaterialLibrary libraryWithName(String directory, String fileName) {
         String libraryName = directory + File.separator + fileName;
-        MaterialLibrary library = _materialLibraries.get(libraryName);
-
-        if (library == null) {
+        return _materialLibraries.computeIfAbsent(libraryName, name -> {
             String path = Utilities.pathForResource(directory, fileName, null);
             try {
                 Map<String, Material> libraryMap = MTLParser.parse(new File(path), directory);
-                library = new MaterialLibrary(libraryMap);
-                _materialLibraries.put(libraryName, library);
+                return new MaterialLibrary(libraryMap);
             } catch (FileNotFoundException e) {
                 System.err.println("Error loading material library: " + e);
+                return null;
             }
-        }
-        return library;
+        });
     }
 }
\ No newline at end of file
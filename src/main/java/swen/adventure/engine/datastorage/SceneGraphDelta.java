@@ -0,0 +1,144 @@
+package swen.adventure.engine.datastorage;
+
+import org.w3c.dom.*;
+import swen.adventure.engine.Utilities;
+import swen.adventure.engine.scenegraph.SceneNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SceneGraphDelta remembers the serialized state of a freshly loaded level so a scene graph can later be
+ * serialized as only the nodes that have changed since then.
+ *
+ * Nodes are matched by id. A node that is new, has moved to another parent or has any attribute that differs
+ * from the baseline is written out along with the nodes above it, so the parser can still find its parent,
+ * while unchanged subtrees are left out. The result is ordinary scene graph xml, so a client that has loaded
+ * the same level applies it with <code>SceneGraphParser.parseSceneGraph(xml, existingGraph)</code> exactly
+ * as it would a full snapshot. Like a full snapshot, nodes removed since the baseline are not represented.
+ */
+public class SceneGraphDelta {
+
+    private static final String ID_ATTRIBUTE = "id";
+
+    // the baseline's xml elements by node id
+    private final Map<String, Element> baseline = new HashMap<>();
+
+    /**
+     * Take the baseline from a scene graph, this should be done straight after the level is loaded
+     * before anything in it has changed.
+     *
+     * @param pristineRoot root of the freshly loaded scene graph
+     */
+    public SceneGraphDelta(SceneNode pristineRoot) {
+        Document document = SceneGraphSerializer.serializeToDocument(pristineRoot);
+        NodeList elements = document.getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            if (element.hasAttribute(ID_ATTRIBUTE)) {
+                baseline.put(element.getAttribute(ID_ATTRIBUTE), element);
+            }
+        }
+    }
+
+    /**
+     * Serialize the nodes of the scene graph that differ from the baseline into a xml document.
+     *
+     * @param root root of the scene graph to serialize
+     * @return document holding the changed nodes and their ancestors
+     */
+    public Document serializeToDocument(SceneNode root) {
+        Document document = SceneGraphSerializer.serializeToDocument(root);
+        Element rootElement = document.getDocumentElement();
+        if (rootElement != null) {
+            retainChanged(rootElement);
+        }
+        return document;
+    }
+
+    /**
+     * Serialize the nodes of the scene graph that differ from the baseline into a OutputSteam.
+     *
+     * @param root root of the scene graph to serialize
+     * @param outputStream stream to save the xml result in
+     */
+    public void serializeToStream(SceneNode root, OutputStream outputStream) {
+        Utilities.writeOutDocument(serializeToDocument(root), outputStream);
+    }
+
+    /**
+     * Serialize the nodes of the scene graph that differ from the baseline into a String.
+     *
+     * @param root root of the scene graph to serialize
+     * @return a xml string holding the changed nodes
+     */
+    public String serializeToString(SceneNode root) {
+        ByteArrayOutputStream arrayOutputStream = new ByteArrayOutputStream();
+        serializeToStream(root, arrayOutputStream);
+        return new String(arrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Remove every child subtree that contains no changes.
+     *
+     * @param element element to prune the children of
+     * @return true iff the element or any of its descendants has changed
+     */
+    private boolean retainChanged(Element element) {
+        boolean retain = hasChanged(element);
+
+        Node child = element.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child instanceof Element && retainChanged((Element) child)) {
+                retain = true;
+            } else {
+                element.removeChild(child);
+            }
+            child = next;
+        }
+
+        return retain;
+    }
+
+    /**
+     * Returns the result of whether the element differs from the element with the same id in the baseline.
+     *
+     * @param element element to test
+     * @return true iff the element is new, has a different parent or has different attributes
+     */
+    private boolean hasChanged(Element element) {
+        if (!element.hasAttribute(ID_ATTRIBUTE)) {
+            return false; // the root, which is always there
+        }
+
+        Element original = baseline.get(element.getAttribute(ID_ATTRIBUTE));
+        if (original == null
+                || !original.getTagName().equals(element.getTagName())
+                || !parentId(original).equals(parentId(element))) {
+            return true;
+        }
+
+        NamedNodeMap attributes = element.getAttributes();
+        NamedNodeMap originalAttributes = original.getAttributes();
+        if (attributes.getLength() != originalAttributes.getLength()) {
+            return true;
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            Node originalAttribute = originalAttributes.getNamedItem(attribute.getNodeName());
+            if (originalAttribute == null || !originalAttribute.getNodeValue().equals(attribute.getNodeValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String parentId(Element element) {
+        Node parent = element.getParentNode();
+        return parent instanceof Element ? ((Element) parent).getAttribute(ID_ATTRIBUTE) : "";
+    }
+}
@@ -52,6 +52,7 @@ public class SceneGraphParser {
     private static final String CONTAINER_TAG = "Container";
     private static final String LEVER_TAG = "Lever";
     private static final String DOOR_TAG = "Door";
+    private static final String CHEST_TAG = "Chest";
     private static final String INVENTORY_TAG = "Inventory";
 
     @FunctionalInterface
@@ -185,6 +186,8 @@ public class SceneGraphParser {
                 return parseLever(xmlNode, parent);
             case DOOR_TAG:
                 return parseDoor(xmlNode, parent, executeAfter);
+            case CHEST_TAG:
+                return parseChest(xmlNode, parent);
             case INVENTORY_TAG:
                 return parseInventory(xmlNode, parent);
             case REGION_TAG:
@@ -241,6 +244,23 @@ public class SceneGraphParser {
         return lever;
     }
 
+    /**
+     * Construct a chest node from its xml representation.
+     *
+     * @param xmlNode node from the xml document which represents a chest node.
+     * @param parent the transform node which will be set as the newly constructed node's parent.
+     * @return a newly constructed chest node with the same state as represented in the xml node.
+     */
+    private static SceneNode parseChest(Node xmlNode, TransformNode parent) {
+        Chest chest = parseGameObject(xmlNode, parent, Chest.class);
+        boolean isOpen = getAttribute("isOpen", xmlNode, Boolean.class, false);
+        // a chest is made closed, so only a change needs restoring, leaving the lid of a new closed chest as it is
+        if (isOpen != chest.isOpen()) {
+            chest.setIsOpen(isOpen);
+        }
+        return chest;
+    }
+
     /**
      * Construct a door node from its xml representation.
      *
@@ -18,6 +18,8 @@ import swen.adventure.game.scenenodes.*;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -28,8 +30,8 @@ import java.util.stream.Collectors;
  */
 public class SceneGraphSerializer {
 
-    // xml document which will be mutated by saving serialized SceneNodes into it
-    private final Document document = Utilities.createDocument();
+    // stands in for the xml document, the root's element is added to it by saving serialized SceneNodes into it
+    private final CapturedElement document = new CapturedElement(null);
 
     /**
      * Serialize SceneGraph into a file.
@@ -65,21 +67,104 @@ public class SceneGraphSerializer {
      * @param outputStream stream to save the xml result in
      */
     public static void serializeToStream(SceneNode root, OutputStream outputStream) {
-        new SceneGraphSerializer().start(root, outputStream);
+        capture(root).writeTo(outputStream);
     }
 
-    /** Don't allow outside classes to create instances */
-    private SceneGraphSerializer(){
+    /**
+     * Serialize SceneGraph into a xml document.
+     * Note that the SceneNode passed in should be the root.
+     *
+     * @param root root of the of scene graph to serialize
+     * @return a document holding the serialized graph
+     */
+    public static Document serializeToDocument(SceneNode root) {
+        return capture(root).toDocument();
     }
 
     /**
-     * Start the serialization of the tree into the given output stream.
-     * @param root the root of the scene graph to serialize
-     * @param outputStream stream to save the resulting xml into
-     */
-    private void start(SceneNode root, OutputStream outputStream) {
-        serializeSceneNode(root, document);
-        Utilities.writeOutDocument(document, outputStream, true);
+     * Capture the state of the SceneGraph so it can be serialized later, on any thread, while the graph goes on
+     * changing. Capturing only copies references to the nodes' values, which are immutable, so it is much
+     * cheaper than serializing; turning the values into strings and building the xml is left to the capture.
+     * Note that the SceneNode passed in should be the root.
+     *
+     * @param root root of the of scene graph to capture
+     * @return the captured state
+     */
+    public static Capture capture(SceneNode root) {
+        SceneGraphSerializer serializer = new SceneGraphSerializer();
+        serializer.serializeSceneNode(root, serializer.document);
+        return new Capture(serializer.document);
+    }
+
+    /**
+     * The state of a SceneGraph at the time it was captured, ready to be serialized.
+     */
+    public static class Capture {
+        private final CapturedElement document;
+
+        private Capture(CapturedElement document) {
+            this.document = document;
+        }
+
+        /**
+         * Serialize the captured state into a xml document.
+         *
+         * @return a document holding the serialized graph
+         */
+        public Document toDocument() {
+            Document xmlDocument = Utilities.createDocument();
+            for (CapturedElement child : document.children) {
+                child.appendTo(xmlDocument, xmlDocument);
+            }
+            return xmlDocument;
+        }
+
+        /**
+         * Serialize the captured state into a OutputSteam.
+         *
+         * @param outputStream stream to save the xml result in
+         */
+        public void writeTo(OutputStream outputStream) {
+            Utilities.writeOutDocument(toDocument(), outputStream, true);
+        }
+    }
+
+    /**
+     * An xml element waiting to be made, with the values of its attributes not yet converted to strings.
+     */
+    private static class CapturedElement {
+        private final String tagName;
+        private final List<String> names = new ArrayList<>(4);
+        private final List<Object> values = new ArrayList<>(4);
+        private final List<Class<?>> classes = new ArrayList<>(4); // null for values that are already strings
+        private final List<CapturedElement> children = new ArrayList<>();
+
+        CapturedElement(String tagName) {
+            this.tagName = tagName;
+        }
+
+        void setAttribute(String name, Object value, Class<?> class0) {
+            names.add(name);
+            values.add(value);
+            classes.add(class0);
+        }
+
+        void appendTo(Document xmlDocument, Node xmlParentNode) {
+            Element xmlElement = xmlDocument.createElement(tagName);
+            for (int i = 0; i < names.size(); i++) {
+                Class<?> class0 = classes.get(i);
+                String value = class0 == null ? (String) values.get(i) : parseToString(values.get(i), class0);
+                xmlElement.setAttribute(names.get(i), value);
+            }
+            xmlParentNode.appendChild(xmlElement);
+            for (CapturedElement child : children) {
+                child.appendTo(xmlDocument, xmlElement);
+            }
+        }
+    }
+
+    /** Don't allow outside classes to create instances */
+    private SceneGraphSerializer(){
     }
 
     /**
@@ -90,8 +175,8 @@ public class SceneGraphSerializer {
      * @param sceneNode node to serialize
      * @param xmlParentNode the xml node which belongs to this node's parent.
      */
-    private void serializeSceneNode(SceneNode sceneNode, Node xmlParentNode) {
-        Node serializedNode; // save the this node's xml node so it can be parsed in as the parent for its children.
+    private void serializeSceneNode(SceneNode sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement serializedNode; // save the this node's xml node so it can be parsed in as the parent for its children.
 
         if (isRoot(sceneNode))
             serializedNode = serializeRoot(xmlParentNode);
@@ -162,8 +247,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializedInventoryNode(Inventory sceneNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(sceneNode, xmlParentNode);
+    private CapturedElement serializedInventoryNode(Inventory sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(sceneNode, xmlParentNode);
         setAttribute("selectedSlot", sceneNode.selectedSlot(), Integer.class, xmlElement);
         setAttribute("capacity", sceneNode.capacity(), Integer.class, xmlElement);
         setAttribute("showTopItem", sceneNode.getShowTopItem(), Boolean.class, xmlElement);
@@ -177,8 +262,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeContainerNode(Container containerNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(containerNode, xmlParentNode);
+    private CapturedElement serializeContainerNode(Container containerNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(containerNode, xmlParentNode);
         setAttribute("capacity", containerNode.capacity(), Integer.class, xmlElement);
         setAttribute("showTopItem", containerNode.getShowTopItem(), Boolean.class, xmlElement);
         return xmlElement;
@@ -191,8 +276,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeItemNode(Item itemNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(itemNode, xmlParentNode);
+    private CapturedElement serializeItemNode(Item itemNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(itemNode, xmlParentNode);
 
         itemNode.containingContainer()
                 .map(container -> container.id)
@@ -224,8 +309,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeLeverNode(Lever leverNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(leverNode, xmlParentNode);
+    private CapturedElement serializeLeverNode(Lever leverNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(leverNode, xmlParentNode);
         setAttribute("isDown", leverNode.isDown(), Boolean.class, xmlElement);
         return xmlElement;
     }
@@ -288,7 +373,7 @@ public class SceneGraphSerializer {
      * @param xmlParentNode the xml node of the parent (in this case it will be the document itself)
      * @return the xml node corresponding to this root
      */
-    private Node serializeRoot(Node xmlParentNode) {
+    private CapturedElement serializeRoot(CapturedElement xmlParentNode) {
         return createElement("root", xmlParentNode);
     }
 
@@ -299,8 +384,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeTransformNode(TransformNode transformNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(transformNode, xmlParentNode);
+    private CapturedElement serializeTransformNode(TransformNode transformNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(transformNode, xmlParentNode);
         setAttribute("translation", transformNode.translation(), Vector3.class, xmlElement);
         setAttribute("rotation", transformNode.rotation(), Quaternion.class, xmlElement);
         setAttribute("scale", transformNode.scale(), Vector3.class, xmlElement);
@@ -315,8 +400,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeMeshNode(MeshNode meshNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(meshNode, xmlParentNode);
+    private CapturedElement serializeMeshNode(MeshNode meshNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(meshNode, xmlParentNode);
         setAttribute("isCollidable", meshNode.isCollidable(), Boolean.class, xmlElement);
 
         return xmlElement;
@@ -329,8 +414,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeAmbientLightNode(Light lightNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode("AmbientLight", lightNode, xmlParentNode);
+    private CapturedElement serializeAmbientLightNode(Light lightNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode("AmbientLight", lightNode, xmlParentNode);
         setAttribute("colour", lightNode.getColour(), Vector3.class, xmlElement);
         setAttribute("intensity", lightNode.getIntensity(), Float.class, xmlElement);
         return xmlElement;
@@ -343,8 +428,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeDirectionalLightNode(Light lightNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode("DirectionalLight", lightNode, xmlParentNode);
+    private CapturedElement serializeDirectionalLightNode(Light lightNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode("DirectionalLight", lightNode, xmlParentNode);
         setAttribute("colour", lightNode.getColour(), Vector3.class, xmlElement);
         setAttribute("intensity", lightNode.getIntensity(), Float.class, xmlElement);
         setAttribute("fromDirection", lightNode.getDirection().get(), Vector3.class, xmlElement);
@@ -358,8 +443,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializePointLightNode(Light lightNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode("PointLight", lightNode, xmlParentNode);
+    private CapturedElement serializePointLightNode(Light lightNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode("PointLight", lightNode, xmlParentNode);
         setAttribute("colour", lightNode.getColour(), Vector3.class, xmlElement);
         setAttribute("intensity", lightNode.getIntensity(), Float.class, xmlElement);
         setAttribute("falloff", lightNode.getFalloff().toString(), xmlElement);
@@ -373,7 +458,7 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeCameraNode(CameraNode cameraNode, Node xmlParentNode) {
+    private CapturedElement serializeCameraNode(CameraNode cameraNode, CapturedElement xmlParentNode) {
         return createElementForNode(cameraNode, xmlParentNode);
     }
 
@@ -384,8 +469,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializePlayerNode(Player playerNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(playerNode, xmlParentNode);
+    private CapturedElement serializePlayerNode(Player playerNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(playerNode, xmlParentNode);
 
         playerNode.collisionNode().ifPresent(collisionNode ->
                 setAttribute("boundingBox", collisionNode.boundingBox(), BoundingBox.class, xmlElement));
@@ -400,8 +485,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeFlickeringLightNode(FlickeringLight flickeringLightNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(flickeringLightNode, xmlParentNode);
+    private CapturedElement serializeFlickeringLightNode(FlickeringLight flickeringLightNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(flickeringLightNode, xmlParentNode);
         setAttribute("colour", flickeringLightNode.getColour(), Vector3.class, xmlElement);
         setAttribute("intensity", flickeringLightNode.getIntensity(), Float.class, xmlElement);
         setAttribute("falloff", flickeringLightNode.getFalloff().toString(), xmlElement);
@@ -418,8 +503,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializePuzzle(Puzzle sceneNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(sceneNode, xmlParentNode);
+    private CapturedElement serializePuzzle(Puzzle sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(sceneNode, xmlParentNode);
         setAttribute("id", sceneNode.id, xmlElement);
         setAttribute("conditions", sceneNode.getConditionSource(), xmlElement);
         return xmlElement;
@@ -432,8 +517,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeKey(Key sceneNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(sceneNode, xmlParentNode);
+    private CapturedElement serializeKey(Key sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(sceneNode, xmlParentNode);
         setAttribute("id", sceneNode.id, xmlElement);
         setAttribute("enabled", Boolean.toString(sceneNode.isEnabled()), xmlElement);
         sceneNode.containingContainer()
@@ -450,8 +535,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeSpawnNode(SpawnNode sceneNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(sceneNode, xmlParentNode);
+    private CapturedElement serializeSpawnNode(SpawnNode sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(sceneNode, xmlParentNode);
         setAttribute("id", sceneNode.id, xmlElement);
         return xmlElement;
     }
@@ -463,9 +548,10 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeChest(Chest sceneNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(sceneNode, xmlParentNode);
+    private CapturedElement serializeChest(Chest sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(sceneNode, xmlParentNode);
         setAttribute("id", sceneNode.id, xmlElement);
+        setAttribute("isOpen", sceneNode.isOpen(), Boolean.class, xmlElement);
         return xmlElement;
     }
 
@@ -476,8 +562,8 @@ public class SceneGraphSerializer {
      * @param xmlParentNode xml node corresponding to this node's parent
      * @return xml node corresponding to this SceneGraph node
      */
-    private Node serializeDoor(Door sceneNode, Node xmlParentNode) {
-        Element xmlElement = createElementForNode(sceneNode, xmlParentNode);
+    private CapturedElement serializeDoor(Door sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement xmlElement = createElementForNode(sceneNode, xmlParentNode);
         setAttribute("id", sceneNode.id, xmlElement);
         setAttribute("enabled", sceneNode.isEnabled(), Boolean.class, xmlElement);
         setAttribute("isOpen", sceneNode.isOpen(), Boolean.class, xmlElement);
@@ -500,8 +586,9 @@ public class SceneGraphSerializer {
      * @param class0 class of the object
      * @return the result of applying the class's toString function on the object
      */
-    private <T> String parseToString(T object, Class<T> class0) {
-        return ParserManager.getToStringFunction(class0).apply(object);
+    @SuppressWarnings("unchecked")
+    private static <T> String parseToString(Object object, Class<T> class0) {
+        return ParserManager.getToStringFunction(class0).apply((T) object);
     }
     
     /**
@@ -511,20 +598,22 @@ public class SceneGraphSerializer {
      * @param value value of the attribute
      * @param xmlElement element to set the attribute on
      */
-    private void setAttribute(String name, String value, Element xmlElement) {
-        xmlElement.setAttribute(name, value);
+    private void setAttribute(String name, String value, CapturedElement xmlElement) {
+        xmlElement.setAttribute(name, value, null);
     }
 
     /**
      * Set an attribute on a xmlElement with the given value.
      *
+     * The object is only converted into a string when the xml is made, so it must not change.
+     *
      * @param name key of the attribute
      * @param object object to convert into a string which will be assigned as the value
      * @param class0 class object denoting the type of the object
      * @param xmlElement element to set the attribute on
      */
-    private <T> void setAttribute(String name, T object, Class<T> class0, Element xmlElement) {
-        setAttribute(name, parseToString(object, class0), xmlElement);
+    private <T> void setAttribute(String name, T object, Class<T> class0, CapturedElement xmlElement) {
+        xmlElement.setAttribute(name, object, class0);
     }
 
     /**
@@ -534,9 +623,9 @@ public class SceneGraphSerializer {
      * @param xmlParentNode the node which will parent the newly created node
      * @return the newly created node
      */
-    private Element createElement(String tagName, Node xmlParentNode) {
-        Element newElement = document.createElement(tagName);
-        xmlParentNode.appendChild(newElement);
+    private CapturedElement createElement(String tagName, CapturedElement xmlParentNode) {
+        CapturedElement newElement = new CapturedElement(tagName);
+        xmlParentNode.children.add(newElement);
         return newElement;
     }
 
@@ -548,7 +637,7 @@ public class SceneGraphSerializer {
      * @param xmlParentNode the node which will parent the newly created node.
      * @return the newly created node.
      */
-    private Element createElementForNode(SceneNode sceneNode, Node xmlParentNode) {
+    private CapturedElement createElementForNode(SceneNode sceneNode, CapturedElement xmlParentNode) {
         String tagName = sceneNode.getClass().getSimpleName();
         return createElementForNode(tagName, sceneNode, xmlParentNode);
     }
@@ -562,9 +651,9 @@ public class SceneGraphSerializer {
      * @param xmlParentNode the node which will parent the newly created node.
      * @return the newly created node.
      */
-    private Element createElementForNode(String tagName, SceneNode sceneNode, Node xmlParentNode) {
-        Element newNode = createElement(tagName, xmlParentNode);
-        newNode.setAttribute("id", sceneNode.id);
+    private CapturedElement createElementForNode(String tagName, SceneNode sceneNode, CapturedElement xmlParentNode) {
+        CapturedElement newNode = createElement(tagName, xmlParentNode);
+        setAttribute("id", sceneNode.id, newNode);
         return newNode;
     }
 
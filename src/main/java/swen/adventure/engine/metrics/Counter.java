@@ -0,0 +1,25 @@
+package swen.adventure.engine.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, such as the number of events processed. Cheap to add to from many threads at once.
+ */
+public class Counter {
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * @param amount amount to add, should not be negative
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
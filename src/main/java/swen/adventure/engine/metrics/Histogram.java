@@ -0,0 +1,100 @@
+package swen.adventure.engine.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Records a distribution of non-negative long values, such as durations in nanoseconds, in a fixed amount of
+ * memory so percentiles can be read off cheaply.
+ *
+ * Values are counted in buckets that double in width every eight buckets, so a percentile is accurate to
+ * within an eighth of its value. All methods are thread safe.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * @param value value to record, negative values are recorded as zero
+     */
+    public synchronized void record(long value) {
+        value = Math.max(0, value);
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the smallest recorded value that the given percent of values are at or below, rounded up to
+     *         the top of its bucket, or 0 when nothing has been recorded
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long max() {
+        return max;
+    }
+
+    public synchronized long sum() {
+        return sum;
+    }
+
+    public synchronized double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Forget everything that has been recorded
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long highest = lowest + width - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest; // the top buckets overflow
+    }
+}
@@ -0,0 +1,69 @@
+package swen.adventure.engine.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the metrics of a registry as plain text over HTTP, e.g. <code>curl localhost:9100/metrics</code>.
+ * It only listens on the loopback address so the figures are not visible from other machines.
+ */
+public class MetricsEndpoint {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final HttpServer httpServer;
+
+    /**
+     * @param registry metrics to serve
+     * @param port port to listen on, 0 for any free port
+     * @throws IOException if the port could not be bound
+     */
+    public MetricsEndpoint(MetricsRegistry registry, int port) throws IOException {
+        this.registry = registry;
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/", this::handle);
+    }
+
+    /**
+     * Start answering requests on a background thread
+     */
+    public void start() {
+        httpServer.start();
+        System.out.println("Metrics: serving on " + httpServer.getAddress());
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+    }
+
+    /**
+     * @return the port being listened on
+     */
+    public int port() {
+        return httpServer.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = registry.expose().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
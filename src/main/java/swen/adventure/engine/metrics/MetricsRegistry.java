@@ -0,0 +1,259 @@
+package swen.adventure.engine.metrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and histograms, written out together as plain text in the Prometheus exposition format
+ * so they can be read by eye or scraped.
+ *
+ * A name may carry labels, e.g. <code>server_events_total{event="PlayerMoved"}</code>, use {@link #name} to
+ * build one. Metrics are looked up by name so it is best to keep hold of a counter or histogram rather than
+ * asking for it again every time it is used.
+ */
+public class MetricsRegistry {
+
+    /**
+     * Supplies figures that are only known when they are read, such as one per connected client
+     */
+    public interface Collector {
+        /**
+         * @param samples map to put the current value of each figure in, by name
+         */
+        void collect(Map<String, Number> samples);
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+    /**
+     * Build a metric name with one label
+     *
+     * @param family name of the metric
+     * @param label name of the label
+     * @param value value of the label
+     * @return the name with the label added
+     */
+    public static String name(String family, String label, String value) {
+        return withLabel(family, label, value);
+    }
+
+    /**
+     * A view of this registry that adds a label to the name of everything registered through it, so several
+     * instances of a component can share one registry, e.g. one per shard
+     *
+     * @param label name of the label
+     * @param value value of the label for this view
+     * @return the view
+     */
+    public MetricsRegistry labelled(String label, String value) {
+        return new Labelled(this, label, value);
+    }
+
+    /**
+     * @param name name of the counter
+     * @return the counter with this name, created if there is not one yet
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * Register a value that is read each time the metrics are written out, replacing any gauge with the same name
+     *
+     * @param name name of the gauge
+     * @param value reads the current value, must be thread safe
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @param name name of the histogram
+     * @return the histogram with this name, created if there is not one yet
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Register a histogram that is already being recorded in, replacing any histogram with the same name
+     *
+     * @param name name of the histogram
+     * @param histogram the histogram
+     */
+    public void register(String name, Histogram histogram) {
+        histograms.put(name, histogram);
+    }
+
+    /**
+     * @param collector called each time the metrics are written out
+     */
+    public void register(Collector collector) {
+        collectors.add(collector);
+    }
+
+    /**
+     * Write every metric out as text, counters then gauges then histograms, each in order of name with every
+     * sample of a family together under one type line. Histograms are written as summaries with their quantiles,
+     * sum and count, each family followed by the maximums of its histograms.
+     *
+     * @param out builder to append to
+     */
+    public void writeTo(StringBuilder out) {
+        SortedMap<String, StringBuilder> families = new TreeMap<>();
+        for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+            sample(families, familyOf(counter.getKey()), counter.getKey(), counter.getValue().get());
+        }
+        for (Map.Entry<String, StringBuilder> family : families.entrySet()) {
+            writeFamily(out, family.getKey(), "counter", family.getValue());
+        }
+
+        SortedMap<String, Number> gauges = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : this.gauges.entrySet()) {
+            gauges.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        for (Collector collector : collectors) {
+            collector.collect(gauges);
+        }
+        families.clear();
+        for (Map.Entry<String, Number> gauge : gauges.entrySet()) {
+            sample(families, familyOf(gauge.getKey()), gauge.getKey(), gauge.getValue());
+        }
+        for (Map.Entry<String, StringBuilder> family : families.entrySet()) {
+            writeFamily(out, family.getKey(), "gauge", family.getValue());
+        }
+
+        families.clear();
+        SortedMap<String, StringBuilder> maximums = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            String name = entry.getKey();
+            String family = familyOf(name);
+            Histogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                sample(families, family, withLabel(name, "quantile", String.valueOf(quantile)),
+                        histogram.percentile(quantile * 100));
+            }
+            sample(families, family, withSuffix(name, "_sum"), histogram.sum());
+            sample(families, family, withSuffix(name, "_count"), histogram.count());
+            sample(maximums, family, withSuffix(name, "_max"), histogram.max());
+        }
+        for (Map.Entry<String, StringBuilder> family : families.entrySet()) {
+            writeFamily(out, family.getKey(), "summary", family.getValue());
+            writeFamily(out, family.getKey() + "_max", "gauge", maximums.get(family.getKey()));
+        }
+    }
+
+    /**
+     * @return every metric as text
+     * @see #writeTo(StringBuilder)
+     */
+    public String expose() {
+        StringBuilder out = new StringBuilder();
+        writeTo(out);
+        return out.toString();
+    }
+
+    /**
+     * Add one sample to the samples of its family
+     */
+    private static void sample(Map<String, StringBuilder> families, String family, String name, Number value) {
+        families.computeIfAbsent(family, f -> new StringBuilder())
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void writeFamily(StringBuilder out, String family, String type, CharSequence samples) {
+        out.append("# TYPE ").append(family).append(' ').append(type).append('\n').append(samples);
+    }
+
+    private static String familyOf(String name) {
+        int labels = name.indexOf('{');
+        return labels < 0 ? name : name.substring(0, labels);
+    }
+
+    private static String withLabel(String name, String label, String value) {
+        String pair = label + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+        if (name.endsWith("}")) {
+            return name.substring(0, name.length() - 1) + ',' + pair + '}';
+        }
+        return name + '{' + pair + '}';
+    }
+
+    private static String withSuffix(String name, String suffix) {
+        String family = familyOf(name);
+        return family + suffix + name.substring(family.length());
+    }
+
+    /**
+     * Registers everything in the registry it is a view of, under labelled names
+     */
+    private static class Labelled extends MetricsRegistry {
+        private final MetricsRegistry registry;
+        private final String label;
+        private final String value;
+
+        Labelled(MetricsRegistry registry, String label, String value) {
+            this.registry = registry;
+            this.label = label;
+            this.value = value;
+        }
+
+        private String labelled(String name) {
+            return withLabel(name, label, value);
+        }
+
+        @Override
+        public Counter counter(String name) {
+            return registry.counter(labelled(name));
+        }
+
+        @Override
+        public void gauge(String name, LongSupplier value) {
+            registry.gauge(labelled(name), value);
+        }
+
+        @Override
+        public Histogram histogram(String name) {
+            return registry.histogram(labelled(name));
+        }
+
+        @Override
+        public void register(String name, Histogram histogram) {
+            registry.register(labelled(name), histogram);
+        }
+
+        @Override
+        public void register(Collector collector) {
+            registry.register(samples -> {
+                Map<String, Number> own = new HashMap<>();
+                collector.collect(own);
+                for (Map.Entry<String, Number> sample : own.entrySet()) {
+                    samples.put(labelled(sample.getKey()), sample.getValue());
+                }
+            });
+        }
+
+        @Override
+        public MetricsRegistry labelled(String label, String value) {
+            return new Labelled(this, label, value);
+        }
+
+        /**
+         * Writes out the whole registry this is a view of
+         */
+        @Override
+        public void writeTo(StringBuilder out) {
+            registry.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package swen.adventure.engine.network;
+
+import swen.adventure.engine.datastorage.ParserManager;
+import swen.adventure.engine.rendering.maths.BoundingBox;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.rendering.maths.Vector4;
+import swen.adventure.game.InteractionType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of EventBoxes.
+ *
+ * A payload starts with the VERSION byte, which can never start the text format, followed by the event
+ * name, source, target and sender, then a varint count of data entries each made of a key, a one byte
+ * type tag and the value.
+ *
+ * Strings are written as a varint header whose low two bits say how the string is stored: null, a
+ * reference to a string in the dictionary, a literal that should be added to the dictionary or a literal
+ * that should not. Each connection has one codec so the dictionary learns the event names and node ids
+ * sent on that connection, after the first time they are only an index.
+ *
+ * Decoding falls back to the text format for payloads that do not start with the version byte, so a peer
+ * can always be read whichever format it has chosen to send.
+ */
+class BinaryEventBoxCodec implements EventBoxCodec {
+
+    /**
+     * First byte of every binary payload, bumped when the format changes
+     */
+    static final byte VERSION = 1;
+
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+    private static final int MAX_DICTIONARY_STRING = 64;
+
+    // String headers
+    private static final int STRING_NULL = 0;
+    private static final int STRING_REFERENCE = 1;
+    private static final int STRING_DEFINE = 2;
+    private static final int STRING_INLINE = 3;
+
+    // Value type tags
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_FLOAT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_VECTOR3 = 6;
+    private static final byte TYPE_VECTOR4 = 7;
+    private static final byte TYPE_QUATERNION = 8;
+    private static final byte TYPE_BOUNDING_BOX = 9;
+    private static final byte TYPE_INTERACTION_TYPE = 10;
+    private static final byte TYPE_STRING_ARRAY = 11;
+    /**
+     * Any other type ParserManager knows, written as its class name and parsed string
+     */
+    private static final byte TYPE_PARSED = 12;
+
+    private static final InteractionType[] INTERACTION_TYPES = InteractionType.values();
+
+    // strings this side has defined, guarded by the codec's monitor
+    private final Map<String, Integer> encodeDictionary = new HashMap<>();
+    // strings the peer has defined, only used by the reading thread
+    private final List<String> decodeDictionary = new ArrayList<>();
+
+    /**
+     * Encode the event, adding repeated strings to this connection's dictionary.
+     * The payload must be sent before any payload encoded after it.
+     *
+     * @param box event to encode
+     * @return binary payload
+     */
+    @Override
+    public synchronized byte[] encode(EventBox box) {
+        return encode(box, encodeDictionary);
+    }
+
+    /**
+     * Encode the event without using a dictionary, the payload can be decoded by any connection
+     *
+     * @param box event to encode
+     * @return binary payload
+     */
+    static byte[] encodeStateless(EventBox box) {
+        return encode(box, null);
+    }
+
+    @Override
+    public EventBox decode(ByteBuffer payload) throws IOException {
+        if (!payload.hasRemaining() || payload.get(payload.position()) != VERSION) {
+            return TEXT.decode(payload);
+        }
+
+        try {
+            payload.get(); // version
+            String eventName = readString(payload);
+            String sourceId = readString(payload);
+            String targetId = readString(payload);
+            String from = readString(payload);
+
+            int entries = readVarint(payload);
+            Map<String, Object> data = new HashMap<>();
+            for (int i = 0; i < entries; i++) {
+                String key = readString(payload);
+                data.put(key, readValue(payload));
+            }
+            return new EventBox(eventName, sourceId, targetId, from, data);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new IOException("Malformed binary event: " + ex, ex);
+        }
+    }
+
+    private static byte[] encode(EventBox box, Map<String, Integer> dictionary) {
+        Output out = new Output();
+        out.write(VERSION);
+        writeString(out, box.eventName, dictionary);
+        writeString(out, box.sourceId, dictionary);
+        writeString(out, box.targetId, dictionary);
+        writeString(out, box.from, dictionary);
+
+        out.writeVarint(box.eventData.size());
+        for (Map.Entry<String, Object> entry : box.eventData.entrySet()) {
+            writeString(out, entry.getKey(), dictionary);
+            writeValue(out, entry.getValue(), dictionary);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeString(Output out, String s, Map<String, Integer> dictionary) {
+        if (s == null) {
+            out.writeVarint(STRING_NULL);
+            return;
+        }
+
+        if (dictionary != null) {
+            Integer index = dictionary.get(s);
+            if (index != null) {
+                out.writeVarint(index << 2 | STRING_REFERENCE);
+                return;
+            }
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (dictionary != null && dictionary.size() < MAX_DICTIONARY_SIZE && s.length() <= MAX_DICTIONARY_STRING) {
+            dictionary.put(s, dictionary.size());
+            out.writeVarint(bytes.length << 2 | STRING_DEFINE);
+        } else {
+            out.writeVarint(bytes.length << 2 | STRING_INLINE);
+        }
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private String readString(ByteBuffer in) {
+        int header = readVarint(in);
+        switch (header & 3) {
+            case STRING_NULL:
+                return null;
+            case STRING_REFERENCE:
+                return decodeDictionary.get(header >>> 2);
+            default:
+                int length = readLength(in, header >>> 2);
+                String s;
+                if (in.hasArray()) {
+                    s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                    in.position(in.position() + length);
+                } else {
+                    byte[] bytes = new byte[length];
+                    in.get(bytes);
+                    s = new String(bytes, StandardCharsets.UTF_8);
+                }
+                if ((header & 3) == STRING_DEFINE) {
+                    // the encoder never defines more than this, so a peer that does is trying to use up memory
+                    if (decodeDictionary.size() >= MAX_DICTIONARY_SIZE || s.length() > MAX_DICTIONARY_STRING) {
+                        throw new IllegalArgumentException("String definition past the dictionary limits");
+                    }
+                    decodeDictionary.add(s);
+                }
+                return s;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(Output out, Object value, Map<String, Integer> dictionary) {
+        if (value == null) {
+            out.write(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.write(TYPE_STRING);
+            writeString(out, (String) value, dictionary);
+        } else if (value instanceof Integer) {
+            out.write(TYPE_INTEGER);
+            out.writeVarint(zigZag((Integer) value));
+        } else if (value instanceof Float) {
+            out.write(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Long) {
+            out.write(TYPE_LONG);
+            out.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Boolean) {
+            out.write(TYPE_BOOLEAN);
+            out.write((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof Vector3) {
+            Vector3 v = (Vector3) value;
+            out.write(TYPE_VECTOR3);
+            out.writeFloat(v.x);
+            out.writeFloat(v.y);
+            out.writeFloat(v.z);
+        } else if (value instanceof Vector4) {
+            Vector4 v = (Vector4) value;
+            out.write(TYPE_VECTOR4);
+            out.writeFloat(v.x);
+            out.writeFloat(v.y);
+            out.writeFloat(v.z);
+            out.writeFloat(v.w);
+        } else if (value instanceof Quaternion) {
+            Quaternion q = (Quaternion) value;
+            out.write(TYPE_QUATERNION);
+            out.writeFloat(q.x);
+            out.writeFloat(q.y);
+            out.writeFloat(q.z);
+            out.writeFloat(q.w);
+        } else if (value instanceof BoundingBox) {
+            BoundingBox b = (BoundingBox) value;
+            out.write(TYPE_BOUNDING_BOX);
+            out.writeFloat(b.minPoint.x);
+            out.writeFloat(b.minPoint.y);
+            out.writeFloat(b.minPoint.z);
+            out.writeFloat(b.maxPoint.x);
+            out.writeFloat(b.maxPoint.y);
+            out.writeFloat(b.maxPoint.z);
+        } else if (value instanceof InteractionType) {
+            out.write(TYPE_INTERACTION_TYPE);
+            out.writeVarint(((InteractionType) value).ordinal());
+        } else if (value instanceof String[]) {
+            String[] strings = (String[]) value;
+            out.write(TYPE_STRING_ARRAY);
+            out.writeVarint(strings.length);
+            for (String s : strings) {
+                writeString(out, s, dictionary);
+            }
+        } else {
+            out.write(TYPE_PARSED);
+            writeString(out, value.getClass().getName(), dictionary);
+            writeString(out, ParserManager.convertToString(value, (Class) value.getClass()), null);
+        }
+    }
+
+    private Object readValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_INTEGER:
+                return unZigZag(readVarint(in));
+            case TYPE_FLOAT:
+                return in.getFloat();
+            case TYPE_LONG:
+                return unZigZag(readVarLong(in));
+            case TYPE_BOOLEAN:
+                return in.get() != 0;
+            case TYPE_VECTOR3:
+                return new Vector3(in.getFloat(), in.getFloat(), in.getFloat());
+            case TYPE_VECTOR4:
+                return new Vector4(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat());
+            case TYPE_QUATERNION:
+                return new Quaternion(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat());
+            case TYPE_BOUNDING_BOX:
+                return new BoundingBox(new Vector3(in.getFloat(), in.getFloat(), in.getFloat()),
+                        new Vector3(in.getFloat(), in.getFloat(), in.getFloat()));
+            case TYPE_INTERACTION_TYPE:
+                return INTERACTION_TYPES[readVarint(in)];
+            case TYPE_STRING_ARRAY:
+                String[] strings = new String[readLength(in, readVarint(in))];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = readString(in);
+                }
+                return strings;
+            case TYPE_PARSED:
+                String className = readString(in);
+                String value = readString(in);
+                try {
+                    return ParserManager.convertFromString(value, Class.forName(className));
+                } catch (ClassNotFoundException ex) {
+                    throw new IllegalArgumentException("Unknown class " + className);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown type tag " + type);
+        }
+    }
+
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static int unZigZag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static long unZigZag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * Check a length read from the peer before allocating for it, each byte or string it counts takes at least
+     * one byte of what is left
+     *
+     * @param in payload the length was read from
+     * @param length the length
+     * @return the length
+     */
+    private static int readLength(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Length " + length + " is longer than the rest of the payload");
+        }
+        return length;
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    /**
+     * Growable byte array, a ByteArrayOutputStream without the locking and IOExceptions
+     */
+    static class Output {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        void write(byte b) {
+            ensureCapacity(1);
+            bytes[size++] = b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeFloat(float value) {
+            int bits = Float.floatToIntBits(value);
+            ensureCapacity(4);
+            bytes[size++] = (byte) (bits >>> 24);
+            bytes[size++] = (byte) (bits >>> 16);
+            bytes[size++] = (byte) (bits >>> 8);
+            bytes[size++] = (byte) bits;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package swen.adventure.engine.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An event that is going to many sessions, encoded at most once per format no matter how many sessions
+ * it is written to.
+ *
+ * The binary frame is encoded without a dictionary so the same bytes can be read by every connection.
+ * Frames are shared between sessions, each write gets its own view so nothing is copied.
+ */
+class BroadcastFrame {
+    private final Packet.Operation op;
+    private final EventBox box;
+
+    private ByteBuffer text;
+    private ByteBuffer binary;
+
+    /**
+     * @param op operation of the packet carrying the event
+     * @param box event to be broadcast
+     */
+    BroadcastFrame(Packet.Operation op, EventBox box) {
+        this.op = op;
+        this.box = box;
+    }
+
+    /**
+     * The whole frame, header included, for a session using the given codec. Not thread safe, a frame
+     * belongs to the thread broadcasting it.
+     *
+     * @param codec the codec the session sends events with
+     * @return a new view of the shared frame
+     */
+    ByteBuffer frameFor(EventBoxCodec codec) {
+        if (codec == EventBoxCodec.TEXT) {
+            if (text == null) {
+                text = encode(box.getBytes());
+            }
+            return text.duplicate();
+        }
+
+        return binaryFrame();
+    }
+
+    private ByteBuffer binaryFrame() {
+        if (binary == null) {
+            binary = encode(BinaryEventBoxCodec.encodeStateless(box));
+        }
+        return binary.duplicate();
+    }
+
+    /**
+     * @return the event being broadcast
+     */
+    EventBox event() {
+        return box;
+    }
+
+    /**
+     * The event without a packet header in the dictionary free binary format, for sending as a datagram.
+     * Not thread safe, like <code>frameFor</code>.
+     *
+     * @return a new view of the shared payload
+     */
+    ByteBuffer datagramPayload() {
+        ByteBuffer frame = binaryFrame();
+        frame.position(frame.position() + Packet.HEADER_LENGTH);
+        return frame;
+    }
+
+    private ByteBuffer encode(byte[] payload) {
+        // not wrapped as read only so blocking sessions can write straight from the array, sessions only
+        // ever move the position of their own view
+        return ByteBuffer.wrap(new Packet(op, payload).toBytes());
+    }
+}
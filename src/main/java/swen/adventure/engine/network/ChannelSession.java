@@ -0,0 +1,140 @@
+package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Session backed by a non-blocking SocketChannel. It does not own a thread, instead a SelectorLoop
+ * tells the session when its channel can be read from or written to.
+ */
+class ChannelSession extends Session {
+    private final SocketChannel channel;
+    private final SelectorLoop loop;
+    private final FrameDecoder decoder;
+    private final FrameDecoder.FrameHandler handler;
+    private final AtomicBoolean closed;
+
+    // Only touched from the loop's thread
+    private SelectionKey key;
+
+    /**
+     * Create a session that wraps a connected channel, the session will not receive anything until it
+     * has been registered with the loop.
+     *
+     * @param channel connected channel, it will be switched to non-blocking mode
+     * @param loop the I/O loop that will service this session
+     * @param strategy
+     * @throws IOException
+     */
+    ChannelSession(SocketChannel channel, SelectorLoop loop, SessionStrategy strategy) throws IOException {
+        super(strategy);
+        this.channel = channel;
+        this.loop = loop;
+        channel.configureBlocking(false);
+
+        decoder = new FrameDecoder();
+        handler = packet -> strategy.received(this, packet);
+        closed = new AtomicBoolean(false);
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Called by the loop once the channel has been registered with its selector
+     *
+     * @param key the key of the channel registration
+     */
+    void attach(SelectionKey key) {
+        this.key = key;
+        strategy.connected(this);
+    }
+
+    /**
+     * Writes the outbound queue without blocking, gathering the frames into as few writes as the socket
+     * allows. If the socket buffer fills up the rest is written by the loop once the channel becomes
+     * writable again.
+     *
+     * @throws IOException
+     */
+    @Override
+    void writeQueued() throws IOException {
+        if (!outbound().writeTo(channel)) {
+            loop.execute(() -> setInterest(SelectionKey.OP_READ | SelectionKey.OP_WRITE));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                channel.close();
+            } finally {
+                strategy.disconnected(this);
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel.isOpen() && channel.isConnected();
+    }
+
+    /**
+     * Called by the loop when the channel has data to be read
+     */
+    void readable() {
+        try {
+            int len = channel.read(decoder.buffer());
+            if (len == -1) {
+                closed();
+                return;
+            }
+            recordReceived(len);
+            decoder.decode(handler);
+        } catch (IOException ex) {
+            System.out.println(strategy + "@" + channel.socket().getLocalSocketAddress() + " error: " + ex);
+            closed();
+        }
+    }
+
+    /**
+     * Called by the loop when the channel can be written to again
+     */
+    void writable() {
+        try {
+            if (!outbound().writeTo(channel)) {
+                return; // socket buffer is full, wait to be writable again
+            }
+        } catch (IOException ex) {
+            closed();
+            return;
+        }
+        setInterest(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Close the session without raising an exception, used when the connection is lost
+     */
+    void closed() {
+        try {
+            close();
+        } catch (IOException ex) {
+            // muffu muffu~
+        }
+    }
+
+    private void setInterest(int ops) {
+        if (key != null && key.isValid()) {
+            key.interestOps(ops);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelSession{" + channel.socket().getRemoteSocketAddress() + "}";
+    }
+}
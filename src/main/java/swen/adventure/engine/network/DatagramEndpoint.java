@@ -0,0 +1,134 @@
+package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * One end of the unreliable channel that droppable events, like player movement, are sent through so a
+ * lost packet does not hold up everything sent after it the way it would on the TCP session.
+ *
+ * Each datagram has a header of a one byte type, the eight byte token that identifies the session it
+ * belongs to and a four byte sequence number. DATA datagrams carry an event in the dictionary free binary
+ * format, the dictionary cannot be used when datagrams may be lost or reordered.
+ */
+class DatagramEndpoint implements Runnable {
+    /**
+     * Sent by a client, repeatedly until acknowledged, to tell the server the address it sends from
+     */
+    static final byte HELLO = 1;
+    /**
+     * Reply from the server to a HELLO, from then on both sides may send DATA
+     */
+    static final byte HELLO_ACK = 2;
+    /**
+     * An event
+     */
+    static final byte DATA = 3;
+
+    static final int HEADER_LENGTH = 13;
+
+    /**
+     * Largest event sent as a datagram, anything larger goes through the session instead so it is not
+     * fragmented
+     */
+    static final int MAX_PAYLOAD_LENGTH = 1200;
+
+    /**
+     * Receives every valid datagram
+     */
+    @FunctionalInterface
+    interface DatagramHandler {
+        /**
+         * @param type type of the datagram
+         * @param token token of the session it belongs to
+         * @param sequence sequence number
+         * @param event the event carried by a DATA datagram, otherwise null
+         * @param from address the datagram came from
+         */
+        void datagram(byte type, long token, int sequence, EventBox event, SocketAddress from);
+    }
+
+    private final DatagramChannel channel;
+    private final DatagramHandler handler;
+    private final ByteBuffer receiveBuffer;
+    private final ByteBuffer sendBuffer;
+    // only ever reads dictionary free events so its dictionary stays empty
+    private final BinaryEventBoxCodec codec;
+
+    /**
+     * @param channel bound channel to send and receive through, it is used in blocking mode
+     * @param handler called from the endpoint's thread with each datagram received
+     */
+    DatagramEndpoint(DatagramChannel channel, DatagramHandler handler) {
+        this.channel = channel;
+        this.handler = handler;
+        receiveBuffer = ByteBuffer.allocate(HEADER_LENGTH + MAX_PAYLOAD_LENGTH);
+        sendBuffer = ByteBuffer.allocate(HEADER_LENGTH + MAX_PAYLOAD_LENGTH);
+        codec = new BinaryEventBoxCodec();
+    }
+
+    /**
+     * Send a datagram
+     *
+     * @param to address to send to
+     * @param type type of the datagram
+     * @param token token of the session it belongs to
+     * @param sequence sequence number
+     * @param payload the remaining bytes are sent, at most MAX_PAYLOAD_LENGTH
+     * @throws IOException
+     */
+    synchronized void send(SocketAddress to, byte type, long token, int sequence, ByteBuffer payload) throws IOException {
+        sendBuffer.clear();
+        sendBuffer.put(type).putLong(token).putInt(sequence).put(payload);
+        sendBuffer.flip();
+        channel.send(sendBuffer, to);
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // muffu muffu~
+        }
+    }
+
+    /**
+     * Receive datagrams until the channel is closed
+     */
+    @Override
+    public void run() {
+        while (channel.isOpen()) {
+            SocketAddress from;
+            try {
+                receiveBuffer.clear();
+                from = channel.receive(receiveBuffer);
+            } catch (ClosedChannelException ex) {
+                break;
+            } catch (IOException ex) {
+                System.out.println("Datagram receive error: " + ex);
+                continue;
+            }
+            receiveBuffer.flip();
+            if (from == null || receiveBuffer.remaining() < HEADER_LENGTH) {
+                continue;
+            }
+
+            byte type = receiveBuffer.get();
+            long token = receiveBuffer.getLong();
+            int sequence = receiveBuffer.getInt();
+            EventBox event = null;
+            if (type == DATA) {
+                try {
+                    event = codec.decode(receiveBuffer);
+                } catch (IOException ex) {
+                    System.out.println("Malformed datagram from " + from + ": " + ex);
+                    continue;
+                }
+            }
+            handler.datagram(type, token, sequence, event, from);
+        }
+    }
+}
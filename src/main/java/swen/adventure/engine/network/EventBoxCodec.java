@@ -0,0 +1,45 @@
+package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts EventBoxes to and from the payload of a data packet
+ */
+interface EventBoxCodec {
+
+    /**
+     * The original text format of <code>EventBox.getBytes()</code>, every peer understands it
+     */
+    EventBoxCodec TEXT = new EventBoxCodec() {
+        @Override
+        public byte[] encode(EventBox box) {
+            return box.getBytes();
+        }
+
+        @Override
+        public EventBox decode(ByteBuffer payload) {
+            byte[] raw = new byte[payload.remaining()];
+            payload.get(raw);
+            return EventBox.fromBytes(raw);
+        }
+
+        @Override
+        public String toString() {
+            return "TextEventBoxCodec";
+        }
+    };
+
+    /**
+     * @param box event to encode
+     * @return payload for a data packet
+     */
+    byte[] encode(EventBox box);
+
+    /**
+     * @param payload the remaining bytes of the buffer are read
+     * @return the event the payload represents
+     * @throws IOException if the payload is not a valid event
+     */
+    EventBox decode(ByteBuffer payload) throws IOException;
+}
@@ -0,0 +1,382 @@
+package swen.adventure.engine.network;
+
+import swen.adventure.engine.metrics.Counter;
+import swen.adventure.engine.metrics.Histogram;
+import swen.adventure.engine.metrics.MetricsRegistry;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A write ahead log of the events a server has applied, so its state can be recovered up to the last tick without
+ * rewriting the whole scene graph after every few events.
+ *
+ * Each event is appended in the binary event format as a record of its length, a sequence number, a checksum and
+ * the event. Events appended during a tick are handed to a writer thread together by <code>commit</code>, which
+ * writes and forces them to disk in one go so the tick never waits on the disk.
+ *
+ * Every so often the server hands over a capture of its whole state as a checkpoint. The writer saves it to a
+ * temporary file, with the sequence number of the last event it includes in a comment at the end, renames it over
+ * the old one and empties the journal. Only one checkpoint is written at a time. To recover, the checkpoint is
+ * loaded and the events in the journal after its sequence number are replayed on top of it, up to the first record
+ * that was not completely written.
+ *
+ * Appending, committing and checkpointing must be done by one thread.
+ */
+public class EventJournal implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 4 + 8 + 4; // length, sequence, checksum
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final String CHECKPOINT_MARKER = "<!-- journal sequence ";
+    private static final String CHECKPOINT_MARKER_END = " -->";
+    private static final int CHECKPOINT_MARKER_SEARCH_BYTES = 128;
+
+    private final File checkpointFile;
+    private final File journalFile;
+    private final FileChannel channel;
+    private final long checkpointSequence;
+    private long sequence;
+
+    // records appended since the last commit, only used by the appending thread
+    private final ByteArrayOutputStream group = new ByteArrayOutputStream();
+    private final DataOutputStream groupOut = new DataOutputStream(group);
+    private final CRC32 crc = new CRC32();
+
+    private final BlockingQueue<Write> writes = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean checkpointing;
+
+    private final Histogram commitNanos = new Histogram();
+    private final Histogram checkpointNanos = new Histogram();
+    private final Counter bytesWritten = new Counter();
+
+    /**
+     * State captured for a checkpoint, written out by the journal's writer thread
+     */
+    @FunctionalInterface
+    public interface Checkpoint {
+        /**
+         * @param out stream to write the state to
+         * @throws IOException if the state cannot be written
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * A group of records to append, or a checkpoint to save, in the order they were handed to the writer
+     */
+    private static class Write {
+        final byte[] records;
+        final Checkpoint checkpoint;
+        final long sequence;
+
+        Write(byte[] records, Checkpoint checkpoint, long sequence) {
+            this.records = records;
+            this.checkpoint = checkpoint;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Write CLOSE = new Write(null, null, 0);
+
+    /**
+     * Open the journal kept alongside a checkpoint, creating it if there is none. <code>replay</code> should be
+     * called before anything is appended.
+     *
+     * @param checkpointFile file the checkpoints are saved to, which need not exist yet
+     * @param journalFile file the events are appended to
+     * @throws IOException if the journal cannot be opened
+     */
+    public EventJournal(File checkpointFile, File journalFile) throws IOException {
+        this.checkpointFile = checkpointFile;
+        this.journalFile = journalFile;
+        this.checkpointSequence = readCheckpointSequence(checkpointFile);
+        this.sequence = checkpointSequence;
+        this.channel = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+
+        writer = new Thread(this::write, "EventJournal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Apply the events in the journal that came after the last checkpoint, in the order they were appended. The
+     * journal is cut off at the first record that is incomplete or damaged, which is where the server stopped.
+     *
+     * @param apply applies an event to the state loaded from the checkpoint
+     * @return number of events replayed
+     * @throws IOException if the journal cannot be read
+     */
+    public int replay(Consumer<EventBox> apply) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(journalFile.toPath()));
+        BinaryEventBoxCodec codec = new BinaryEventBoxCodec();
+        int replayed = 0;
+        long end = 0;
+        long previous = -1;
+
+        while (in.remaining() >= HEADER_BYTES) {
+            int length = in.getInt();
+            long recordSequence = in.getLong();
+            int checksum = in.getInt();
+            if (length < 0 || length > MAX_RECORD_BYTES || length > in.remaining()
+                    || (previous >= 0 && recordSequence != previous + 1)) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            in.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            EventBox event;
+            try {
+                event = codec.decode(ByteBuffer.wrap(payload));
+            } catch (IOException ex) {
+                break;
+            }
+            previous = recordSequence;
+            end = in.position();
+            if (recordSequence > checkpointSequence) {
+                apply.accept(event);
+                replayed++;
+            }
+        }
+
+        if (end < channel.size()) {
+            System.out.println("Server: discarding " + (channel.size() - end) + " incomplete bytes at the end of " + journalFile);
+            channel.truncate(end);
+        }
+        channel.position(end);
+        sequence = Math.max(checkpointSequence, previous);
+        return replayed;
+    }
+
+    /**
+     * Add an event to the group that is written by the next commit
+     *
+     * @param event event that has been applied
+     */
+    public void append(EventBox event) {
+        byte[] payload = BinaryEventBoxCodec.encodeStateless(event);
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        try {
+            groupOut.writeInt(payload.length);
+            groupOut.writeLong(++sequence);
+            groupOut.writeInt((int) crc.getValue());
+            groupOut.write(payload);
+        } catch (IOException ex) {
+            throw new AssertionError(ex); // writing to memory
+        }
+    }
+
+    /**
+     * Hand the events appended since the last commit to the writer, which writes them and forces them to disk
+     * with one write
+     */
+    public void commit() {
+        if (group.size() == 0) {
+            return;
+        }
+        writes.add(new Write(group.toByteArray(), null, sequence));
+        group.reset();
+    }
+
+    /**
+     * Commit, then have the writer save the state after every event appended so far as the new checkpoint and
+     * empty the journal, unless it is still writing the last one
+     *
+     * @param state the state captured after the last event appended, which must not change while it is written
+     * @return true if the checkpoint will be written, false if the last one is still being written
+     */
+    public boolean checkpoint(Checkpoint state) {
+        if (checkpointing) {
+            return false;
+        }
+        checkpointing = true;
+        commit();
+        writes.add(new Write(null, state, sequence));
+        return true;
+    }
+
+    /**
+     * @return true while a checkpoint is waiting to be written or being written
+     */
+    public boolean isCheckpointing() {
+        return checkpointing;
+    }
+
+    /**
+     * @return sequence number of the last event appended
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Add the time taken to write each group and checkpoint, and the number of bytes written, to a registry
+     *
+     * @param metrics registry to add them to
+     */
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.register("server_journal_commit_nanos", commitNanos);
+        metrics.register("server_checkpoint_nanos", checkpointNanos);
+        metrics.gauge("server_journal_bytes_total", bytesWritten::get);
+        metrics.gauge("server_journal_pending_writes", writes::size);
+    }
+
+    /**
+     * Commit, wait for the writer to finish everything it has been given, then close the journal
+     */
+    @Override
+    public void close() {
+        commit();
+        writes.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // muffu muffu~
+        }
+    }
+
+    private void write() {
+        List<Write> taken = new ArrayList<>();
+        while (true) {
+            try {
+                taken.add(writes.take());
+            } catch (InterruptedException ex) {
+                return;
+            }
+            writes.drainTo(taken);
+
+            // everything queued up while the last group was forced goes to disk with one more force, and a write
+            // that fails is reported without losing the ones queued after it
+            long start = System.nanoTime();
+            boolean unforced = false;
+            boolean closing = false;
+            for (Write write : taken) {
+                if (write == CLOSE) {
+                    closing = true;
+                } else if (write.checkpoint != null) {
+                    long checkpointStart = System.nanoTime();
+                    try {
+                        writeCheckpoint(write.checkpoint, write.sequence);
+                        checkpointNanos.record(System.nanoTime() - checkpointStart);
+                        unforced = false;
+                    } catch (IOException | RuntimeException ex) {
+                        System.err.println("Error while writing a checkpoint: " + ex);
+                    } finally {
+                        checkpointing = false;
+                    }
+                } else {
+                    writeRecords(write.records);
+                    unforced = true;
+                }
+            }
+            taken.clear();
+
+            if (unforced) {
+                try {
+                    channel.force(false);
+                    commitNanos.record(System.nanoTime() - start);
+                } catch (IOException ex) {
+                    System.err.println("Error while writing the event journal: " + ex);
+                }
+            }
+            if (closing) {
+                return;
+            }
+        }
+    }
+
+    private void writeRecords(byte[] records) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            bytesWritten.add(records.length);
+        } catch (IOException ex) {
+            System.err.println("Error while writing the event journal: " + ex);
+        }
+    }
+
+    private void writeCheckpoint(Checkpoint state, long checkpointSequence) throws IOException {
+        File temporary = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary)) {
+            OutputStream out = new BufferedOutputStream(file);
+            state.writeTo(out);
+            out.write(("\n" + CHECKPOINT_MARKER + checkpointSequence + CHECKPOINT_MARKER_END + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            file.getChannel().force(true);
+        }
+        try {
+            Files.move(temporary.toPath(), checkpointFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporary.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // the checkpoint holds every event written so far, those appended after it are still to come
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    /**
+     * @param checkpointFile checkpoint to read
+     * @return sequence number of the last event the checkpoint includes, 0 if there is no checkpoint or it was not
+     * written by a journal
+     */
+    static long readCheckpointSequence(File checkpointFile) throws IOException {
+        if (!checkpointFile.exists()) {
+            return 0;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(checkpointFile, "r")) {
+            int length = (int) Math.min(file.length(), CHECKPOINT_MARKER_SEARCH_BYTES);
+            byte[] tail = new byte[length];
+            file.seek(file.length() - length);
+            file.readFully(tail);
+
+            String text = new String(tail, StandardCharsets.UTF_8);
+            int start = text.lastIndexOf(CHECKPOINT_MARKER);
+            int end = start < 0 ? -1 : text.indexOf(CHECKPOINT_MARKER_END, start);
+            if (end < 0) {
+                return 0;
+            }
+            try {
+                return Long.parseLong(text.substring(start + CHECKPOINT_MARKER.length(), end));
+            } catch (NumberFormatException ex) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a stream of bytes into packets, each framed by a one byte operation and a four byte big endian
+ * payload length.
+ *
+ * Bytes are read straight into a single reusable buffer and frames are handed out as one reused Packet
+ * whose payload is a view into that buffer, so decoding does not allocate per packet. The packet and its
+ * payload are only valid for the duration of the <code>FrameHandler</code> callback, anything that needs
+ * to outlive the callback must be copied out with <code>Packet.getPayload()</code>.
+ */
+class FrameDecoder {
+    static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Largest payload accepted before the stream is considered malformed, stops a bad length from
+     * allocating an enormous buffer.
+     */
+    static final int MAX_PAYLOAD_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Receives each packet decoded from the stream
+     */
+    @FunctionalInterface
+    interface FrameHandler {
+        void frame(Packet packet);
+    }
+
+    private final Packet packet;
+    private ByteBuffer buffer; // kept in write mode between calls
+    private ByteBuffer view;
+
+    FrameDecoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity starting size of the buffer, it grows when a frame does not fit
+     */
+    FrameDecoder(int initialCapacity) {
+        buffer = ByteBuffer.allocate(Math.max(initialCapacity, Packet.HEADER_LENGTH));
+        view = buffer.duplicate();
+        packet = new Packet(Packet.Operation.CLIENT_DATA);
+    }
+
+    /**
+     * The buffer that received bytes should be written in to, e.g. by <code>channel.read(buffer())</code>.
+     * The returned buffer changes when the decoder grows so it must not be kept.
+     *
+     * @return buffer with space for the next read
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Read once from the stream into the buffer, blocking if the stream has nothing available
+     *
+     * @param input stream to read from
+     * @return number of bytes read or -1 at the end of the stream
+     * @throws IOException
+     */
+    int readFrom(InputStream input) throws IOException {
+        int len = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (len > 0) {
+            buffer.position(buffer.position() + len);
+        }
+        return len;
+    }
+
+    /**
+     * Pass every complete frame in the buffer to the handler, keeping any partial frame for the next read
+     *
+     * @param handler called once for each frame in order of arrival
+     * @return number of frames decoded
+     * @throws IOException if the stream contains an unknown operation or an invalid length
+     */
+    int decode(FrameHandler handler) throws IOException {
+        int frames = 0;
+        int needed = 0;
+
+        buffer.flip();
+        try {
+            while (buffer.remaining() >= Packet.HEADER_LENGTH) {
+                int start = buffer.position();
+                byte code = buffer.get(start);
+                if (!Packet.Operation.isValid(code)) {
+                    throw new IOException("Malformed frame: unknown operation " + code);
+                }
+
+                int length = buffer.getInt(start + 1);
+                if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+                    throw new IOException("Malformed frame: payload length " + length);
+                }
+
+                if (buffer.remaining() < Packet.HEADER_LENGTH + length) {
+                    needed = Packet.HEADER_LENGTH + length;
+                    break;
+                }
+
+                int payloadStart = start + Packet.HEADER_LENGTH;
+                view.limit(payloadStart + length);
+                view.position(payloadStart);
+                buffer.position(payloadStart + length);
+
+                handler.frame(packet.reset(Packet.Operation.fromByte(code), view));
+                frames++;
+            }
+        } finally {
+            buffer.compact();
+        }
+
+        if (needed > buffer.capacity()) {
+            grow(needed);
+        }
+        return frames;
+    }
+
+    /**
+     * Replace the buffer with a larger one that can hold a frame of the given size
+     *
+     * @param capacity number of bytes the frame needs
+     */
+    private void grow(int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+        view = buffer.duplicate();
+    }
+}
@@ -0,0 +1,54 @@
+package swen.adventure.engine.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while it waits for work to arrive, trading the latency of noticing new work against the CPU
+ * spent waiting for it.
+ */
+@FunctionalInterface
+public interface IdleStrategy {
+
+    /**
+     * Keep checking without giving up the core, lowest latency but uses a whole core while idle
+     */
+    IdleStrategy SPIN = idleCount -> {
+        // busy wait
+    };
+
+    /**
+     * Let other threads run between checks
+     */
+    IdleStrategy YIELD = idleCount -> Thread.yield();
+
+    /**
+     * Sleep until woken by whoever adds the work, or for at most a tenth of a second
+     */
+    IdleStrategy PARK = idleCount -> LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+
+    /**
+     * Called each time a check for work finds none
+     *
+     * @param idleCount number of checks in a row that have found nothing before this one
+     */
+    void idle(int idleCount);
+
+    /**
+     * @param name spin, yield or park, in any case
+     * @return the strategy with that name
+     * @throws IllegalArgumentException if there is no strategy with that name
+     */
+    static IdleStrategy named(String name) {
+        switch (name.toLowerCase()) {
+            case "spin":
+                return SPIN;
+            case "yield":
+                return YIELD;
+            case "park":
+                return PARK;
+            default:
+                throw new IllegalArgumentException("Unknown idle strategy " + name);
+        }
+    }
+}
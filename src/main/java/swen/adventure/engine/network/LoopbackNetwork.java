@@ -0,0 +1,210 @@
+package swen.adventure.engine.network;
+
+import swen.adventure.Settings;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-memory network that a server and clients in the same JVM can connect through instead of sockets, so many
+ * simulated clients can be run against a server and the cost of the protocol and codecs measured without the
+ * kernel's network stack in the way.
+ *
+ * Servers listen on a port number as they would with TCP, and clients connect to the host {@link #HOST}. The
+ * framed bytes each session sends are handed to its peer through a lock-free queue and delivered in order by one
+ * daemon thread shared by the whole network.
+ *
+ * Latency, jitter and loss can be added to every link. As with TCP a lost frame is not dropped, it arrives late
+ * as though it had been retransmitted and holds up the frames behind it.
+ */
+public class LoopbackNetwork implements Runnable {
+    /**
+     * Host name clients connect to for the shared network
+     */
+    public static final String HOST = "loopback";
+
+    // shortest time a lost frame waits to be retransmitted, as with TCP's minimum retransmission timeout
+    private static final long MIN_RETRANSMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static final LoopbackNetwork shared = new LoopbackNetwork();
+
+    /**
+     * A port that a server is listening on
+     */
+    interface Listener {
+        /**
+         * @return the strategy for the server's end of a new connection
+         */
+        Session.SessionStrategy strategy();
+
+        /**
+         * Called with the server's end of a new connection before it is started
+         *
+         * @param session the new session
+         */
+        void accepted(LoopbackSession session);
+    }
+
+    private final Map<Integer, Listener> listeners = new ConcurrentHashMap<>();
+    private final List<LoopbackSession> sessions = new CopyOnWriteArrayList<>();
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+    private volatile double lossRate;
+
+    private Thread deliverer;
+    private volatile boolean parked;
+
+    /**
+     * @return the network used by servers and clients that are given the loopback transport or host, with the
+     *         conditions from Settings
+     */
+    public static LoopbackNetwork shared() {
+        return shared;
+    }
+
+    private LoopbackNetwork() {
+        setConditions(Settings.LoopbackLatencyMillis, Settings.LoopbackJitterMillis, Settings.LoopbackLoss);
+    }
+
+    /**
+     * Change the conditions of every link, frames already sent keep the delivery time they were given
+     *
+     * @param latencyMillis time each frame takes to reach the peer
+     * @param jitterMillis most extra time, chosen at random, that a frame can take on top of the latency
+     * @param lossRate fraction of frames that are lost and have to wait to be retransmitted, from 0 to 1
+     */
+    public void setConditions(long latencyMillis, long jitterMillis, double lossRate) {
+        if (latencyMillis < 0 || jitterMillis < 0 || lossRate < 0 || lossRate >= 1) {
+            throw new IllegalArgumentException("Invalid loopback conditions: latency " + latencyMillis
+                    + "ms, jitter " + jitterMillis + "ms, loss " + lossRate);
+        }
+        latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        this.lossRate = lossRate;
+    }
+
+    /**
+     * Start accepting connections on a port
+     *
+     * @param port port to listen on
+     * @param listener told about each connection
+     * @throws BindException if something is already listening on the port
+     */
+    void listen(int port, Listener listener) throws IOException {
+        if (listeners.putIfAbsent(port, listener) != null) {
+            throw new BindException("Loopback port " + port + " is already in use");
+        }
+    }
+
+    /**
+     * Stop accepting connections on a port, connections already made are left open
+     *
+     * @param port port to stop listening on
+     */
+    void unlisten(int port) {
+        listeners.remove(port);
+    }
+
+    /**
+     * Connect to the server listening on a port. Neither end is told it is connected until the client's end is
+     * started, so the client can keep hold of its session first.
+     *
+     * @param port port the server is listening on
+     * @param strategy strategy for the client's end of the connection
+     * @return the client's end of the connection
+     * @throws ConnectException if nothing is listening on the port
+     */
+    LoopbackSession connect(int port, Session.SessionStrategy strategy) throws IOException {
+        Listener listener = listeners.get(port);
+        if (listener == null) {
+            throw new ConnectException("Nothing listening on loopback port " + port);
+        }
+
+        LoopbackSession client = new LoopbackSession(this, strategy);
+        LoopbackSession server = new LoopbackSession(this, listener.strategy());
+        client.pair(server);
+        listener.accepted(server);
+
+        synchronized (this) {
+            if (deliverer == null) {
+                deliverer = new Thread(this, getClass().getSimpleName() + "Delivery");
+                deliverer.setDaemon(true);
+                deliverer.start();
+            }
+        }
+        sessions.add(server);
+        sessions.add(client);
+        return client;
+    }
+
+    /**
+     * Work out when a frame sent now should arrive, after any frame sent before it on the same link
+     *
+     * @param previous when the previous frame on the link arrives
+     * @return when the frame arrives, from System.nanoTime()
+     */
+    long deliveryTime(long previous) {
+        long delay = latencyNanos;
+        long jitter = jitterNanos;
+        double loss = lossRate;
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (loss > 0 && ThreadLocalRandom.current().nextDouble() < loss) {
+            delay += Math.max(MIN_RETRANSMIT_NANOS, 2 * (latencyNanos + jitter));
+        }
+        return Math.max(previous, System.nanoTime() + delay);
+    }
+
+    /**
+     * Wake the delivery thread to deliver a frame that has just been sent
+     */
+    void wake() {
+        if (parked) {
+            LockSupport.unpark(deliverer);
+        }
+    }
+
+    /**
+     * @param session a session that has closed and has nothing left to deliver
+     */
+    void remove(LoopbackSession session) {
+        sessions.remove(session);
+    }
+
+    /**
+     * Deliver every frame that is due, then park until the next one is or a frame is sent
+     */
+    @Override
+    public void run() {
+        while (true) {
+            long next = Long.MAX_VALUE;
+            for (LoopbackSession session : sessions) {
+                next = Math.min(next, session.deliverDue(System.nanoTime()));
+            }
+
+            parked = true;
+            // a frame sent before parked was set would not have woken us, so look again before parking
+            for (LoopbackSession session : sessions) {
+                next = Math.min(next, session.nextDelivery());
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                if (next == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, wait);
+                }
+            }
+            parked = false;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Session connected to another in the same JVM through a {@link LoopbackNetwork}.
+ *
+ * Flushed bytes are copied out of the outbound queue exactly as they would be written to a socket and put on the
+ * peer's inbound queue, stamped with when the network says they arrive. The network's delivery thread decodes them
+ * with the peer's frame decoder, so both ends see the same framing and codecs as over TCP.
+ */
+class LoopbackSession extends Session {
+
+    /**
+     * Bytes on their way to a session, or the end of the stream if there are none
+     */
+    private static final class Delivery {
+        final long time;
+        final byte[] bytes;
+
+        Delivery(long time, byte[] bytes) {
+            this.time = time;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LoopbackNetwork network;
+    private final Queue<Delivery> inbound;
+    private final FrameDecoder decoder;
+    private final FrameDecoder.FrameHandler handler;
+    private final AtomicBoolean closed;
+    private LoopbackSession peer;
+    private boolean disconnected; // only used by the delivery thread
+
+    private final Object writeLock;
+    private ByteBuffer batch; // guarded by writeLock
+    private long lastDelivery; // guarded by writeLock
+
+    /**
+     * @param network network the session is connected through
+     * @param strategy the strategy that is told about everything that happens to this session
+     */
+    LoopbackSession(LoopbackNetwork network, SessionStrategy strategy) {
+        super(strategy);
+        this.network = network;
+        inbound = new ConcurrentLinkedQueue<>();
+        decoder = new FrameDecoder();
+        handler = packet -> strategy.received(this, packet);
+        closed = new AtomicBoolean();
+        writeLock = new Object();
+        batch = ByteBuffer.allocate(FrameDecoder.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Make two sessions the ends of one connection
+     *
+     * @param other the other end
+     */
+    void pair(LoopbackSession other) {
+        peer = other;
+        other.peer = this;
+    }
+
+    /**
+     * Tell the strategies of both ends that they are connected, called on the client's end
+     */
+    void start() {
+        peer.strategy.connected(peer);
+        strategy.connected(this);
+    }
+
+    /**
+     * Copy everything in the outbound queue into one delivery to the peer
+     *
+     * @throws IOException if the session has been closed
+     */
+    @Override
+    void writeQueued() throws IOException {
+        synchronized (writeLock) {
+            batch = outbound().takeAll(batch);
+            if (!batch.hasRemaining()) {
+                return;
+            }
+            if (closed.get()) {
+                throw new IOException("Loopback session is closed");
+            }
+
+            byte[] bytes = Arrays.copyOfRange(batch.array(), batch.arrayOffset(), batch.arrayOffset() + batch.limit());
+            lastDelivery = network.deliveryTime(lastDelivery);
+            peer.inbound.add(new Delivery(lastDelivery, bytes));
+            outbound().recordFlush(bytes.length);
+        }
+        network.wake();
+    }
+
+    /**
+     * Close the session, the peer finds out once everything already sent has reached it
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            lastDelivery = network.deliveryTime(lastDelivery);
+            peer.inbound.add(new Delivery(lastDelivery, null));
+        }
+        inbound.add(new Delivery(System.nanoTime(), null));
+        network.wake();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return !closed.get();
+    }
+
+    /**
+     * Hand everything that has arrived by now to the strategy, only called from the delivery thread
+     *
+     * @param now the current time from System.nanoTime()
+     * @return when the next delivery arrives, or Long.MAX_VALUE if there is none
+     */
+    long deliverDue(long now) {
+        Delivery delivery;
+        while ((delivery = inbound.peek()) != null && delivery.time - now <= 0) {
+            inbound.poll();
+            if (delivery.bytes == null) {
+                disconnect();
+            } else if (!closed.get()) {
+                receive(delivery.bytes);
+            }
+        }
+        return delivery == null ? Long.MAX_VALUE : delivery.time;
+    }
+
+    /**
+     * @return when the next delivery arrives, or Long.MAX_VALUE if there is none
+     */
+    long nextDelivery() {
+        Delivery delivery = inbound.peek();
+        return delivery == null ? Long.MAX_VALUE : delivery.time;
+    }
+
+    private void receive(byte[] bytes) {
+        try {
+            for (int offset = 0; offset < bytes.length; ) {
+                ByteBuffer buffer = decoder.buffer();
+                int len = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, len);
+                offset += len;
+                recordReceived(len);
+
+                decoder.decode(handler);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // the delivery thread is shared, so a session that fails must not take the others with it
+            System.out.println(strategy + "@loopback error: " + ex);
+            close();
+        }
+    }
+
+    private void disconnect() {
+        if (disconnected) {
+            return;
+        }
+        disconnected = true;
+        closed.set(true);
+        network.remove(this);
+        strategy.disconnected(this);
+    }
+}
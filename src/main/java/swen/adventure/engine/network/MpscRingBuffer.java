@@ -0,0 +1,124 @@
+package swen.adventure.engine.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue that many threads can add to and one thread takes from, without locks and without allocating
+ * per element.
+ *
+ * A producer claims a slot by moving the tail along with a compare and set, then publishes its element into the
+ * slot. The consumer takes elements in order from the head until it reaches a slot that has not been published
+ * yet, and only moves the head on once per batch so producers see the freed slots in one go.
+ *
+ * Only {@link #offer}, {@link #size} and {@link #capacity} may be called from any thread, everything else must be
+ * called from the single consuming thread.
+ */
+class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail; // next slot to be claimed by a producer
+    private volatile long head; // next slot to be taken, only written by the consumer
+
+    /**
+     * @param capacity most elements that can be queued, rounded up to a power of two
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Add an element if there is room, safe to call from any thread
+     *
+     * @param element element to add, must not be null
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+
+        slots.lazySet((int) claimed & mask, element);
+        return true;
+    }
+
+    /**
+     * @return the oldest element, or null if there is none published yet
+     */
+    E poll() {
+        long current = head;
+        int index = (int) current & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head = current + 1;
+        return element;
+    }
+
+    /**
+     * Take every element that has been published, oldest first
+     *
+     * @param consumer given each element in turn
+     * @param limit most elements to take
+     * @return number of elements taken
+     */
+    int drain(Consumer<? super E> consumer, int limit) {
+        long current = head;
+        int count = 0;
+        try {
+            while (count < limit) {
+                int index = (int) current & mask;
+                E element = slots.get(index);
+                if (element == null) {
+                    break;
+                }
+                slots.lazySet(index, null);
+                current++;
+                count++;
+                consumer.accept(element);
+            }
+        } finally {
+            head = current;
+        }
+        return count;
+    }
+
+    /**
+     * @return true iff there is no published element to take
+     */
+    boolean isEmpty() {
+        return slots.get((int) head & mask) == null;
+    }
+
+    /**
+     * @return number of slots claimed by producers and not yet taken, safe to call from any thread
+     */
+    int size() {
+        long current = head;
+        return (int) Math.max(0, tail.get() - current);
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -3,13 +3,21 @@
  /* David Barnett (barnetdavi) (300313764) */ 
  package swen.adventure.engine.network;
 
+import swen.adventure.Settings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Queue;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Created by David Barnett, Student ID 3003123764, on 23/09/15.
@@ -27,6 +35,13 @@ public class NetworkClient implements Client<EventBox>, Session.SessionStrategy
     private final String id;
     private Session session;
 
+    private static final int HELLO_ATTEMPTS = 10;
+    private static final long HELLO_INTERVAL_MILLIS = 200;
+
+    private final Set<String> datagramEvents;
+    private InetSocketAddress serverAddress;
+    private volatile DatagramEndpoint datagrams;
+
     /**
      * Creates a Client ready to connect that has the given ID
      *
@@ -35,13 +50,46 @@ public class NetworkClient implements Client<EventBox>, Session.SessionStrategy
     public NetworkClient(String id) {
         this.id = id;
         queue = new ConcurrentLinkedQueue<>();
+        datagramEvents = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Send events with this name as datagrams if the server agrees to it, for frequent updates where a
+     * newer one replaces any that were lost. Must be called before connecting.
+     *
+     * @param eventName name of the events
+     */
+    public void sendAsDatagrams(String eventName) {
+        datagramEvents.add(eventName);
+    }
+
+    /**
+     * @return true iff the server has agreed to datagrams and they are being used
+     */
+    public boolean isUsingDatagrams() {
+        return session != null && session.hasDatagrams();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Connecting to the host <code>LoopbackNetwork.HOST</code> connects to a server in the same JVM listening
+     * with the loopback transport.
+     */
     @Override
     public void connect(String host, int port) throws IOException {
-        session = new Session(new Socket(host, port), this);
+        if (host.equals(LoopbackNetwork.HOST)) {
+            LoopbackSession loopback = LoopbackNetwork.shared().connect(port, this);
+            session = loopback;
+            loopback.start();
+            return;
+        }
+
+        serverAddress = new InetSocketAddress(host, port);
+        SocketSession socketSession = new SocketSession(new Socket(host, port), this);
+        session = socketSession;
 
-        new Thread(session, this.getClass().getSimpleName() + "Thread").start();
+        new Thread(socketSession, this.getClass().getSimpleName() + "Thread").start();
     }
 
     @Override
@@ -89,7 +137,11 @@ public class NetworkClient implements Client<EventBox>, Session.SessionStrategy
         }
 
         try {
-            session.send(new Packet(Packet.Operation.CLIENT_DATA, message.getBytes()));
+            if (datagramEvents.contains(message.eventName)
+                    && session.sendDatagram(ByteBuffer.wrap(BinaryEventBoxCodec.encodeStateless(message)))) {
+                return true;
+            }
+            session.sendEvent(Packet.Operation.CLIENT_DATA, message);
             return true;
         } catch (IOException ex) {
             ex.printStackTrace();
@@ -101,18 +153,40 @@ public class NetworkClient implements Client<EventBox>, Session.SessionStrategy
     public void received(Session from, Packet packet) {
         switch (packet.getOperation()) {
             case SERVER_DATA:
-                queue.add(EventBox.fromBytes(packet.getPayload()));
+                try {
+                    queue.add(from.receiveEvent(packet.getPayloadBuffer()));
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+                break;
+            case CODEC_ACCEPT:
+                ByteBuffer version = packet.getPayloadBuffer();
+                if (version.hasRemaining() && version.get() == BinaryEventBoxCodec.VERSION) {
+                    try {
+                        from.useBinaryCodec(null);
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }
                 break;
             case CLIENT_KICK:
                 disconnect();
                 break;
+            case DATAGRAM_ACCEPT:
+                openDatagrams(packet.getPayloadBuffer().getLong());
+                break;
             case SNAPSHOT:
                 Map<String, Object> data = new HashMap<>();
-                data.put("scenegraph", new String(packet.getPayload()));
+                try {
+                    data.put("scenegraph", new String(decompress(packet.getPayload())));
+                } catch (IOException ex) {
+                    System.out.println("Client: Malformed snapshot: " + ex);
+                    break;
+                }
                 queue.add(new EventBox("snapshot", "root", id, null, data));
                 break;
             default:
-                System.out.println("Unimplemented Client operation: " + packet.getOperation() + " length:" + packet.getPayload().length);
+                System.out.println("Unimplemented Client operation: " + packet.getOperation() + " length:" + packet.getPayloadLength());
                 break;
         }
     }
@@ -121,6 +195,14 @@ public class NetworkClient implements Client<EventBox>, Session.SessionStrategy
     public void connected(Session session) {
         try {
             session.send(new Packet(Packet.Operation.CLIENT_CONNECT, id.getBytes()));
+            if (Settings.BinaryEventCodec) {
+                // the server replies with CODEC_ACCEPT if it can read it, until then events are sent as text
+                session.send(new Packet(Packet.Operation.CODEC_OFFER, new byte[] {BinaryEventBoxCodec.VERSION}));
+            }
+            if (!datagramEvents.isEmpty()) {
+                // the server replies with DATAGRAM_ACCEPT if it has a datagram channel
+                session.send(new Packet(Packet.Operation.DATAGRAM_OFFER));
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -128,7 +210,83 @@ public class NetworkClient implements Client<EventBox>, Session.SessionStrategy
 
     @Override
     public void disconnected(Session session) {
-        //
+        DatagramEndpoint endpoint = datagrams;
+        if (endpoint != null) {
+            endpoint.close();
+        }
+    }
+
+    /**
+     * Open a datagram channel to the server, and keep saying hello through it until the server replies so
+     * it knows where to send datagrams. Events go through the session until the reply arrives, or for good
+     * if it never does.
+     *
+     * @param token token the server gave this session
+     */
+    private void openDatagrams(long token) {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.connect(serverAddress);
+            datagrams = new DatagramEndpoint(channel, this::datagramReceived);
+        } catch (IOException ex) {
+            System.out.println(this + ": Could not open datagram channel: " + ex);
+            return;
+        }
+
+        Thread receiver = new Thread(datagrams, this.getClass().getSimpleName() + "Datagrams");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        Thread hello = new Thread(() -> {
+            for (int i = 0; i < HELLO_ATTEMPTS && !session.hasDatagrams() && isConnected(); i++) {
+                try {
+                    datagrams.send(serverAddress, DatagramEndpoint.HELLO, token, 0, ByteBuffer.allocate(0));
+                    Thread.sleep(HELLO_INTERVAL_MILLIS);
+                } catch (IOException | InterruptedException ex) {
+                    break;
+                }
+            }
+        }, this.getClass().getSimpleName() + "DatagramHello");
+        hello.setDaemon(true);
+        hello.start();
+    }
+
+    /**
+     * Called from the datagram thread with each datagram received
+     */
+    private void datagramReceived(byte type, long token, int sequence, EventBox event, SocketAddress from) {
+        switch (type) {
+            case DatagramEndpoint.HELLO_ACK:
+                session.openDatagrams(datagrams, serverAddress, token);
+                break;
+            case DatagramEndpoint.DATA:
+                if (session.acceptDatagram(sequence, event)) {
+                    queue.add(event);
+                }
+                break;
+        }
+    }
+
+    /**
+     * @param snapshot snapshot from the server, gzipped if it starts with the gzip header
+     * @return the snapshot's xml
+     * @throws IOException if the snapshot is gzipped but damaged
+     */
+    static byte[] decompress(byte[] snapshot) throws IOException {
+        if (snapshot.length < 2 || snapshot[0] != (byte) (GZIPInputStream.GZIP_MAGIC)
+                || snapshot[1] != (byte) (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return snapshot;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(snapshot.length * 8);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
     }
 
     @Override
@@ -3,18 +3,25 @@
  /* David Barnett (barnetdavi) (300313764) */ 
  package swen.adventure.engine.network;
 
-import swen.adventure.engine.datastorage.SceneGraphSerializer;
+import swen.adventure.engine.datastorage.SceneGraphDelta;
+import swen.adventure.engine.metrics.Histogram;
+import swen.adventure.engine.metrics.MetricsRegistry;
 import swen.adventure.engine.scenegraph.SceneNode;
 import swen.adventure.game.scenenodes.SpawnNode;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by David Barnett, Student ID 3003123764, on 17/09/15.
@@ -27,17 +34,133 @@ import java.util.stream.Collectors;
  *           otherwise Runtime exceptions will be thrown
  */
 public class NetworkServer implements Server<String, EventBox>, Session.SessionStrategy {
+
+    /**
+     * How the server services the connections of its clients
+     */
+    public enum Transport {
+        /**
+         * One blocking socket and thread per client
+         */
+        BLOCKING,
+        /**
+         * Non-blocking channels multiplexed onto a fixed number of selector threads
+         */
+        NON_BLOCKING,
+        /**
+         * Sessions in the same JVM connected through {@link LoopbackNetwork#shared()}, without sockets or datagrams
+         */
+        LOOPBACK
+    }
+
+    /**
+     * Default number of bytes a client can have waiting to be written before it is considered slow
+     */
+    public static final int DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
+
+    // longest poll() will go between flushes while there are always events to return
+    private static final long MAX_FLUSH_DELAY_NANOS = 16_000_000;
+
+    /**
+     * Most received events that can be waiting to be polled before the clients sending more are held up
+     */
+    public static final int INBOUND_CAPACITY = 64 * 1024;
+
+    // how long a session waits for room when the received event queue is full
+    private static final long QUEUE_FULL_PARK_NANOS = 100_000;
+
     private final Map<String, Session> clients;
-    private final Queue<EventBox> queue;
+    private final MpscRingBuffer<EventBox> queue;
+    private volatile IdleStrategy idleStrategy = IdleStrategy.PARK;
+    private final Transport transport;
+    private final int ioThreads;
+    private final int highWaterMark;
+    private final SlowClientPolicy slowClientPolicy;
+    private long lastFlush;
+    private volatile Thread waiter;
+
+    private final Histogram snapshotBytes = new Histogram();
+    private final Histogram snapshotNanos = new Histogram();
+    private final SnapshotCache snapshots = new SnapshotCache();
+
+    private final Set<String> datagramEvents;
+    private final Map<Long, Session> datagramSessions;
+    private final SecureRandom tokens;
+    private DatagramEndpoint datagrams;
     private ServerSocket serverSocket;
     private Thread acceptThread;
+    private volatile int loopbackPort = -1;
+
+    private SelectorLoop[] loops;
+    private int nextLoop;
 
     /**
-     * A network server ready to be started with start()
+     * A network server ready to be started with start() that uses a thread per client
      */
     public NetworkServer() {
+        this(Transport.BLOCKING, 1);
+    }
+
+    /**
+     * A network server ready to be started with start()
+     *
+     * @param transport how client connections should be serviced
+     * @param ioThreads number of selector threads used by the non-blocking transport, ignored otherwise
+     */
+    public NetworkServer(Transport transport, int ioThreads) {
+        this(transport, ioThreads, DEFAULT_HIGH_WATER_MARK, SlowClientPolicy.DISCONNECT);
+    }
+
+    /**
+     * A network server ready to be started with start()
+     *
+     * @param transport how client connections should be serviced
+     * @param ioThreads number of selector threads used by the non-blocking transport, ignored otherwise
+     * @param highWaterMark number of bytes a client can have waiting to be written before it is slow
+     * @param slowClientPolicy what to do with clients that are past the high-water mark
+     */
+    public NetworkServer(Transport transport, int ioThreads, int highWaterMark, SlowClientPolicy slowClientPolicy) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("A server needs at least one I/O thread");
+        }
         clients = new ConcurrentHashMap<>();
-        queue = new ConcurrentLinkedQueue<>();
+        queue = new MpscRingBuffer<>(INBOUND_CAPACITY);
+        this.transport = transport;
+        this.ioThreads = ioThreads;
+        this.highWaterMark = highWaterMark;
+        this.slowClientPolicy = slowClientPolicy;
+        datagramEvents = ConcurrentHashMap.newKeySet();
+        datagramSessions = new ConcurrentHashMap<>();
+        tokens = new SecureRandom();
+    }
+
+    /**
+     * Send events with this name as datagrams to clients that have asked for them, for frequent updates
+     * where a newer one replaces any that were lost. Must be called before the server is started, the
+     * datagrams use the UDP port with the same number as the server's TCP port.
+     *
+     * @param eventName name of the events
+     */
+    public void sendAsDatagrams(String eventName) {
+        datagramEvents.add(eventName);
+    }
+
+    /**
+     * Gzip the snapshots sent to clients that join, which makes them several times smaller
+     *
+     * @param compress whether to compress them
+     */
+    public void setCompressSnapshots(boolean compress) {
+        snapshots.setCompress(compress);
+    }
+
+    /**
+     * Choose what poll() does while it waits for an event, parking by default
+     *
+     * @param idleStrategy how to wait
+     */
+    public void setIdleStrategy(IdleStrategy idleStrategy) {
+        this.idleStrategy = idleStrategy;
     }
 
     /**
@@ -49,13 +172,134 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
             throw new RuntimeException("Cannot start a server that is already running");
         }
 
+        if (transport == Transport.LOOPBACK) {
+            startLoopback(port);
+            return;
+        }
+
+        if (!datagramEvents.isEmpty()) {
+            startDatagrams(port);
+        }
+
+        if (transport == Transport.NON_BLOCKING) {
+            startSelectors(port);
+            return;
+        }
+
         serverSocket = new ServerSocket(port);
 
         // Move accepting clients to a different thread
-        acceptThread = new Thread(this::acceptLoop);
+        acceptThread = new Thread(this::acceptLoop, this.getClass().getSimpleName() + "Accept");
         acceptThread.start();
     }
 
+    /**
+     * Listen on the shared loopback network, clients connect from the same JVM through the host
+     * <code>LoopbackNetwork.HOST</code>
+     *
+     * @param port loopback port to listen on
+     * @throws IOException if the port is already in use
+     */
+    private void startLoopback(int port) throws IOException {
+        LoopbackNetwork.shared().listen(port, new LoopbackNetwork.Listener() {
+            @Override
+            public Session.SessionStrategy strategy() {
+                return NetworkServer.this;
+            }
+
+            @Override
+            public void accepted(LoopbackSession session) {
+                System.out.println("Server accepted loopback client on port: " + port);
+                session.coalesceWrites(highWaterMark, slowClientPolicy);
+            }
+        });
+        loopbackPort = port;
+    }
+
+    /**
+     * Open the datagram channel and start receiving from it
+     *
+     * @param port UDP port to listen on
+     * @throws IOException
+     */
+    private void startDatagrams(int port) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        datagrams = new DatagramEndpoint(channel, this::datagramReceived);
+
+        Thread thread = new Thread(datagrams, this.getClass().getSimpleName() + "Datagrams");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Called from the datagram thread with each datagram received
+     */
+    private void datagramReceived(byte type, long token, int sequence, EventBox event, SocketAddress from) {
+        Session session = datagramSessions.get(token);
+        if (session == null) {
+            return;
+        }
+
+        switch (type) {
+            case DatagramEndpoint.HELLO:
+                session.openDatagrams(datagrams, from, token);
+                try {
+                    datagrams.send(from, DatagramEndpoint.HELLO_ACK, token, 0, ByteBuffer.allocate(0));
+                } catch (IOException ex) {
+                    System.out.println("Server: Failed to acknowledge datagrams from " + from + ": " + ex);
+                }
+                break;
+            case DatagramEndpoint.DATA:
+                if (from.equals(session.datagramAddress()) && session.acceptDatagram(sequence, event)) {
+                    enqueueFrom(session, event);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Open a non-blocking server channel and spread the accepted clients between the selector threads
+     *
+     * @param port port to listen on
+     * @throws IOException
+     */
+    private void startSelectors(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.configureBlocking(false);
+        channel.bind(new InetSocketAddress(port));
+
+        loops = new SelectorLoop[ioThreads];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop();
+            Thread thread = new Thread(loops[i], this.getClass().getSimpleName() + "IO#" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        serverSocket = channel.socket();
+        loops[0].registerAcceptor(channel, this::acceptChannel);
+    }
+
+    /**
+     * Hand an accepted channel to the next selector thread, only called from the accepting loop's thread
+     *
+     * @param accepted newly connected client channel
+     */
+    private void acceptChannel(SocketChannel accepted) {
+        System.out.println("Server accepted client on port: " + accepted.socket().getPort());
+
+        SelectorLoop loop = loops[nextLoop];
+        nextLoop = (nextLoop + 1) % loops.length;
+        try {
+            ChannelSession session = new ChannelSession(accepted, loop, this);
+            session.coalesceWrites(highWaterMark, slowClientPolicy);
+            loop.register(session);
+        } catch (IOException ex) {
+            System.out.println("Server accept Error: " + ex);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -64,15 +308,35 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
         if (!this.isRunning()) {
             throw new RuntimeException("Cannot stop a server which is not running");
         }
+        if (loopbackPort >= 0) {
+            LoopbackNetwork.shared().unlisten(loopbackPort);
+            loopbackPort = -1;
+        }
+
         try {
-            serverSocket.close();
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
             for (Session session : clients.values()) {
                 session.send(new Packet(Packet.Operation.CLIENT_KICK));
+                session.writeQueued();
                 session.close();
             }
         } catch (IOException ex) {
 
         }
+
+        if (datagrams != null) {
+            datagrams.close();
+            datagrams = null;
+        }
+
+        if (loops != null) {
+            for (SelectorLoop loop : loops) {
+                loop.shutdown();
+            }
+            loops = null;
+        }
     }
 
     @Override
@@ -92,7 +356,11 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
         }
 
         try {
-            session.send(new Packet(Packet.Operation.SERVER_DATA, message.getBytes()));
+            if (datagramEvents.contains(message.eventName)
+                    && session.sendDatagram(ByteBuffer.wrap(BinaryEventBoxCodec.encodeStateless(message)))) {
+                return true;
+            }
+            session.sendEvent(Packet.Operation.SERVER_DATA, message);
             return true;
         } catch (IOException ex) {
             System.out.println("Server: Failed to send to " + id + ": " + ex);
@@ -102,15 +370,38 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
 
     @Override
     public boolean sendSnapShot(String id, SceneNode root) {
+        if (!clients.containsKey(id)) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        return sendSnapShot(id, snapshots.snapshot(root, null), start);
+    }
+
+    @Override
+    public boolean sendSnapShot(String id, SceneNode root, SceneGraphDelta baseline) {
+        if (!clients.containsKey(id)) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        return sendSnapShot(id, snapshots.snapshot(root, baseline), start);
+    }
+
+    /**
+     * @param start <code>System.nanoTime</code> when serializing the snapshot began
+     */
+    private boolean sendSnapShot(String id, byte[] snapshot, long start) {
         Session session = clients.get(id);
         if (session == null) {
             return false;
         }
 
         try {
-            ByteArrayOutputStream bio = new ByteArrayOutputStream();
-            SceneGraphSerializer.serializeToStream(root, bio);
-            session.send(new Packet(Packet.Operation.SNAPSHOT, bio.toByteArray()));
+            session.send(new Packet(Packet.Operation.SNAPSHOT, snapshot));
+            snapshotNanos.record(System.nanoTime() - start);
+            snapshotBytes.record(snapshot.length);
+            System.out.println("Server: Sent " + snapshot.length + " byte snapshot to " + id);
             return true;
         } catch (IOException ex) {
             System.out.println("Server: Failed to send snapshot to " + id + ": " + ex);
@@ -118,12 +409,147 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
         }
     }
 
+    /**
+     * Send the message to every connected client apart from those excluded. The message is encoded once
+     * and the same frame is written to every session.
+     *
+     * @param message contents to be sent
+     * @param exclude ids of clients that should not be sent the message
+     */
     @Override
     public void sendAll(EventBox message, String... exclude) {
-        List<String> ex = Arrays.asList(exclude);
-        this.getClientIds().stream()
-                .filter(id -> !ex.contains(id))
-                .forEach(id -> send(id, message));
+        if (!this.isRunning()) {
+            throw new RuntimeException("Cannot send with a server which is not running");
+        }
+
+        Set<String> excluded = exclude.length == 0 ? Collections.emptySet() : new HashSet<>(Arrays.asList(exclude));
+        BroadcastFrame frame = new BroadcastFrame(Packet.Operation.SERVER_DATA, message);
+        for (Map.Entry<String, Session> client : clients.entrySet()) {
+            if (!excluded.contains(client.getKey())) {
+                broadcast(client.getKey(), client.getValue(), frame);
+            }
+        }
+    }
+
+    /**
+     * Send the message to each of the given clients, encoding it only once
+     *
+     * @param ids ids of the clients to send to
+     * @param message contents to be sent
+     */
+    @Override
+    public void sendTo(Collection<String> ids, EventBox message) {
+        if (!this.isRunning()) {
+            throw new RuntimeException("Cannot send with a server which is not running");
+        }
+
+        BroadcastFrame frame = new BroadcastFrame(Packet.Operation.SERVER_DATA, message);
+        for (String id : ids) {
+            Session session = clients.get(id);
+            if (session != null) {
+                broadcast(id, session, frame);
+            }
+        }
+    }
+
+    private void broadcast(String id, Session session, BroadcastFrame frame) {
+        if (!session.isConnected()) {
+            clients.remove(id);
+            return;
+        }
+
+        try {
+            if (datagramEvents.contains(frame.event().eventName) && session.sendDatagram(frame.datagramPayload())) {
+                return;
+            }
+            session.sendBroadcast(frame);
+        } catch (IOException ex) {
+            System.out.println("Server: Failed to send to " + id + ": " + ex);
+        }
+    }
+
+    /**
+     * Write everything queued for each client, sends are held in per client queues until this is called
+     * so that a client is written to once per tick rather than once per event.
+     */
+    @Override
+    public void flush() {
+        if (!this.isRunning()) {
+            throw new RuntimeException("Cannot flush a server which is not running");
+        }
+
+        lastFlush = System.nanoTime();
+        for (Map.Entry<String, Session> client : clients.entrySet()) {
+            try {
+                client.getValue().flush();
+            } catch (IOException ex) {
+                System.out.println("Server: Failed to flush to " + client.getKey() + ": " + ex);
+            }
+        }
+    }
+
+    /**
+     * Write everything queued for some of the clients, for when other threads look after the rest
+     *
+     * @param ids ids of the clients to flush
+     */
+    public void flush(Collection<String> ids) {
+        if (!this.isRunning()) {
+            throw new RuntimeException("Cannot flush a server which is not running");
+        }
+
+        for (String id : ids) {
+            Session session = clients.get(id);
+            if (session == null) {
+                continue;
+            }
+            try {
+                session.flush();
+            } catch (IOException ex) {
+                System.out.println("Server: Failed to flush to " + id + ": " + ex);
+            }
+        }
+    }
+
+    /**
+     * Figures for the outbound queue of each connected client, such as its depth and the bytes written
+     * per flush
+     *
+     * @return stats by client id
+     */
+    public Map<String, SessionStats> sessionStats() {
+        Map<String, SessionStats> stats = new HashMap<>();
+        for (Map.Entry<String, Session> client : clients.entrySet()) {
+            stats.put(client.getKey(), client.getValue().stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Add the server's figures to a registry: the connected clients, the depth of the received event queue,
+     * each client's bytes in and out and outbound queue, and the size and time taken to make the snapshots and how
+     * many were reused
+     *
+     * @param metrics registry to add to
+     */
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.gauge("server_clients", clients::size);
+        metrics.gauge("server_inbound_queue_depth", queue::size);
+        metrics.register("server_snapshot_bytes", snapshotBytes);
+        metrics.register("server_snapshot_nanos", snapshotNanos);
+        metrics.gauge("server_snapshot_cache_hits_total", snapshots.hits::get);
+        metrics.gauge("server_snapshot_cache_misses_total", snapshots.misses::get);
+        metrics.register(samples -> {
+            for (Map.Entry<String, SessionStats> client : sessionStats().entrySet()) {
+                String id = client.getKey();
+                SessionStats stats = client.getValue();
+                samples.put(MetricsRegistry.name("session_bytes_in", "client", id), stats.bytesReceived);
+                samples.put(MetricsRegistry.name("session_bytes_out", "client", id), stats.bytesSent);
+                samples.put(MetricsRegistry.name("session_queued_bytes", "client", id), stats.queuedBytes);
+                samples.put(MetricsRegistry.name("session_queued_frames", "client", id), stats.queuedFrames);
+                samples.put(MetricsRegistry.name("session_dropped_frames", "client", id), stats.droppedFrames);
+            }
+        });
     }
 
     @Override
@@ -132,9 +558,13 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
             throw new RuntimeException("Cannot get ids with a server which is not running");
         }
 
-        return clients.keySet().stream()
-                .filter(id -> clients.get(id).isConnected())
-                .collect(Collectors.toList());
+        List<String> ids = new ArrayList<>(clients.size());
+        for (Map.Entry<String, Session> client : clients.entrySet()) {
+            if (client.getValue().isConnected()) {
+                ids.add(client.getKey());
+            }
+        }
+        return ids;
     }
 
     /**
@@ -142,7 +572,7 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
      */
     @Override
     public boolean isRunning() {
-        return serverSocket != null && !serverSocket.isClosed();
+        return loopbackPort >= 0 || serverSocket != null && !serverSocket.isClosed();
     }
 
     /**
@@ -154,14 +584,20 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
             throw new RuntimeException("Cannot poll a server which is not running");
         }
 
-        // block until woken, presumably when queue gets a new element
+        // write out what has been queued for clients before waiting, and regularly while busy
+        if (queue.isEmpty() || System.nanoTime() - lastFlush > MAX_FLUSH_DELAY_NANOS) {
+            flush();
+        }
+
+        // idle until a session adds to the queue, the queue is checked again after the waiter is set so
+        // an unpark between the first check and parking is not lost
         if (queue.isEmpty()) {
-            try {
-                synchronized (queue) {
-                    queue.wait();
-                }
-            } catch (InterruptedException e) {
+            IdleStrategy idle = idleStrategy;
+            waiter = Thread.currentThread();
+            for (int idleCount = 0; queue.isEmpty() && isRunning(); idleCount++) {
+                idle.idle(idleCount);
             }
+            waiter = null;
         }
 
         EventBox event = queue.poll();
@@ -172,6 +608,18 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
         }
     }
 
+    /**
+     * @see Server
+     */
+    @Override
+    public synchronized int drainTo(Collection<? super EventBox> into) {
+        if (!this.isRunning()) {
+            throw new RuntimeException("Cannot drain a server which is not running");
+        }
+
+        return queue.drain(into::add, Integer.MAX_VALUE);
+    }
+
     @Override
     public void received(Session from, Packet packet) {
         try {
@@ -181,29 +629,46 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
                 // Kick players that try to log in with with another user has that name
                 if (clients.containsKey(id)) {
                     from.send(new Packet(Packet.Operation.CLIENT_KICK));
+                    from.writeQueued();
                     from.close();
                     break;
                 }
 
                 clients.put(id, from);
+                from.setClientId(id);
                 System.out.println("Client connected id:" + id);
-                queue.add(new EventBox("playerConnected", SpawnNode.ID, id, id, Collections.emptyMap()));
+                enqueue(new EventBox("playerConnected", SpawnNode.ID, id, id, Collections.emptyMap()));
+                break;
+            case CLIENT_KICK:
+                // the client is leaving
+                from.close();
                 break;
             case CLIENT_DATA:
-                queue.add(EventBox.fromBytes(packet.getPayload()));
+                enqueueFrom(from, from.receiveEvent(packet.getPayloadBuffer()));
+                break;
+            case CODEC_OFFER:
+                ByteBuffer versions = packet.getPayloadBuffer();
+                while (versions.hasRemaining()) {
+                    if (versions.get() == BinaryEventBoxCodec.VERSION) {
+                        from.useBinaryCodec(new Packet(Packet.Operation.CODEC_ACCEPT, new byte[] {BinaryEventBoxCodec.VERSION}));
+                        break;
+                    }
+                }
+                // no version in common, keep sending text
+                break;
+            case DATAGRAM_OFFER:
+                if (datagrams != null) {
+                    long token = tokens.nextLong();
+                    datagramSessions.put(token, from);
+                    from.send(new Packet(Packet.Operation.DATAGRAM_ACCEPT, ByteBuffer.allocate(8).putLong(token).array()));
+                }
+                // no datagrams, everything goes through the session
                 break;
             default:
                 System.out.println("Unimplemented Server operation: " + packet.getOperation());
                 break;
         }
         } catch (IOException ex) { ex.printStackTrace(); }
-
-        // notify threads that are waiting for data in the queue
-        if (!queue.isEmpty()) {
-            synchronized (queue) {
-                queue.notifyAll();
-            }
-        }
     }
 
     @Override
@@ -225,12 +690,53 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
             System.out.println("Client disconnected id:" + id);
             clients.remove(id);
         }
+        datagramSessions.values().remove(session);
 
-        queue.add(new EventBox("playerDisconnected",
+        enqueue(new EventBox("playerDisconnected",
                 SpawnNode.ID, id, id,
                 Collections.emptyMap()));
-        synchronized (queue) {
-            queue.notifyAll();
+    }
+
+    /**
+     * Add a received event to the queue and wake the thread polling for it. When the queue is full the server has
+     * fallen far behind, so the session waits for room rather than losing the event, which holds up that client
+     * much as a full socket buffer would.
+     *
+     * @param event the received event
+     */
+    private void enqueue(EventBox event) {
+        while (!queue.offer(event)) {
+            if (!isRunning()) {
+                return;
+            }
+            wakePoller();
+            LockSupport.parkNanos(this, QUEUE_FULL_PARK_NANOS);
+        }
+        wakePoller();
+    }
+
+    /**
+     * Add an event a client sent to the queue as coming from the id that client connected as, whatever the event
+     * says it is from, so a client cannot act as another player. Events sent before connecting are dropped.
+     *
+     * @param session the session the event arrived on
+     * @param event the received event
+     */
+    private void enqueueFrom(Session session, EventBox event) {
+        String id = session.clientId();
+        if (id == null) {
+            return;
+        }
+        if (!id.equals(event.from)) {
+            event = new EventBox(event.eventName, event.sourceId, event.targetId, id, event.eventData);
+        }
+        enqueue(event);
+    }
+
+    private void wakePoller() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
         }
     }
 
@@ -243,7 +749,8 @@ public class NetworkServer implements Server<String, EventBox>, Session.SessionS
                 Socket accepted = serverSocket.accept();
                 System.out.println("Server accepted client on port: " + accepted.getPort());
 
-                Session session = new Session(accepted, this);
+                SocketSession session = new SocketSession(accepted, this);
+                session.coalesceWrites(highWaterMark, slowClientPolicy);
                 new Thread(session, this.getClass().getSimpleName() + "Thread#" + accepted.getPort()).start();
             } catch (IOException ex) {
                 System.out.println("Server accept Error: " + ex);
@@ -0,0 +1,146 @@
+package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Frames waiting to be written to a session, bounded by a high-water mark on the number of bytes queued.
+ *
+ * Frames are queued by whichever thread sends them and written together when the session is flushed, so
+ * many small frames go out in one write. All methods are thread safe.
+ */
+class OutboundQueue {
+    private static final int MAX_GATHER = 64;
+    private static final int MAX_RETAINED_BATCH = 1024 * 1024;
+
+    private final ArrayDeque<ByteBuffer> frames;
+    private final ByteBuffer[] gather;
+    private final int highWaterMark;
+    private int queuedBytes;
+
+    private long lastFlushBytes;
+    private long bytesSent;
+    private long flushes;
+    private long droppedFrames;
+
+    /**
+     * @param highWaterMark once more than this many bytes are queued further frames are refused
+     */
+    OutboundQueue(int highWaterMark) {
+        this.highWaterMark = highWaterMark;
+        frames = new ArrayDeque<>();
+        gather = new ByteBuffer[MAX_GATHER];
+    }
+
+    /**
+     * Queue a frame if the queue is not past its high-water mark. A single frame larger than the mark is
+     * still accepted when the queue is below it, so large packets like snapshots can always be sent.
+     *
+     * @param frame frame to be written, only its position is changed by the queue
+     * @return false if the queue is past its high-water mark and the frame was not queued
+     */
+    synchronized boolean offer(ByteBuffer frame) {
+        if (queuedBytes > highWaterMark) {
+            return false;
+        }
+        add(frame);
+        return true;
+    }
+
+    /**
+     * Queue a frame whatever the queue's size
+     *
+     * @param frame frame to be written
+     */
+    synchronized void add(ByteBuffer frame) {
+        frames.add(frame);
+        queuedBytes += frame.remaining();
+    }
+
+    synchronized void recordDropped() {
+        droppedFrames++;
+    }
+
+    synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    /**
+     * Write as much of the queue as the channel will take without blocking, gathering frames into as few
+     * writes as possible.
+     *
+     * @param channel non-blocking channel to write to
+     * @return true if the queue has been emptied
+     * @throws IOException
+     */
+    synchronized boolean writeTo(GatheringByteChannel channel) throws IOException {
+        long flushed = 0;
+        try {
+            while (!frames.isEmpty()) {
+                int count = 0;
+                Iterator<ByteBuffer> it = frames.iterator();
+                while (count < gather.length && it.hasNext()) {
+                    gather[count++] = it.next();
+                }
+
+                long written = channel.write(gather, 0, count);
+                flushed += written;
+                queuedBytes -= written;
+                while (!frames.isEmpty() && !frames.peek().hasRemaining()) {
+                    frames.poll();
+                }
+
+                if (!frames.isEmpty() && gather[count - 1].hasRemaining()) {
+                    break; // the socket buffer is full
+                }
+            }
+        } finally {
+            Arrays.fill(gather, null);
+            recordFlush(flushed);
+        }
+        return frames.isEmpty();
+    }
+
+    /**
+     * Take everything in the queue as one contiguous batch, used when the write has to block and should not
+     * be done while holding the queue's lock.
+     *
+     * @param scratch buffer to copy the frames in to, a larger one is made if it is too small
+     * @return buffer holding the batch ready to be read, which should be passed as the scratch next time
+     */
+    synchronized ByteBuffer takeAll(ByteBuffer scratch) {
+        if (scratch.capacity() < queuedBytes || scratch.capacity() > Math.max(MAX_RETAINED_BATCH, queuedBytes)) {
+            scratch = ByteBuffer.allocate(queuedBytes);
+        }
+        scratch.clear();
+
+        ByteBuffer frame;
+        while ((frame = frames.poll()) != null) {
+            scratch.put(frame);
+        }
+        queuedBytes = 0;
+        scratch.flip();
+        return scratch;
+    }
+
+    /**
+     * Record the bytes written by a flush
+     *
+     * @param bytes number of bytes written
+     */
+    synchronized void recordFlush(long bytes) {
+        if (bytes > 0) {
+            lastFlushBytes = bytes;
+            bytesSent += bytes;
+            flushes++;
+        }
+    }
+
+    synchronized SessionStats stats() {
+        return new SessionStats(frames.size(), queuedBytes, lastFlushBytes, bytesSent, flushes, droppedFrames);
+    }
+}
@@ -4,18 +4,18 @@
  package swen.adventure.engine.network;
 
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.nio.ByteBuffer;
 
 /**
  * Created by David Barnett, Student ID 3003123764, on 19/09/15.
  */
 class Packet {
 
+    /**
+     * Number of bytes in front of the payload, one for the operation and four for the payload length
+     */
+    static final int HEADER_LENGTH = 5;
+
     public enum Operation {
         // FIXME: awful names
         // packets coming from the server
@@ -38,19 +38,50 @@ class Packet {
          */
         SERVER_DATA,
         SERVER_KILL,
-        SNAPSHOT;
+        SNAPSHOT,
+
+        // Codec negotiation, appended so the existing op codes keep their values
+        /**
+         * Sent by a client after CLIENT_CONNECT, the payload is the binary codec versions it can read
+         */
+        CODEC_OFFER,
+        /**
+         * Reply from the server, the payload is the chosen version and all following events use it
+         */
+        CODEC_ACCEPT,
+        /**
+         * Sent by a client after CLIENT_CONNECT when it would like droppable events sent as datagrams
+         */
+        DATAGRAM_OFFER,
+        /**
+         * Reply from the server, the payload is the eight byte token the client proves its address with
+         */
+        DATAGRAM_ACCEPT;
+
+        // values() makes a new array each call
+        private static final Operation[] VALUES = values();
 
         public byte toByte() {
             return (byte)this.ordinal();
         }
 
         public static Operation fromByte(byte b) {
-            return Operation.values()[b]; // should be ffiinnee
+            return VALUES[b]; // should be ffiinnee
+        }
+
+        /**
+         * @param b byte read from the network
+         * @return true if the byte is the code of an operation
+         */
+        static boolean isValid(byte b) {
+            return b >= 0 && b < VALUES.length;
         }
     }
 
-    private final Operation op;
-    private final byte[] payload;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private Operation op;
+    private ByteBuffer payload;
 
     /**
      * Create a simple network packet with only an operation
@@ -58,8 +89,7 @@ class Packet {
      * @param op Operation the the packet represents
      */
     public Packet(Operation op) {
-        this.op = op;
-        payload = new byte[0];
+        this(op, EMPTY);
     }
 
     /**
@@ -75,10 +105,35 @@ class Packet {
      * @param payload raw data to be sent
      */
     public Packet(Operation op, byte[] payload) {
+        this(op, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Create a packet whose payload is the remaining bytes of the buffer
+     *
+     * Note: Ownership of the buffer belongs to the packet, its position and limit must not be changed
+     *
+     * @param op Operation the the packet represents
+     * @param payload raw data to be sent
+     */
+    Packet(Operation op, ByteBuffer payload) {
         this.op = op;
         this.payload = payload;
     }
 
+    /**
+     * Point the packet at a new frame, used by FrameDecoder to reuse a single packet for every frame
+     *
+     * @param op Operation the the packet represents
+     * @param payload view of the payload in the decoder's buffer
+     * @return this packet
+     */
+    Packet reset(Operation op, ByteBuffer payload) {
+        this.op = op;
+        this.payload = payload;
+        return this;
+    }
+
     /**
      * Convert the a given Packet to a byte array ready to be sent
      * over the network or saved.
@@ -86,102 +141,68 @@ class Packet {
      * @return a byte array that Packet.fromBytes can covert to a Packet
      */
     public byte[] toBytes() {
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        try {
-            bytes.write(new byte[]{op.toByte()});
-
-            // Ensure we use 4 bytes to represent an int & in correct order that BigInt will read it in
-            byte[] lengthBytes = new byte[4];
-            byte[] b = BigInteger.valueOf(payload.length).toByteArray();
-            for (int i = 1; i <= b.length; i++ ) {
-                lengthBytes[lengthBytes.length - i] = b[b.length - i];
-            }
-            bytes.write(lengthBytes);
-            bytes.write(payload);
-        } catch (IOException ex) {
-            // muffu muffu~
-        }
-        return bytes.toByteArray();
+        byte[] bytes = new byte[frameLength()];
+        writeTo(ByteBuffer.wrap(bytes));
+        return bytes;
     }
 
-    public byte[] getPayload() {
-        return payload;
+    /**
+     * Write the header and payload of the packet into the buffer
+     *
+     * @param buffer buffer with at least <code>frameLength()</code> bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(op.toByte());
+        buffer.putInt(payload.remaining()); // big endian, same as the old BigInteger header
+        buffer.put(payload.duplicate());
     }
 
-    public Operation getOperation() {
-        return op;
+    /**
+     * @return number of bytes the packet takes on the wire, header included
+     */
+    public int frameLength() {
+        return HEADER_LENGTH + payload.remaining();
     }
 
-    static class Builder {
-        int lengthCounter = 0;
-        byte[] lengthBytes = new byte[4];
-        byte[] payload = null;
-        final List<Byte> overflow = new ArrayList<>();
-
-        Optional<Operation> op = Optional.empty();
-        int length = 0;
-        int processed = 0;
-
-        Builder append(List<Byte> data) {
-            data.forEach(this::append);
-            return this;
-        }
-
-        Builder append(byte[] data) {
-            for (byte b : data) {
-                append(b);
-            }
-            return this;
-        }
-
-        void append(byte b) {
-            if (!op.isPresent()) {
-                // Get OP code
-                op = Optional.of(Operation.fromByte(b));
-            } else if (lengthCounter < 4) {
-
-                // Get the length of the buffer
-                lengthBytes[lengthCounter] = b;
-
-                lengthCounter++;
-                if (lengthCounter == 4) {
-                    // got all the bytes of the integer
-                    // BigInt for the rescue
-                    length = new BigInteger(lengthBytes).intValue();
-                    payload = new byte[length];
-                }
-            } else if (processed < length) {
-                // build payload
-                payload[processed++] = b;
-            } else {
-                overflow.add(b);
-            }
+    /**
+     * Get the payload as an array, packets from a FrameDecoder only live for the duration of the
+     * callback so their payload is copied out of the decoder's buffer.
+     *
+     * @return the bytes of the payload
+     */
+    public byte[] getPayload() {
+        if (payload.hasArray() && payload.arrayOffset() == 0 && payload.position() == 0
+                && payload.remaining() == payload.array().length) {
+            return payload.array();
         }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
 
-        /**
-         * The data in the builder that was not used to build the packet
-         * @return List of bytes that was added to the builder in order of arrival
-         */
-        List<Byte> overflow() {
-           return overflow;
-        }
+    /**
+     * Get the payload without copying it, the view must not be kept past the packet's callback and its
+     * contents must not be changed
+     *
+     * @return a view of the payload
+     */
+    public ByteBuffer getPayloadBuffer() {
+        return payload.duplicate();
+    }
 
-        boolean isReady() {
-            return lengthCounter == 4 && processed == length && op.isPresent();
-        }
+    /**
+     * @return number of bytes in the payload
+     */
+    public int getPayloadLength() {
+        return payload.remaining();
+    }
 
-        /**
-         * Build the packet from the data
-         *
-         * @throws IllegalStateException if the builder is not ready to build the packet
-         * @return A built packet from the data given
-         */
-        Packet build() {
-            if (!isReady()) {
-                throw new IllegalStateException("Cannot build a packet when it is not ready");
-            }
-            return new Packet(op.get(), payload);
-        }
+    public Operation getOperation() {
+        return op;
+    }
 
+    @Override
+    public String toString() {
+        return "Packet{" + op + ", " + payload.remaining() + " bytes}";
     }
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * An I/O thread that multiplexes many non-blocking channels with a single Selector.
+ *
+ * Channels may only have their interest set changed from the loop's own thread, so other threads hand
+ * work to the loop with <code>execute(task)</code> which queues the task and wakes the selector.
+ */
+class SelectorLoop implements Runnable {
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private volatile boolean running = true;
+
+    /**
+     * Create a loop ready to be run on its own thread
+     *
+     * @throws IOException if a selector could not be opened
+     */
+    SelectorLoop() throws IOException {
+        selector = Selector.open();
+        tasks = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Run the task on the loop's thread before the next select
+     *
+     * @param task work to be done on the I/O thread
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Accept connections from the server channel, passing each accepted channel to the given consumer.
+     *
+     * @param serverChannel non-blocking server channel to accept from
+     * @param onAccept called on this loop's thread for each accepted connection
+     */
+    void registerAcceptor(ServerSocketChannel serverChannel, Consumer<SocketChannel> onAccept) {
+        execute(() -> {
+            try {
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT, onAccept);
+            } catch (ClosedChannelException ex) {
+                System.out.println("Server accept Error: " + ex);
+            }
+        });
+    }
+
+    /**
+     * Start reading from the channel of a session on this loop
+     *
+     * @param session session that wraps a connected non-blocking channel
+     */
+    void register(ChannelSession session) {
+        execute(() -> {
+            try {
+                session.attach(session.channel().register(selector, SelectionKey.OP_READ, session));
+            } catch (ClosedChannelException ex) {
+                session.closed();
+            }
+        });
+    }
+
+    /**
+     * Stop the loop and close the selector, the registered channels are left for their sessions to close
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException ex) {
+                System.out.println("Selector error: " + ex);
+                break;
+            }
+
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                if (!key.isValid()) {
+                    continue;
+                }
+
+                if (key.isAcceptable()) {
+                    accept((ServerSocketChannel) key.channel(), (Consumer<SocketChannel>) key.attachment());
+                    continue;
+                }
+
+                ChannelSession session = (ChannelSession) key.attachment();
+                if (key.isReadable()) {
+                    session.readable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    session.writable();
+                }
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            // muffu muffu~
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel, Consumer<SocketChannel> onAccept) {
+        try {
+            SocketChannel accepted;
+            while ((accepted = serverChannel.accept()) != null) {
+                onAccept.accept(accepted);
+            }
+        } catch (IOException ex) {
+            System.out.println("Server accept Error: " + ex);
+        }
+    }
+}
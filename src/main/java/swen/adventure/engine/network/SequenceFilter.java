@@ -0,0 +1,28 @@
+package swen.adventure.engine.network;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Drops datagrams that arrive after a newer one about the same thing, datagrams can be reordered on
+ * the way and an older update would undo a newer one.
+ *
+ * Sequence numbers are compared as if they wrap around, so a stream can run for ever.
+ */
+class SequenceFilter {
+    private final Map<String, Integer> latest = new HashMap<>();
+
+    /**
+     * @param key what the datagram is about, only datagrams with the same key are compared
+     * @param sequence sequence number of the datagram
+     * @return true iff the datagram is newer than every other accepted with the same key
+     */
+    synchronized boolean accept(String key, int sequence) {
+        Integer last = latest.get(key);
+        if (last != null && sequence - last <= 0) {
+            return false;
+        }
+        latest.put(key, sequence);
+        return true;
+    }
+}
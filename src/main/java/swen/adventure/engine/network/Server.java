@@ -3,9 +3,11 @@
  /* David Barnett (barnetdavi) (300313764) */ 
  package swen.adventure.engine.network;
 
+import swen.adventure.engine.datastorage.SceneGraphDelta;
 import swen.adventure.engine.scenegraph.SceneNode;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -39,6 +41,20 @@ public interface Server<I, M> {
      */
      Optional<M> poll();
 
+    /**
+     * Move every message that has been received from clients into the collection without blocking
+     *
+     * @param into collection the messages are added to, in the order they were received
+     * @return number of messages added
+     */
+    int drainTo(Collection<? super M> into);
+
+    /**
+     * Write out everything that has been sent since the last flush. Sends may be held back until the
+     * server is flushed, which should happen once per tick.
+     */
+    void flush();
+
     /**
      * Check if the server is running
      *
@@ -64,6 +80,17 @@ public interface Server<I, M> {
      */
     boolean sendSnapShot(I id, SceneNode root);
 
+    /**
+     * Send a snapshot of only the parts of the scene graph that have changed since the level was loaded,
+     * the client must have already loaded the same level as the baseline was taken from
+     *
+     * @param id ID to client to be sent to
+     * @param root the root of the Scene graph to send
+     * @param baseline state of the level when it was loaded
+     * @return true if the message was successfully sent, otherwise false
+     */
+    boolean sendSnapShot(I id, SceneNode root, SceneGraphDelta baseline);
+
     /**
      * List of Ids of connected clients
      *
@@ -78,4 +105,12 @@ public interface Server<I, M> {
      * @param exclude client IDs that will not be sent the message
      */
     void sendAll(M message, I... exclude);
+
+    /**
+     * Try to send message to each of the given clients
+     *
+     * @param ids client IDs to send the message to, unknown IDs are ignored
+     * @param message contents to be sent
+     */
+    void sendTo(Collection<I> ids, M message);
 }
\ No newline at end of file
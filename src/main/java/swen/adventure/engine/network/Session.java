@@ -1,134 +1,273 @@
-/* Contributor List  */ 
- /* Joseph Bennett (bennetjose) (300319773) */ 
- /* David Barnett (barnetdavi) (300313764) */ 
- package swen.adventure.engine.network;
+package swen.adventure.engine.network;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.util.Arrays;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Created by David Barnett, Student ID 3003123764, on 19/09/15.
+ * Package private network session use by both client and server side.
+ *
+ * A session is one end of a connection that packets can be sent through. How the bytes get to and from the
+ * network is left to the subclasses, so the same SessionStrategy can be used with blocking sockets
+ * ({@link SocketSession}) or with non-blocking channels ({@link ChannelSession}).
+ *
+ * Everything sent goes through an outbound queue. By default the queue is written straight away, a server
+ * can instead configure it to be coalesced so frames wait until <code>flush()</code> and go out together.
  */
+abstract class Session {
+    protected final SessionStrategy strategy;
 
-/**
- * Package private network session use by both client and server side
- */
-class Session implements Runnable {
-    private final Socket socket;
-    private final OutputStream outputStream;
-    private final SessionStrategy strategy;
+    // Reads either format, so it is used for all incoming events
+    private final BinaryEventBoxCodec binaryCodec;
+    private volatile EventBoxCodec outgoingCodec;
+
+    private OutboundQueue outbound;
+    private SlowClientPolicy slowClientPolicy;
+    private boolean coalesce;
+    private volatile long bytesReceived; // only added to by the thread reading the session
+    private volatile String clientId; // set by the server once the client has connected
+
+    // set once the peer has proven it can be reached with datagrams
+    private volatile DatagramEndpoint datagrams;
+    private volatile SocketAddress datagramAddress;
+    private volatile long datagramToken;
+    private final AtomicInteger datagramSequence = new AtomicInteger();
+    private final SequenceFilter datagramFilter = new SequenceFilter();
+
+    /**
+     * @param strategy the strategy that is told about everything that happens to this session
+     */
+    protected Session(SessionStrategy strategy) {
+        this.strategy = strategy;
+        binaryCodec = new BinaryEventBoxCodec();
+        outgoingCodec = EventBoxCodec.TEXT;
+        outbound = new OutboundQueue(Integer.MAX_VALUE);
+        slowClientPolicy = SlowClientPolicy.DISCONNECT;
+    }
 
     /**
-     * Create a network session that wraps a connected socket
+     * Hold sent frames until the session is flushed, must be called before the session is started
      *
-     * @note after making a session the socket should <b>NOT</b> be used afterwards
-     *       any use of the socket creating the Session is undefined behaviour
+     * @param highWaterMark number of queued bytes past which the client is considered slow
+     * @param policy what to do with a slow client
+     */
+    void coalesceWrites(int highWaterMark, SlowClientPolicy policy) {
+        outbound = new OutboundQueue(highWaterMark);
+        slowClientPolicy = policy;
+        coalesce = true;
+    }
+
+    /**
+     * Encode and send an event using the codec agreed with the peer, the text codec until a binary codec
+     * has been negotiated.
      *
-     * @param socket the socket to be wrapped
-     * @param strategy
+     * @param op operation of the packet carrying the event
+     * @param box event to be sent
      * @throws IOException
      */
-    public Session(Socket socket, SessionStrategy strategy) throws IOException {
-        this.socket = socket;
-        this.strategy = strategy;
-        outputStream = socket.getOutputStream();
+    public void sendEvent(Packet.Operation op, EventBox box) throws IOException {
+        // dictionary entries must reach the peer in the order they were made
+        synchronized (binaryCodec) {
+            send(new Packet(op, outgoingCodec.encode(box)));
+        }
     }
 
     /**
-     * Send a packet through the socket
+     * Send an event that is being sent to many sessions, it is only encoded once for each codec in use
      *
-     * @param msg message to be sent
+     * @param frame the broadcast event
      * @throws IOException
      */
-    public void send(Packet msg) throws IOException {
-        outputStream.write(msg.toBytes());
+    void sendBroadcast(BroadcastFrame frame) throws IOException {
+        synchronized (binaryCodec) {
+            queue(frame.frameFor(outgoingCodec), true);
+        }
     }
 
     /**
-     * Close the session
+     * Decode an event sent by the peer in either the text or binary format
      *
+     * @param payload payload of the data packet
+     * @return the event
+     * @throws IOException if the payload is malformed
+     */
+    public EventBox receiveEvent(ByteBuffer payload) throws IOException {
+        return binaryCodec.decode(payload);
+    }
+
+    /**
+     * Send all future events with the binary codec, the peer must already know to expect it.
+     *
+     * @param ack packet telling the peer the codec has been accepted, sent before any binary event
      * @throws IOException
      */
-    public void close() throws IOException {
-        socket.close();
+    void useBinaryCodec(Packet ack) throws IOException {
+        synchronized (binaryCodec) {
+            if (ack != null) {
+                send(ack);
+            }
+            outgoingCodec = binaryCodec;
+        }
+    }
+
+    /**
+     * @return the codec used for outgoing events
+     */
+    EventBoxCodec outgoingCodec() {
+        return outgoingCodec;
+    }
+
+    /**
+     * Start allowing events to be sent to the peer as datagrams
+     *
+     * @param endpoint endpoint to send them through
+     * @param address address of the peer's endpoint
+     * @param token token identifying this session
+     */
+    void openDatagrams(DatagramEndpoint endpoint, SocketAddress address, long token) {
+        datagramAddress = address;
+        datagramToken = token;
+        datagrams = endpoint;
     }
 
-    public boolean isConnected() {
-        return socket.isConnected();
+    /**
+     * @return true iff events can be sent to the peer as datagrams
+     */
+    boolean hasDatagrams() {
+        return datagrams != null;
     }
 
-    public void run() {
-        strategy.connected(this);
+    /**
+     * @return address of the peer's datagram endpoint, or null
+     */
+    SocketAddress datagramAddress() {
+        return datagramAddress;
+    }
 
-        InputStream input;
-        byte[] buffer;
-        Packet.Builder builder = new Packet.Builder();
-        try {
-            input = socket.getInputStream();
-            buffer = new byte[1024];
-        } catch (IOException ex) {
-            System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " input stream error: " + ex);
-            return;
+    /**
+     * Send an event as a datagram if there is a datagram channel to the peer and the event is small enough
+     *
+     * @param payload the event in the dictionary free binary format
+     * @return false if the event must be sent through the session instead
+     * @throws IOException
+     */
+    boolean sendDatagram(ByteBuffer payload) throws IOException {
+        DatagramEndpoint endpoint = datagrams;
+        if (endpoint == null || payload.remaining() > DatagramEndpoint.MAX_PAYLOAD_LENGTH) {
+            return false;
         }
+        endpoint.send(datagramAddress, DatagramEndpoint.DATA, datagramToken, datagramSequence.incrementAndGet(), payload);
+        return true;
+    }
 
-        System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " started loop");
-        while (!socket.isClosed() && socket.isConnected()) {
-            try {
-                int len = input.read(buffer);
-                if (len == -1) {
-                    System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " End of Stream");
-                    break;
-                }
+    /**
+     * @param sequence sequence number of the datagram the event arrived in
+     * @param event the event
+     * @return false if a newer datagram about the same event and source has already been received
+     */
+    boolean acceptDatagram(int sequence, EventBox event) {
+        return datagramFilter.accept(event.eventName + '/' + event.sourceId, sequence);
+    }
 
-                byte[] recv = Arrays.copyOf(buffer, len);
-                builder.append(recv);
-                while (builder.isReady()) {
-                    strategy.received(this, builder.build());
-                    builder = new Packet.Builder().append(builder.overflow());
-                }
+    /**
+     * @param bytes number of bytes just read from the peer
+     */
+    void recordReceived(int bytes) {
+        bytesReceived += bytes;
+    }
+
+    /**
+     * @return figures for the session's outbound queue and the bytes it has read
+     */
+    SessionStats stats() {
+        return new SessionStats(outbound.stats(), bytesReceived);
+    }
 
+    /**
+     * Send a packet through the session
+     *
+     * @param msg message to be sent
+     * @throws IOException
+     */
+    public void send(Packet msg) throws IOException {
+        queue(ByteBuffer.wrap(msg.toBytes()), false);
+    }
 
-            } catch (IOException ex) {
-                System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " error: " + ex);
-                break;
+    /**
+     * Add bytes that are already framed as a packet to the outbound queue, writing them now unless writes
+     * are being coalesced.
+     *
+     * @param frame the remaining bytes are sent, the buffer may be shared with other sessions so only its
+     *              position is changed
+     * @param droppable whether the frame may be dropped when the client is slow
+     * @throws IOException if the session could not be written to or was disconnected for being slow
+     */
+    private void queue(ByteBuffer frame, boolean droppable) throws IOException {
+        if (!outbound.offer(frame)) {
+            switch (slowClientPolicy) {
+                case DISCONNECT:
+                    close();
+                    throw new IOException("Outbound queue past its high-water mark, disconnected " + this);
+                case DROP:
+                    if (droppable) {
+                        outbound.recordDropped();
+                        return;
+                    }
+                    outbound.add(frame);
+                    break;
             }
         }
 
-        // Cleanup
-        if (!socket.isClosed()) {
-            try {
-                socket.close();
-            } catch (IOException ex) {
-                // muffu muffu~
-            }
+        if (!coalesce) {
+            writeQueued();
         }
-        strategy.disconnected(this);
+    }
 
+    /**
+     * Start writing everything in the outbound queue, a server calls this once per tick
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        writeQueued();
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+    /**
+     * @return the outbound queue for subclasses to write from
+     */
+    OutboundQueue outbound() {
+        return outbound;
+    }
 
-        Session session = (Session) o;
+    /**
+     * Write the outbound queue from the calling thread, as much as can be written without blocking when
+     * the session is non-blocking
+     *
+     * @throws IOException
+     */
+    abstract void writeQueued() throws IOException;
 
-        if (!socket.equals(session.socket)) return false;
-        if (!outputStream.equals(session.outputStream)) return false;
-        return strategy.equals(session.strategy);
+    /**
+     * @return the id the client connected to the server as, or null if it has not connected
+     */
+    String clientId() {
+        return clientId;
     }
 
-    @Override
-    public int hashCode() {
-        int result = socket.hashCode();
-        result = 31 * result + outputStream.hashCode();
-        result = 31 * result + strategy.hashCode();
-        return result;
+    void setClientId(String clientId) {
+        this.clientId = clientId;
     }
 
+    /**
+     * Close the session
+     *
+     * @throws IOException
+     */
+    public abstract void close() throws IOException;
+
+    public abstract boolean isConnected();
+
     public interface SessionStrategy {
 
         /**
@@ -155,4 +294,4 @@ class Session implements Runnable {
          */
         void received(Session from, Packet packet);
     }
-}
\ No newline at end of file
+}
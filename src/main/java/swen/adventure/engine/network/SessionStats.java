@@ -0,0 +1,75 @@
+package swen.adventure.engine.network;
+
+/**
+ * Point in time figures for the outbound queue of one session
+ */
+public class SessionStats {
+    /**
+     * Frames waiting to be written
+     */
+    public final int queuedFrames;
+    /**
+     * Bytes waiting to be written
+     */
+    public final int queuedBytes;
+    /**
+     * Bytes written by the most recent flush
+     */
+    public final long lastFlushBytes;
+    /**
+     * Bytes written over the life of the session
+     */
+    public final long bytesSent;
+    /**
+     * Number of flushes that wrote something
+     */
+    public final long flushes;
+    /**
+     * Frames dropped because the queue was past its high-water mark
+     */
+    public final long droppedFrames;
+    /**
+     * Bytes read from the client's connection over the life of the session, datagrams are not counted
+     */
+    public final long bytesReceived;
+
+    SessionStats(int queuedFrames, int queuedBytes, long lastFlushBytes, long bytesSent, long flushes, long droppedFrames) {
+        this.queuedFrames = queuedFrames;
+        this.queuedBytes = queuedBytes;
+        this.lastFlushBytes = lastFlushBytes;
+        this.bytesSent = bytesSent;
+        this.flushes = flushes;
+        this.droppedFrames = droppedFrames;
+        this.bytesReceived = 0;
+    }
+
+    SessionStats(SessionStats outbound, long bytesReceived) {
+        this.queuedFrames = outbound.queuedFrames;
+        this.queuedBytes = outbound.queuedBytes;
+        this.lastFlushBytes = outbound.lastFlushBytes;
+        this.bytesSent = outbound.bytesSent;
+        this.flushes = outbound.flushes;
+        this.droppedFrames = outbound.droppedFrames;
+        this.bytesReceived = bytesReceived;
+    }
+
+    /**
+     * @return mean number of bytes written per flush
+     */
+    public double bytesPerFlush() {
+        return flushes == 0 ? 0 : (double) bytesSent / flushes;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionStats{" +
+                "queuedFrames=" + queuedFrames +
+                ", queuedBytes=" + queuedBytes +
+                ", lastFlushBytes=" + lastFlushBytes +
+                ", bytesSent=" + bytesSent +
+                ", flushes=" + flushes +
+                ", droppedFrames=" + droppedFrames +
+                ", bytesReceived=" + bytesReceived +
+                '}';
+    }
+}
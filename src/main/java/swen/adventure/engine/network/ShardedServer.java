@@ -0,0 +1,272 @@
+package swen.adventure.engine.network;
+
+import swen.adventure.engine.datastorage.SceneGraphDelta;
+import swen.adventure.engine.metrics.MetricsRegistry;
+import swen.adventure.engine.scenegraph.SceneNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares one NetworkServer between several independent game instances (shards), so one process on one port can
+ * run a world on each core.
+ *
+ * Each shard is a Server of its own that only receives events from, and sends to, the clients routed to it. A
+ * client is routed when it connects, to the shard the Router chooses, and stays there until it disconnects.
+ * There is no routing thread: whichever shard drains first takes everything the network server has received and
+ * hands each event to the shard of the client it came from, which the network server has set from the connection
+ * the event arrived on rather than trusting the client.
+ */
+public class ShardedServer {
+
+    /**
+     * Chooses the shard a newly connected client plays on
+     */
+    @FunctionalInterface
+    public interface Router {
+        /**
+         * @param clientId id of the client that has connected
+         * @param clients number of clients on each shard
+         * @return index of the shard for the client
+         */
+        int route(String clientId, int[] clients);
+    }
+
+    /**
+     * Puts each client on the shard with the fewest clients
+     */
+    public static final Router LEAST_LOADED = (clientId, clients) -> {
+        int least = 0;
+        for (int i = 1; i < clients.length; i++) {
+            if (clients[i] < clients[least]) {
+                least = i;
+            }
+        }
+        return least;
+    };
+
+    private final NetworkServer network;
+    private final Router router;
+    private final Shard[] shards;
+    private final Map<String, Shard> routes = new ConcurrentHashMap<>();
+
+    private final ReentrantLock routing = new ReentrantLock();
+    private final List<EventBox> received = new ArrayList<>(); // guarded by routing
+    private int running; // guarded by this
+
+    /**
+     * @param network network server the clients connect to, it is started when the first shard is
+     * @param shards number of shards
+     * @param router chooses the shard for each client
+     */
+    public ShardedServer(NetworkServer network, int shards, Router router) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("A sharded server needs at least one shard");
+        }
+        this.network = network;
+        this.router = router;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i);
+        }
+    }
+
+    /**
+     * @param index index of the shard
+     * @return the server for one shard, to be used by that shard's thread
+     */
+    public Server<String, EventBox> shard(int index) {
+        return shards[index];
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Add the network server's figures to a registry, along with the number of clients on each shard
+     *
+     * @param metrics registry to add them to
+     */
+    public void registerMetrics(MetricsRegistry metrics) {
+        network.registerMetrics(metrics);
+        for (Shard shard : shards) {
+            metrics.gauge(MetricsRegistry.name("server_shard_clients", "shard", String.valueOf(shard.index)),
+                    () -> shard.clients.size());
+        }
+    }
+
+    private synchronized void start(int port) throws IOException {
+        if (running == 0) {
+            network.start(port);
+        }
+        running++;
+    }
+
+    private synchronized void stop() {
+        running--;
+        if (running == 0) {
+            network.stop();
+        }
+    }
+
+    /**
+     * Hand everything the network server has received to the shards it is for, unless another shard is already
+     * doing so, in which case the events will be there by its next drain
+     */
+    private void route() {
+        if (!routing.tryLock()) {
+            return;
+        }
+        try {
+            network.drainTo(received);
+            for (EventBox event : received) {
+                route(event);
+            }
+        } finally {
+            received.clear();
+            routing.unlock();
+        }
+    }
+
+    private void route(EventBox event) {
+        Shard shard = event.from == null ? null : routes.get(event.from);
+        if (shard == null && event.eventName.equals("playerConnected")) {
+            int[] clients = new int[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                clients[i] = shards[i].clients.size();
+            }
+            shard = shards[router.route(event.from, clients)];
+            shard.clients.add(event.from);
+            routes.put(event.from, shard);
+        }
+        if (shard == null) {
+            return; // from a client that has already gone
+        }
+
+        if (event.eventName.equals("playerDisconnected")) {
+            routes.remove(event.from);
+            shard.clients.remove(event.from);
+        }
+        shard.inbound.add(event);
+    }
+
+    /**
+     * The part of the server one game instance sees
+     */
+    private class Shard implements Server<String, EventBox> {
+        final int index;
+        final Set<String> clients = ConcurrentHashMap.newKeySet();
+        final Queue<EventBox> inbound = new ConcurrentLinkedQueue<>();
+        private volatile boolean started;
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Start the network server if no other shard has, every shard shares the port of the first
+         */
+        @Override
+        public void start(int port) throws IOException {
+            if (started) {
+                throw new RuntimeException("Cannot start a shard that is already running");
+            }
+            ShardedServer.this.start(port);
+            started = true;
+        }
+
+        /**
+         * Stop the shard, the network server is stopped with the last shard
+         */
+        @Override
+        public void stop() {
+            if (!started) {
+                throw new RuntimeException("Cannot stop a shard which is not running");
+            }
+            started = false;
+            ShardedServer.this.stop();
+        }
+
+        @Override
+        public Optional<EventBox> poll() {
+            route();
+            return Optional.ofNullable(inbound.poll());
+        }
+
+        @Override
+        public int drainTo(Collection<? super EventBox> into) {
+            route();
+            int count = 0;
+            EventBox event;
+            while ((event = inbound.poll()) != null) {
+                into.add(event);
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public void flush() {
+            network.flush(clients);
+        }
+
+        @Override
+        public boolean isRunning() {
+            return started && network.isRunning();
+        }
+
+        @Override
+        public boolean send(String id, EventBox message) {
+            return clients.contains(id) && network.send(id, message);
+        }
+
+        @Override
+        public boolean sendSnapShot(String id, SceneNode root) {
+            return clients.contains(id) && network.sendSnapShot(id, root);
+        }
+
+        @Override
+        public boolean sendSnapShot(String id, SceneNode root, SceneGraphDelta baseline) {
+            return clients.contains(id) && network.sendSnapShot(id, root, baseline);
+        }
+
+        @Override
+        public List<String> getClientIds() {
+            List<String> ids = network.getClientIds();
+            ids.retainAll(clients);
+            return ids;
+        }
+
+        @Override
+        public void sendAll(EventBox message, String... exclude) {
+            List<String> ids = new ArrayList<>(clients);
+            if (exclude.length > 0) {
+                ids.removeAll(new HashSet<>(Arrays.asList(exclude)));
+            }
+            network.sendTo(ids, message);
+        }
+
+        @Override
+        public void sendTo(Collection<String> ids, EventBox message) {
+            List<String> own = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                if (clients.contains(id)) {
+                    own.add(id);
+                }
+            }
+            network.sendTo(own, message);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package swen.adventure.engine.network;
+
+/**
+ * What a server does with a client whose outbound queue has grown past its high-water mark, i.e. a client
+ * that is not reading as fast as the server is sending.
+ */
+public enum SlowClientPolicy {
+    /**
+     * Disconnect the client, it can rejoin and get a fresh snapshot
+     */
+    DISCONNECT,
+    /**
+     * Drop broadcast events for the client until it catches up, other packets are still queued. The client
+     * will miss updates so this is only suitable for traffic that is soon superseded, like movement.
+     */
+    DROP
+}
@@ -0,0 +1,86 @@
+package swen.adventure.engine.network;
+
+import swen.adventure.engine.datastorage.SceneGraphDelta;
+import swen.adventure.engine.datastorage.SceneGraphSerializer;
+import swen.adventure.engine.metrics.Counter;
+import swen.adventure.engine.scenegraph.SceneNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The last snapshot made of each scene graph a server sends, kept until the graph's state version changes so
+ * that every client joining in the meantime is sent the same bytes instead of a serialization of its own.
+ *
+ * Snapshots can be gzipped, clients tell them apart from xml by the gzip header.
+ */
+class SnapshotCache {
+
+    /**
+     * The snapshot of one graph, guarded by its own monitor
+     */
+    private static class Entry {
+        SceneGraphDelta baseline;
+        boolean compressed;
+        long version;
+        byte[] bytes;
+    }
+
+    private final Map<SceneNode, Entry> entries = new IdentityHashMap<>(); // guarded by itself
+    private volatile boolean compress;
+
+    final Counter hits = new Counter();
+    final Counter misses = new Counter();
+
+    /**
+     * @param compress whether snapshots made from now on should be gzipped
+     */
+    void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * @param root root of the scene graph
+     * @param baseline state of the level as loaded, to only include what has changed since, or null for everything
+     * @return the snapshot of the graph, only made again if the graph has changed since the last one
+     */
+    byte[] snapshot(SceneNode root, SceneGraphDelta baseline) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(root, r -> new Entry());
+        }
+
+        synchronized (entry) {
+            // read before serializing, so a change made meanwhile makes the next snapshot again
+            long version = root.stateVersion();
+            boolean compressed = compress;
+            if (entry.bytes != null && entry.version == version && entry.baseline == baseline
+                    && entry.compressed == compressed) {
+                hits.increment();
+                return entry.bytes;
+            }
+            misses.increment();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (OutputStream out = compressed ? new GZIPOutputStream(bytes) : bytes) {
+                if (baseline != null) {
+                    baseline.serializeToStream(root, out);
+                } else {
+                    SceneGraphSerializer.serializeToStream(root, out);
+                }
+            } catch (IOException ex) {
+                throw new AssertionError(ex); // writing to memory
+            }
+
+            entry.baseline = baseline;
+            entry.compressed = compressed;
+            entry.version = version;
+            entry.bytes = bytes.toByteArray();
+            return entry.bytes;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/* Contributor List  */ 
+ /* Joseph Bennett (bennetjose) (300319773) */ 
+ /* David Barnett (barnetdavi) (300313764) */ 
+ package swen.adventure.engine.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by David Barnett, Student ID 3003123764, on 19/09/15.
+ */
+
+/**
+ * Session backed by a blocking socket. The receive loop blocks in <code>InputStream.read</code> so each
+ * session needs a thread of its own to run on.
+ *
+ * When writes are coalesced a second thread is started on the first flush to do the writing, so a client
+ * that is slow to read never blocks the thread that flushes it.
+ */
+class SocketSession extends Session implements Runnable {
+    private final Socket socket;
+    private final OutputStream outputStream;
+    private final FrameDecoder decoder;
+    private final FrameDecoder.FrameHandler handler;
+
+    private final Object writeLock;
+    private ByteBuffer batch; // guarded by writeLock
+    private volatile Thread writer;
+
+    /**
+     * Create a network session that wraps a connected socket
+     *
+     * @note after making a session the socket should <b>NOT</b> be used afterwards
+     *       any use of the socket creating the Session is undefined behaviour
+     *
+     * @param socket the socket to be wrapped
+     * @param strategy
+     * @throws IOException
+     */
+    public SocketSession(Socket socket, SessionStrategy strategy) throws IOException {
+        super(strategy);
+        this.socket = socket;
+        outputStream = socket.getOutputStream();
+        decoder = new FrameDecoder();
+        handler = packet -> strategy.received(this, packet);
+        writeLock = new Object();
+        batch = ByteBuffer.allocate(FrameDecoder.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Copy everything in the outbound queue into one batch and write it to the socket, blocking until it
+     * has all been written
+     *
+     * @throws IOException
+     */
+    @Override
+    void writeQueued() throws IOException {
+        synchronized (writeLock) {
+            batch = outbound().takeAll(batch);
+            if (batch.hasRemaining()) {
+                outputStream.write(batch.array(), batch.arrayOffset(), batch.limit());
+                outbound().recordFlush(batch.limit());
+            }
+        }
+    }
+
+    /**
+     * Wake the writer thread to write the outbound queue, starting it if this is the first flush
+     */
+    @Override
+    public void flush() {
+        Thread thread = writer;
+        if (thread == null) {
+            synchronized (writeLock) {
+                if (writer == null) {
+                    writer = new Thread(this::writeLoop, getClass().getSimpleName() + "Writer#" + socket.getPort());
+                    writer.setDaemon(true);
+                    writer.start();
+                }
+                thread = writer;
+            }
+        }
+        LockSupport.unpark(thread);
+    }
+
+    private void writeLoop() {
+        while (!socket.isClosed()) {
+            if (outbound().isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                writeQueued();
+            } catch (IOException ex) {
+                System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " write error: " + ex);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // muffu muffu~
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the session
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    public void run() {
+        strategy.connected(this);
+
+        InputStream input;
+        try {
+            input = socket.getInputStream();
+        } catch (IOException ex) {
+            System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " input stream error: " + ex);
+            return;
+        }
+
+        System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " started loop");
+        while (!socket.isClosed() && socket.isConnected()) {
+            try {
+                int len = decoder.readFrom(input);
+                if (len == -1) {
+                    System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " End of Stream");
+                    break;
+                }
+                recordReceived(len);
+
+                decoder.decode(handler);
+            } catch (IOException ex) {
+                System.out.println(strategy + "@" + socket.getLocalSocketAddress() + " error: " + ex);
+                break;
+            }
+        }
+
+        // Cleanup
+        try {
+            close();
+        } catch (IOException ex) {
+            // muffu muffu~
+        }
+        strategy.disconnected(this);
+
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SocketSession session = (SocketSession) o;
+
+        if (!socket.equals(session.socket)) return false;
+        if (!outputStream.equals(session.outputStream)) return false;
+        return strategy.equals(session.strategy);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = socket.hashCode();
+        result = 31 * result + outputStream.hashCode();
+        result = 31 * result + strategy.hashCode();
+        return result;
+    }
+}
\ No newline at end of file
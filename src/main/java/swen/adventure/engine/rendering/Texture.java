@@ -15,9 +15,9 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL12.GL_TEXTURE_BASE_LEVEL;
@@ -35,8 +35,9 @@ import static org.lwjgl.opengl.GL21.GL_SRGB8_ALPHA8;
  */
 public final class Texture {
 
-    private static Map<String, Texture> _textureCache = new HashMap<>();
-    private static Map<String, Texture> _normalsCache = new HashMap<>();
+    // shared by every world in the process, two threads loading the same texture at once just load it twice
+    private static Map<String, Texture> _textureCache = new ConcurrentHashMap<>();
+    private static Map<String, Texture> _normalsCache = new ConcurrentHashMap<>();
 
     private final ByteBuffer textureData;
     private final List<ByteBuffer> _mipMappedData = new ArrayList<>();
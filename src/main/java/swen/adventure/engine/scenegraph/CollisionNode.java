@@ -83,6 +83,7 @@ public final class CollisionNode extends SceneNode {
 
     public void setBoundingBox(BoundingBox boundingBox) {
         _localSpaceBoundingBox = boundingBox;
+        this.stateChanged();
     }
 
     @Override
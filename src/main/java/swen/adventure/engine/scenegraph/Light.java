@@ -139,6 +139,7 @@ public final class Light extends SceneNode {
 
     public void setIntensity(float intensity) {
         _intensity = intensity;
+        this.stateChanged();
     }
 
     /** The light's colour as a unit vector. */
@@ -148,6 +149,7 @@ public final class Light extends SceneNode {
 
     public void setColour(final Vector3 colour) {
         _colour = colour;
+        this.stateChanged();
     }
 
     /** Returns whether the light is currently contributing to the scene. */
@@ -157,6 +159,7 @@ public final class Light extends SceneNode {
 
     public void setOn(boolean isOn) {
         _on = isOn;
+        this.stateChanged();
     }
 
     /** @return this light's colour multiplied by its intensity. */
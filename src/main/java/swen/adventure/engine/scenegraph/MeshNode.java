@@ -16,9 +16,9 @@ import swen.adventure.engine.rendering.shaders.MaterialShader;
 import swen.adventure.game.scenenodes.Player;
 
 import java.io.FileNotFoundException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Thomas Roughton, Student ID 300313924, on 25/09/15.
@@ -117,6 +117,7 @@ public final class MeshNode extends SceneNode {
             });
             _collisionNode = Optional.empty();
         }
+        this.stateChanged();
     }
 
     /**
@@ -166,38 +167,34 @@ public final class MeshNode extends SceneNode {
         _mesh.render(vertexArrayObject);
     }
 
-    private static Map<String, GLMesh<Float>> _loadedMeshes = new HashMap<>();
+    // shared by every world in the process, a mesh is only read once it has been loaded
+    private static Map<String, GLMesh<Float>> _loadedMeshes = new ConcurrentHashMap<>();
 
     /**
      * Loads a mesh with a given directory and file name. Will return a cached mesh if it has already been loaded.
+     * Safe to call from several threads, a mesh is only loaded once.
      * @param directory The directory the mesh is in.
      * @param fileName the name of the mesh.
      * @return The GLMesh object for the mesh with that name and directory
      */
     public static GLMesh<Float> meshWithFileName(String directory, String fileName) {
-        GLMesh<Float> mesh = _loadedMeshes.get(fileName);
-
-        if (mesh == null) {
-            String[] fileNameComponents = fileName.split("\\.");
-            String extension = fileNameComponents[fileNameComponents.length - 1];
-
-            if (extension.equalsIgnoreCase("obj")) {
-                try {
-                    try {
-                        mesh = ObjMesh.loadMesh(directory, fileName);
-                    } catch (ParserException e) {
-                        throw new RuntimeException(e);
-                    }
-                } catch (FileNotFoundException e) {
-                    throw new RuntimeException("Could not load mesh file in directory " + directory + " named " + fileName);
-                }
-            } else {
-                throw new RuntimeException("The file format " + extension + " is not supported.");
-            }
-            _loadedMeshes.put(fileName, mesh);
-        }
+        return _loadedMeshes.computeIfAbsent(fileName, name -> MeshNode.loadMesh(directory, name));
+    }
+
+    private static GLMesh<Float> loadMesh(String directory, String fileName) {
+        String[] fileNameComponents = fileName.split("\\.");
+        String extension = fileNameComponents[fileNameComponents.length - 1];
 
-        return mesh;
+        if (!extension.equalsIgnoreCase("obj")) {
+            throw new RuntimeException("The file format " + extension + " is not supported.");
+        }
+        try {
+            return ObjMesh.loadMesh(directory, fileName);
+        } catch (ParserException e) {
+            throw new RuntimeException(e);
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Could not load mesh file in directory " + directory + " named " + fileName);
+        }
     }
 
     public boolean isCollidable() {
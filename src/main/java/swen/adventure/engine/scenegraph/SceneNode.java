@@ -7,11 +7,12 @@
 
 import swen.adventure.engine.Action;
 import swen.adventure.engine.Event;
+import swen.adventure.engine.EventBindings;
 import swen.adventure.engine.rendering.maths.Matrix4;
 import swen.adventure.engine.rendering.maths.Vector3;
 
-import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 /**
@@ -30,7 +31,8 @@ public abstract class SceneNode {
     }
 
     private Optional<TransformNode> _parent = Optional.empty();
-    protected Set<SceneNode> _childNodes = new HashSet<>();
+    // in the order they were added, so the graph is serialized the same way each time
+    protected Set<SceneNode> _childNodes = new LinkedHashSet<>();
 
     /** Dynamic nodes are any nodes whose transforms may change during the execution of the game. */
     private boolean _isDynamic = false;
@@ -40,6 +42,8 @@ public abstract class SceneNode {
     public final String id;
     protected Map<String, SceneNode> _idsToNodesMap;
     protected Map<Class<? extends SceneNode>, List<? extends SceneNode>> _nodesOfTypeMap;
+    /** Counts the changes to the saved state of the graph, shared by every node in the graph like the maps above. */
+    protected final AtomicLong _stateVersion;
 
     public static Action<SceneNode, SceneNode, SceneNode> actionSetEnabled = (ignored, ignored1, sceneNode, data) -> {
         sceneNode.setEnabled(true);
@@ -55,6 +59,7 @@ public abstract class SceneNode {
     public SceneNode(String id) {
         _idsToNodesMap = new HashMap<>();
         _nodesOfTypeMap = new HashMap<>();
+        _stateVersion = new AtomicLong();
 
         this.id = id;
         _idsToNodesMap.put(id, this);
@@ -72,6 +77,7 @@ public abstract class SceneNode {
         //Get a reference to the id-node dictionary, and pass along a reference to the lights set.
         _idsToNodesMap = parent._idsToNodesMap;
         _nodesOfTypeMap = parent._nodesOfTypeMap;
+        _stateVersion = parent._stateVersion;
 
         this.id = id;
         _idsToNodesMap.put(id, this);
@@ -79,6 +85,26 @@ public abstract class SceneNode {
         _isDynamic = isDynamic || parent.isDynamic(); //a node is considered dynamic if it or any of its parents can have a changing transform.
 
         this.addNodeWithTypeToMap(this.getClass(), this);
+        this.stateChanged();
+    }
+
+    /**
+     * The version of the state of the scene graph this node is in, which changes whenever anything that would be
+     * serialized changes. Anything made from the graph, such as a snapshot, can be reused for as long as the
+     * version stays the same.
+     *
+     * @return the version of the graph's state
+     */
+    public long stateVersion() {
+        return _stateVersion.get();
+    }
+
+    /**
+     * Record that the state of this node has changed, so anything made from an earlier version of the graph is
+     * out of date. Called by anything that changes a value the SceneGraphSerializer saves.
+     */
+    public void stateChanged() {
+        _stateVersion.incrementAndGet();
     }
 
 
@@ -126,17 +152,27 @@ public abstract class SceneNode {
      * @return The event for that name on this object.
      * @throws RuntimeException if the event does not exist on this object.
      */
-    @SuppressWarnings("unchecked")
     public Event<? extends GameObject, ?> eventWithName(String eventName) {
-        try {
-            Field field = this.getClass().getField("event" + eventName);
-            return (Event<? extends GameObject, ?>) field.get(this);
-        } catch (IllegalAccessException e) {
-            System.err.println("Error accessing event with name " + eventName + ": " + e);
-        } catch (NoSuchFieldException ignored) {
+        Event<? extends GameObject, ?> event = EventBindings.forClass(this.getClass()).event(this, eventName);
+        if (event == null) {
+            throw new RuntimeException("Could not find an event of name " + eventName + " on " + this);
         }
+        return event;
+    }
 
-        throw new RuntimeException("Could not find an event of name " + eventName + " on " + this);
+    /**
+     * Finds and returns the event on this object with the given id.
+     * @param eventId The id of the event's name.
+     * @return The event for that id on this object.
+     * @throws RuntimeException if the event does not exist on this object.
+     * @see EventBindings#idForEventName(String)
+     */
+    public Event<? extends GameObject, ?> eventWithId(int eventId) {
+        Event<? extends GameObject, ?> event = EventBindings.forClass(this.getClass()).event(this, eventId);
+        if (event == null) {
+            throw new RuntimeException("Could not find an event of id " + eventId + " on " + this);
+        }
+        return event;
     }
 
     /**
@@ -225,6 +261,7 @@ public abstract class SceneNode {
         }
 
         _parent = Optional.ofNullable(newParent);
+        this.stateChanged();
     }
 
     public Set<SceneNode> children() {
@@ -238,7 +275,10 @@ public abstract class SceneNode {
     /** Recursively sets isEnabled on this node's children and itself. */
     public void setEnabled(boolean isEnabled) {
         this.children().forEach(node -> node.setEnabled(isEnabled));
-        _isEnabled = isEnabled;
+        if (_isEnabled != isEnabled) {
+            _isEnabled = isEnabled;
+            this.stateChanged();
+        }
     }
 
 }
\ No newline at end of file
@@ -127,6 +127,7 @@ public final class TransformNode extends SceneNode {
         this.checkForModificationOfStaticNode();
         _translation = translation;
         this.setNeedsRecalculateTransform();
+        this.stateChanged();
     }
 
     /**
@@ -144,6 +145,7 @@ public final class TransformNode extends SceneNode {
         this.checkForModificationOfStaticNode();
         _rotation = rotation;
         this.setNeedsRecalculateTransform();
+        this.stateChanged();
     }
 
     /**
@@ -182,6 +184,7 @@ public final class TransformNode extends SceneNode {
         this.checkForModificationOfStaticNode();
         _scale = scale;
         this.setNeedsRecalculateTransform();
+        this.stateChanged();
     }
 
     public void scaleBy(Vector3 scale) {
@@ -9,6 +9,7 @@
 import processing.opengl.PGraphics2D;
 import swen.adventure.Settings;
 import swen.adventure.engine.*;
+import swen.adventure.engine.animation.InterpolationBuffer;
 import swen.adventure.engine.datastorage.EventConnectionParser;
 import swen.adventure.engine.datastorage.ParserException;
 import swen.adventure.engine.datastorage.SceneGraphParser;
@@ -27,6 +28,7 @@ import swen.adventure.game.input.AdventureGameKeyInput;
 import swen.adventure.game.input.AdventureGameMouseInput;
 import swen.adventure.game.scenenodes.AdventureGameObject;
 import swen.adventure.game.scenenodes.Inventory;
+import swen.adventure.game.scenenodes.Item;
 import swen.adventure.game.scenenodes.Player;
 import swen.adventure.game.scenenodes.SpawnNode;
 import swen.adventure.game.ui.components.InventoryComponent;
@@ -58,6 +60,7 @@ public class AdventureGame implements Game {
     private float _viewAngleX;
     private float _viewAngleY;
     private boolean _viewAngleUpdated = false;
+    private Map<String, Object> _meshLookedAtData = Collections.emptyMap();
 
     private float virtualUIWidth;
     private float virtualUIHeight;
@@ -65,6 +68,12 @@ public class AdventureGame implements Game {
     private EnumMap<InteractionType, Interaction> _possibleInteractionsForStep = new EnumMap<>(InteractionType.class);
     private EnumMap<Interaction.ActionType, Interaction> _interactionInProgressForActionType = new EnumMap<>(Interaction.ActionType.class);
 
+    private static final int RemotePlayerStates = 32;
+    private static final long RemotePlayerExtrapolationMillis = 200;
+    private final Map<Player, InterpolationBuffer> _remotePlayerMotion = new HashMap<>();
+
+    private final InputReconciler _inputs = new InputReconciler(256, InputReconciler.DefaultTolerance);
+
     public AdventureGame(Client<EventBox> client) {
         _client = client;
     }
@@ -143,6 +152,10 @@ public class AdventureGame implements Game {
 
         Event.EventSet playerMovedSet = Event.eventSetForName("PlayerMoved");
         playerMovedSet.addAction(this, MovePlayer);
+        if (Settings.DeferredPlayerMoves) {
+            // a player can move and turn several times a frame, only the last matters to the regions and the server
+            playerMovedSet.setDispatch(Event.Dispatch.Coalesced);
+        }
 
         try {
             List<EventConnectionParser.EventConnection> connections = EventConnectionParser.parseFile(Utilities.readLinesFromFile(Utilities.pathForResource("EventConnections", "event")));
@@ -163,7 +176,9 @@ public class AdventureGame implements Game {
 
 
     private static final Action<Player, Player, AdventureGame> MovePlayer = (eventObject, triggeringObject, listener, data) -> {
-        if (data.containsKey(EventDataKeys.Networked)) {
+        if (data.containsKey(EventDataKeys.Networked) && Settings.RemotePlayerDelayMillis > 0) {
+            listener.bufferRemotePlayerMove(eventObject, data);
+        } else if (data.containsKey(EventDataKeys.Networked)) {
             if (data.containsKey(EventDataKeys.Location)) {
                 eventObject.parent().get().setTranslation((Vector3) data.get(EventDataKeys.Location));
             }
@@ -171,14 +186,79 @@ public class AdventureGame implements Game {
                 eventObject.parent().get().setRotation((Quaternion) data.get(EventDataKeys.Quaternion));
             }
         } else {
-            listener._client.send(new EventBox("PlayerMoved", triggeringObject, eventObject, listener._player, data));
+            listener.sendPlayerMoved(triggeringObject, eventObject, data);
         }
     };
 
+    private void sendPlayerMoved(Player triggeringObject, Player player, Map<String, Object> data) {
+        TransformNode transform = player.parent().get();
+        // the data may be a pooled payload, which goes back to its pool once this returns
+        Map<String, Object> input = new HashMap<>();
+        // every move carries the whole transform so one that is lost is made up for by the next
+        input.put(EventDataKeys.Location, transform.translation());
+        input.put(EventDataKeys.Quaternion, transform.rotation());
+        input.put(EventDataKeys.InputSequence, _inputs.record(transform.translation(), false));
+        _client.send(new EventBox("PlayerMoved", triggeringObject, player, _player, input));
+    }
+
+    /**
+     * Correct the local player's predicted state with the state the server acknowledged.
+     */
+    private void reconcileInputs(Map<String, Object> data) {
+        TransformNode transform = _player.parent().get();
+        Vector3 corrected = _inputs.reconcile((Integer) data.get(EventDataKeys.InputSequence),
+                (Vector3) data.get(EventDataKeys.Location), transform.translation());
+        if (corrected != null) {
+            transform.setTranslation(corrected);
+        }
+
+        // with none of our interactions in flight the server's inventory is the whole truth, an item it says we
+        // hold that we do not was given to us first and then predicted away, e.g. by another player's pick up
+        if (!_inputs.hasPendingInteractions()) {
+            Inventory inventory = _player.inventory();
+            for (String itemId : (String[]) data.get(EventDataKeys.InventoryItems)) {
+                _sceneGraph.nodeWithID(itemId)
+                        .filter(node -> node instanceof Item)
+                        .map(node -> (Item) node)
+                        .filter(item -> item.containingContainer().orElse(null) != inventory)
+                        .ifPresent(item -> item.moveToContainer(inventory));
+            }
+        }
+    }
+
+
+    /**
+     * Store a move of another client's player to be shown a little later, smoothed between the moves either side.
+     */
+    private void bufferRemotePlayerMove(Player player, Map<String, Object> data) {
+        TransformNode transform = player.parent().get();
+        InterpolationBuffer buffer = _remotePlayerMotion.get(player);
+        if (buffer == null) {
+            buffer = new InterpolationBuffer(RemotePlayerStates, Settings.RemotePlayerDelayMillis, RemotePlayerExtrapolationMillis);
+            _remotePlayerMotion.put(player, buffer);
+        }
+
+        Vector3 location = (Vector3) data.get(EventDataKeys.Location);
+        Quaternion rotation = (Quaternion) data.get(EventDataKeys.Quaternion);
+        if (buffer.isEmpty()) {
+            // start from where the player is now rather than waiting for both to arrive
+            location = location != null ? location : transform.translation();
+            rotation = rotation != null ? rotation : transform.rotation();
+        }
+        buffer.add(System.nanoTime(), location, rotation);
+    }
+
+    private void moveRemotePlayers() {
+        long now = System.nanoTime();
+        for (Map.Entry<Player, InterpolationBuffer> remotePlayer : _remotePlayerMotion.entrySet()) {
+            remotePlayer.getKey().parent().ifPresent(transform -> remotePlayer.getValue().applyTo(transform, now));
+        }
+    }
 
     private void sendInteraction(Interaction interaction) {
         Map<String, Object> data = new HashMap<>();
         data.put(EventDataKeys.InteractionType, interaction.interactionType);
+        data.put(EventDataKeys.InputSequence, _inputs.record(_player.parent().get().translation(), true));
         _client.send(new EventBox("InteractionPerformed",
                 interaction.gameObject.id,
                 interaction.meshNode.id,
@@ -189,6 +269,7 @@ public class AdventureGame implements Game {
     private void sendEndInteraction(Interaction interaction) {
         Map<String, Object> data = new HashMap<>();
         data.put(EventDataKeys.InteractionType, interaction.interactionType);
+        data.put(EventDataKeys.InputSequence, _inputs.record(_player.parent().get().translation(), true));
         _client.send(new EventBox("InteractionEnded",
                 interaction.gameObject.id,
                 interaction.meshNode.id,
@@ -199,6 +280,7 @@ public class AdventureGame implements Game {
     private void sendPlayerSelectSlot(int slot) {
         Map<String, Object> data = new HashMap<>();
         data.put(EventDataKeys.Slot, slot);
+        data.put(EventDataKeys.InputSequence, _inputs.record(_player.parent().get().translation(), true));
         _client.send(new EventBox("PlayerSlotSelected",
                 _player.id,
                 _player.id,
@@ -353,6 +435,11 @@ public class AdventureGame implements Game {
             event.eventData.put(EventDataKeys.Networked, true);
             SceneNode source = _sceneGraph.nodeWithID(event.sourceId).get();
 
+            if (event.eventName.equals("InputAcknowledged")) {
+                reconcileInputs(event.eventData);
+                continue;
+            }
+
             if (event.eventName.equals("playerConnected")) {
                 createPlayer(event.targetId);
                 continue;
@@ -385,7 +472,15 @@ public class AdventureGame implements Game {
             e.trigger(source, event.eventData);
         }
 
-        meshBeingLookedAt.ifPresent(meshNode -> meshNode.eventMeshLookedAt.trigger(this._player, Collections.singletonMap(EventDataKeys.Mesh, meshNode)));
+        this.moveRemotePlayers();
+
+        if (meshBeingLookedAt.isPresent()) {
+            MeshNode meshNode = meshBeingLookedAt.get();
+            if (_meshLookedAtData.get(EventDataKeys.Mesh) != meshNode) { // the same mesh is usually looked at for many frames
+                _meshLookedAtData = Collections.singletonMap(EventDataKeys.Mesh, meshNode);
+            }
+            meshNode.eventMeshLookedAt.trigger(this._player, _meshLookedAtData);
+        }
 
         GameDelegate.pollInput();
 
@@ -394,6 +489,8 @@ public class AdventureGame implements Game {
             _player.setLookDirection(_viewAngleX, _viewAngleY);
             _viewAngleUpdated = false;
         }
+
+        EventRegistry.current().queue().flush();
         this.render();
     }
 
@@ -458,6 +555,17 @@ public class AdventureGame implements Game {
     @Override
     public void cleanup() {
         _client.disconnect();
+
+        EventProfiler profiler = EventRegistry.current().profiler();
+        if (profiler != null) {
+            System.out.println(profiler.table());
+            File file = new File(Utilities.pathForResource((_player == null ? "client" : _player.id) + "-events", "csv"));
+            try {
+                profiler.writeCsv(file);
+            } catch (IOException e) {
+                System.err.println("Could not write the event profile to " + file + ": " + e);
+            }
+        }
     }
 
 
@@ -466,7 +574,11 @@ public class AdventureGame implements Game {
         // Start with networking using CLI arguments <_player id> <host> <port>
         Client<EventBox> client;
         if (args.length == 3) {
-            client = new NetworkClient(args[0]);
+            NetworkClient networkClient = new NetworkClient(args[0]);
+            if (Settings.DatagramMovement) {
+                networkClient.sendAsDatagrams("PlayerMoved");
+            }
+            client = networkClient;
             try {
                 client.connect(args[1], Integer.parseInt(args[2]));
             } catch (IOException e) {
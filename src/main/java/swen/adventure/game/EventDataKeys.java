@@ -23,4 +23,6 @@ public class EventDataKeys {
     public static final String Networked = "Networked"; // value is a boolean
     public static final String Quaternion = "Quaternion"; // value is a Quaternion
     public static final String Slot = "Slot"; // value is a int
+    public static final String InputSequence = "InputSequence"; // value is a int
+    public static final String InventoryItems = "InventoryItems"; // value is a String[] of item ids
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package swen.adventure.game;
+
+import swen.adventure.engine.rendering.maths.Vector3;
+
+/**
+ * Keeps the local player's inputs that the server has not yet acknowledged so the player's predicted state can
+ * be checked against the server's.
+ *
+ * Each input sent to the server is given the next sequence number and recorded along with where it left the
+ * player. When the server acknowledges a sequence number it also says where the player is after that input. If
+ * that differs from where the input left the player, the player has drifted: the server's position is taken and
+ * the movement from the inputs still in flight is replayed on top of it.
+ */
+public class InputReconciler {
+    /**
+     * Distance the server's position can differ by before the player is corrected, small enough to go unseen
+     */
+    public static final float DefaultTolerance = 0.5f;
+
+    private final int[] _sequences;
+    private final Vector3[] _locations;
+    private final boolean[] _interactions;
+    private final float _tolerance;
+    private int _start;
+    private int _count;
+    private int _nextSequence = 1;
+
+    /**
+     * @param capacity most inputs that can be awaiting acknowledgement, older ones are forgotten
+     * @param tolerance distance the server's position can differ by before the player is corrected
+     */
+    public InputReconciler(int capacity, float tolerance) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("An input reconciler needs room for at least one input");
+        }
+        _sequences = new int[capacity];
+        _locations = new Vector3[capacity];
+        _interactions = new boolean[capacity];
+        _tolerance = tolerance;
+    }
+
+    /**
+     * Record an input that has been applied locally and is about to be sent
+     *
+     * @param location where the player is after the input
+     * @param interaction whether the input was an interaction rather than a move
+     * @return the sequence number to send with the input
+     */
+    public int record(Vector3 location, boolean interaction) {
+        if (_count == _sequences.length) {
+            _start = index(1);
+            _count--;
+        }
+        int sequence = _nextSequence++;
+        int i = index(_count);
+        _sequences[i] = sequence;
+        _locations[i] = location;
+        _interactions[i] = interaction;
+        _count++;
+        return sequence;
+    }
+
+    /**
+     * Forget the inputs up to and including the acknowledged one, and work out where the player should be
+     *
+     * @param acknowledged sequence number of the last input the server has processed
+     * @param serverLocation where the server has the player after that input
+     * @param currentLocation where the player is now
+     * @return where the player should be now, or null if the player has not drifted
+     */
+    public Vector3 reconcile(int acknowledged, Vector3 serverLocation, Vector3 currentLocation) {
+        Vector3 predicted = null;
+        while (_count > 0 && _sequences[_start] - acknowledged <= 0) {
+            predicted = _locations[_start];
+            _locations[_start] = null;
+            _start = index(1);
+            _count--;
+        }
+        if (predicted == null || serverLocation.distance(predicted) <= _tolerance) {
+            return null;
+        }
+
+        Vector3 drift = serverLocation.subtract(predicted);
+        for (int i = 0; i < _count; i++) {
+            _locations[index(i)] = _locations[index(i)].add(drift);
+        }
+        return currentLocation.add(drift);
+    }
+
+    /**
+     * @return true iff an interaction has been sent that the server has not acknowledged
+     */
+    public boolean hasPendingInteractions() {
+        for (int i = 0; i < _count; i++) {
+            if (_interactions[index(i)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of inputs awaiting acknowledgement
+     */
+    public int pending() {
+        return _count;
+    }
+
+    private int index(int i) {
+        return (_start + i) % _sequences.length;
+    }
+}
@@ -0,0 +1,170 @@
+package swen.adventure.game;
+
+import swen.adventure.engine.network.EventBox;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.scenegraph.SceneNode;
+import swen.adventure.engine.scenegraph.TransformNode;
+import swen.adventure.game.scenenodes.Player;
+import swen.adventure.game.scenenodes.Region;
+
+import java.util.*;
+
+/**
+ * Decides which clients an event needs to be sent to, so a client is only sent what happens near its player.
+ *
+ * A client is interested in an event if its player is within the radius of the event's source or target
+ * node, or shares a Region with the player that sent it. Events that change the state of the world, which
+ * clients have no other way of learning about, should be marked global and are sent to everyone.
+ *
+ * Players a client has not been told about while they were out of range would be shown where they were last
+ * seen, so whenever a player comes into a client's range the client is sent where they are now.
+ */
+public class InterestManager {
+    private static final String PLAYER_MOVED = "PlayerMoved";
+
+    private final TransformNode root;
+    private final float radius;
+    private final Set<String> globalEvents = new HashSet<>();
+
+    // players each client could see as of the last update
+    private final Map<String, Set<String>> visiblePlayers = new HashMap<>();
+    private final Map<String, Player> players = new HashMap<>();
+
+    /**
+     * @param root root of the scene graph the players are in
+     * @param radius distance from a client's player within which it is interested in events
+     */
+    public InterestManager(TransformNode root, float radius) {
+        this.root = root;
+        this.radius = radius;
+    }
+
+    /**
+     * Send events with this name to every client wherever they happen
+     *
+     * @param eventName name of the event
+     */
+    public void markGlobal(String eventName) {
+        globalEvents.add(eventName);
+    }
+
+    /**
+     * @param event event to check
+     * @return true iff the event should be sent to every client
+     */
+    public boolean isGlobal(EventBox event) {
+        return globalEvents.contains(event.eventName);
+    }
+
+    /**
+     * Find the clients that are interested in a event, not including the client that sent it
+     *
+     * @param event the event
+     * @param clientIds ids of the connected clients
+     * @param into collection the interested clients' ids are added to
+     */
+    public void interestedClients(EventBox event, Collection<String> clientIds, Collection<String> into) {
+        Optional<Vector3> source = positionOf(event.sourceId);
+        Optional<Vector3> target = Objects.equals(event.targetId, event.sourceId) ? Optional.empty() : positionOf(event.targetId);
+        Player sender = playerWithId(event.from);
+
+        for (String id : clientIds) {
+            if (id.equals(event.from)) {
+                continue;
+            }
+
+            Player player = playerWithId(id);
+            if (player == null) {
+                continue;
+            }
+
+            Vector3 position = player.positionInWorldSpace();
+            if ((source.isPresent() && position.distance(source.get()) <= radius)
+                    || (target.isPresent() && position.distance(target.get()) <= radius)
+                    || sharesRegion(player, sender)) {
+                into.add(id);
+            }
+        }
+    }
+
+    /**
+     * Work out which players each client can now see, and make a PlayerMoved event for every player that
+     * has come into a client's range since the last update. Should be called once per tick after the tick's
+     * events have been applied.
+     *
+     * @param clientIds ids of the connected clients
+     * @param sendTo called with the client id and the event to send to it
+     */
+    public void update(Collection<String> clientIds, EventSender sendTo) {
+        players.clear();
+        for (String id : clientIds) {
+            Player player = playerWithId(id);
+            if (player != null) {
+                players.put(id, player);
+            }
+        }
+        visiblePlayers.keySet().retainAll(players.keySet());
+
+        for (Map.Entry<String, Player> client : players.entrySet()) {
+            Set<String> visible = visiblePlayers.computeIfAbsent(client.getKey(), id -> new HashSet<>());
+            Vector3 position = client.getValue().positionInWorldSpace();
+
+            for (Map.Entry<String, Player> other : players.entrySet()) {
+                if (other.getKey().equals(client.getKey())) {
+                    continue;
+                }
+
+                boolean canSee = position.distance(other.getValue().positionInWorldSpace()) <= radius
+                        || sharesRegion(client.getValue(), other.getValue());
+                if (canSee && visible.add(other.getKey())) {
+                    sendTo.send(client.getKey(), whereIs(other.getValue()));
+                } else if (!canSee) {
+                    visible.remove(other.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the events made by <code>update</code>
+     */
+    @FunctionalInterface
+    public interface EventSender {
+        void send(String clientId, EventBox event);
+    }
+
+    private EventBox whereIs(Player player) {
+        TransformNode transform = player.parent().get();
+        Map<String, Object> data = new HashMap<>();
+        data.put(EventDataKeys.Location, transform.translation());
+        data.put(EventDataKeys.Quaternion, transform.rotation());
+        return new EventBox(PLAYER_MOVED, player.id, player.id, player.id, data);
+    }
+
+    private Optional<Vector3> positionOf(String nodeId) {
+        if (nodeId == null) {
+            return Optional.empty();
+        }
+        return root.nodeWithID(nodeId).map(SceneNode::positionInWorldSpace);
+    }
+
+    private Player playerWithId(String id) {
+        if (id == null) {
+            return null;
+        }
+        Optional<SceneNode> node = root.nodeWithID(id);
+        return node.isPresent() && node.get() instanceof Player ? (Player) node.get() : null;
+    }
+
+    private boolean sharesRegion(Player player, Player other) {
+        if (other == null) {
+            return false;
+        }
+        for (Region region : root.allNodesOfType(Region.class)) {
+            if (region.containsPlayer(player) && region.containsPlayer(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
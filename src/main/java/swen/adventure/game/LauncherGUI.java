@@ -84,7 +84,7 @@ public class LauncherGUI extends JFrame {
 
             Utilities.isHeadlessMode = true;
 
-            new MultiPlayerServer(Integer.parseInt(serverPortTextField.getText()), "SceneGraph").run();
+            MultiPlayerServer.serve(Integer.parseInt(serverPortTextField.getText()), "SceneGraph");
         });
 
         input.add(serverAddressPanel);
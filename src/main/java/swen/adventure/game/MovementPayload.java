@@ -0,0 +1,83 @@
+package swen.adventure.game;
+
+import swen.adventure.engine.EventPayload;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+/**
+ * The data of an event that moves or turns a player, triggered every frame while the player moves.
+ * Any of the fields may be unset.
+ */
+public final class MovementPayload extends EventPayload {
+
+    public static final Pool<MovementPayload> Payloads = new Pool<>(MovementPayload::new);
+
+    private static final String[] Keys = {EventDataKeys.Direction, EventDataKeys.Location, EventDataKeys.Quaternion, EventDataKeys.ElapsedMillis};
+
+    public Vector3 direction;
+    public Vector3 location;
+    public Quaternion rotation;
+    /** The time the movement took, or -1. */
+    public long elapsedMillis = -1;
+
+    /**
+     * @param direction The direction to move in.
+     * @param elapsedMillis The time to move for.
+     * @return A payload from the pool.
+     */
+    public static MovementPayload direction(Vector3 direction, long elapsedMillis) {
+        MovementPayload payload = Payloads.obtain();
+        payload.direction = direction;
+        payload.elapsedMillis = elapsedMillis;
+        return payload;
+    }
+
+    /**
+     * @param location The location moved to.
+     * @return A payload from the pool.
+     */
+    public static MovementPayload location(Vector3 location) {
+        MovementPayload payload = Payloads.obtain();
+        payload.location = location;
+        return payload;
+    }
+
+    /**
+     * @param rotation The rotation turned to.
+     * @return A payload from the pool.
+     */
+    public static MovementPayload rotation(Quaternion rotation) {
+        MovementPayload payload = Payloads.obtain();
+        payload.rotation = rotation;
+        return payload;
+    }
+
+    @Override
+    protected Object field(String key) {
+        switch (key) {
+            case EventDataKeys.Direction:
+                return direction;
+            case EventDataKeys.Location:
+                return location;
+            case EventDataKeys.Quaternion:
+                return rotation;
+            case EventDataKeys.ElapsedMillis:
+                return elapsedMillis < 0 ? null : elapsedMillis;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    protected String[] keys() {
+        return Keys;
+    }
+
+    @Override
+    protected void reset() {
+        direction = null;
+        location = null;
+        rotation = null;
+        elapsedMillis = -1;
+    }
+}
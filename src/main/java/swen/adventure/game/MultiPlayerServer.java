@@ -8,27 +8,43 @@
 
 import swen.adventure.Settings;
 import swen.adventure.engine.Event;
+import swen.adventure.engine.EventProfiler;
+import swen.adventure.engine.EventRegistry;
+import swen.adventure.engine.TickLoop;
 import swen.adventure.engine.Utilities;
 import swen.adventure.engine.datastorage.EventConnectionParser;
 import swen.adventure.engine.datastorage.ParserException;
+import swen.adventure.engine.datastorage.SceneGraphDelta;
 import swen.adventure.engine.datastorage.SceneGraphParser;
 import swen.adventure.engine.datastorage.SceneGraphSerializer;
+import swen.adventure.engine.metrics.Counter;
+import swen.adventure.engine.metrics.Histogram;
+import swen.adventure.engine.metrics.MetricsEndpoint;
+import swen.adventure.engine.metrics.MetricsRegistry;
 import swen.adventure.engine.network.EventBox;
+import swen.adventure.engine.network.EventJournal;
 import swen.adventure.engine.network.NetworkServer;
 import swen.adventure.engine.network.Server;
+import swen.adventure.engine.network.ShardedServer;
+import swen.adventure.engine.network.SlowClientPolicy;
 import swen.adventure.engine.rendering.maths.Quaternion;
 import swen.adventure.engine.rendering.maths.Vector3;
 import swen.adventure.engine.scenegraph.GameObject;
 import swen.adventure.engine.scenegraph.MeshNode;
+import swen.adventure.engine.scenegraph.SceneNode;
 import swen.adventure.engine.scenegraph.TransformNode;
 import swen.adventure.game.scenenodes.AdventureGameObject;
+import swen.adventure.game.scenenodes.Inventory;
 import swen.adventure.game.scenenodes.Player;
 import swen.adventure.game.scenenodes.SpawnNode;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -37,18 +53,87 @@ import java.util.Optional;
  */
 public class MultiPlayerServer implements Runnable {
 
-    private final String mapName;
+    private final EventRegistry events = new EventRegistry();
     private final TransformNode root;
     private final Server<String, EventBox> server;
+    private final SceneGraphDelta snapshotBaseline;
+    private final PlayerMovedCoalescer movesCoalescer = new PlayerMovedCoalescer();
+    private final TickLoop ticker = new TickLoop(Settings.ServerTickRate, this::tick);
+    private final long ticksPerReport = Math.max(1, (long) Settings.ServerTickRate * Settings.ServerTickReportSeconds);
+    private final List<EventBox> batch = new ArrayList<>();
+    private final List<String> recipients = new ArrayList<>();
+    private final List<String> joining = new ArrayList<>();
+    private final InterestManager interest;
+    private final Map<String, Integer> inputsProcessed = new HashMap<>();
+    private final EventJournal journal;
+    private final File eventProfileFile;
+    private int eventsCount = 0;
+
+    private final MetricsRegistry metrics;
+    private final Map<String, Counter> eventsProcessed = new HashMap<>();
+    private final Counter eventsReceived;
+    private final Counter movesCoalesced;
+    private final Histogram saveNanos;
+    private MetricsEndpoint metricsEndpoint;
 
     public MultiPlayerServer(int port, String map) {
-        server = new NetworkServer();
-        mapName = map;
+        this(port, map, map + "-savefile", createNetworkServer());
+    }
+
+    /**
+     * A server for one game instance, with metrics of its own that are served when it is given a NetworkServer.
+     *
+     * @param port port the clients connect to
+     * @param map name of the map to load
+     * @param saveName name of the files the state of the game and the events since are saved to and loaded from,
+     *                 unique to the instance
+     * @param server server the clients connect through
+     */
+    public MultiPlayerServer(int port, String map, String saveName, Server<String, EventBox> server) {
+        this(port, map, saveName, server, new MetricsRegistry());
+    }
+
+    /**
+     * A server for one game instance. Metrics are only served when it is given a NetworkServer of its own, a
+     * shard's are recorded in the process' metrics, which <code>serveShards</code> serves.
+     *
+     * @param port port the clients connect to
+     * @param map name of the map to load
+     * @param saveName name of the files the state of the game and the events since are saved to and loaded from,
+     *                 unique to the instance
+     * @param server server the clients connect through
+     * @param metrics registry to record the instance's metrics in, a labelled view of a shared one for a shard
+     */
+    public MultiPlayerServer(int port, String map, String saveName, Server<String, EventBox> server, MetricsRegistry metrics) {
+        this.server = server;
+        this.metrics = metrics;
+        this.eventsReceived = metrics.counter("server_events_received_total");
+        this.movesCoalesced = metrics.counter("server_moves_coalesced_total");
+        this.saveNanos = metrics.histogram("server_save_nanos");
+        this.eventProfileFile = new File(Utilities.pathForResource(saveName + "-events", "csv"));
+        if (server instanceof NetworkServer) {
+            ((NetworkServer) server).registerMetrics(metrics);
+        }
+        metrics.register("server_tick_nanos", ticker.durations());
+        metrics.gauge("server_ticks_total", ticker::ticks);
+        metrics.gauge("server_tick_overruns_total", ticker::overruns);
+        // events made while loading the map must join this instance's event sets, not those of another
+        EventRegistry.Scope scope = events.enter();
         try {
             System.out.println("Loading map");
             File sceneGraphFile = new File(Utilities.pathForResource(map, "xml"));
-            File sceneGraphSaveFile = new File(Utilities.pathForResource(map + "-savefile", "xml"));
+            File sceneGraphSaveFile = new File(Utilities.pathForResource(saveName, "xml"));
             root = loadSceneGraph(sceneGraphFile);
+            // clients load the same map, so they only need to be sent what has changed since now
+            snapshotBaseline = Settings.FullSnapshots ? null : new SceneGraphDelta(root);
+            interest = Settings.ServerInterestRadius > 0 ? new InterestManager(root, Settings.ServerInterestRadius) : null;
+            if (interest != null) {
+                // these change the world or who is in it, a client that missed one would never find out
+                interest.markGlobal("playerConnected");
+                interest.markGlobal("InteractionPerformed");
+                interest.markGlobal("InteractionEnded");
+                interest.markGlobal("PlayerSlotSelected");
+            }
             System.out.println("Completed loading map");
             if (sceneGraphSaveFile.exists()) {
                 System.out.println("loading save file map");
@@ -64,11 +149,39 @@ public class MultiPlayerServer implements Runnable {
                 e.printStackTrace();
             }
             System.out.println("Completed event connections");
+            // the save file only holds the state as of the last checkpoint, the journal holds what happened after
+            journal = new EventJournal(sceneGraphSaveFile, new File(Utilities.pathForResource(saveName, "journal")));
+            journal.registerMetrics(metrics);
+            int replayed = journal.replay(this::replay);
+            eventsCount = replayed;
+            System.out.println("Replayed " + replayed + " journaled events");
             server.start(port);
             System.out.println("Accepting connections");
+            if (Settings.ServerMetricsPort > 0 && server instanceof NetworkServer) {
+                metricsEndpoint = new MetricsEndpoint(metrics, Settings.ServerMetricsPort);
+                metricsEndpoint.start();
+            }
         } catch (IOException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            scope.close();
+        }
+    }
+
+    private static NetworkServer createNetworkServer() {
+        NetworkServer.Transport transport = Settings.LoopbackServer ? NetworkServer.Transport.LOOPBACK
+                : Settings.NonBlockingServer ? NetworkServer.Transport.NON_BLOCKING : NetworkServer.Transport.BLOCKING;
+        NetworkServer networkServer = new NetworkServer(
+                transport,
+                Settings.ServerIOThreads,
+                Settings.ServerQueueHighWaterMark,
+                Settings.DropSlowClientUpdates ? SlowClientPolicy.DROP : SlowClientPolicy.DISCONNECT);
+        if (Settings.DatagramMovement) {
+            // a lost movement is replaced by the next one, so it should not hold up everything after it
+            networkServer.sendAsDatagrams("PlayerMoved");
         }
+        networkServer.setCompressSnapshots(Settings.CompressSnapshots);
+        return networkServer;
     }
 
     private TransformNode loadSceneGraph(File sceneGraphFile) {
@@ -101,50 +214,255 @@ public class MultiPlayerServer implements Runnable {
     }
 
     public void run() {
-        int eventsCount = 0;
-        event: while(server.isRunning()) {
-            Optional<EventBox> isEvent = server.poll();
-            if (!isEvent.isPresent()) {
-                continue;
-            }
-            EventBox event = isEvent.get();
-            System.out.println(String.format("Got: %s source: %s target: %s data: %s", event.eventName, event.sourceId, event.targetId, event.eventData));
+        EventRegistry.Scope scope = events.enter();
+        try {
+            ticker.run();
+        } finally {
+            scope.close();
+        }
+        journal.close();
+        writeEventProfile();
+        server.stop();
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+        }
+    }
 
+    private void writeEventProfile() {
+        EventProfiler profiler = events.profiler();
+        if (profiler == null) {
+            return;
+        }
+        System.out.println("Server: event profile\n" + profiler.table());
+        try {
+            profiler.writeCsv(eventProfileFile);
+        } catch (IOException e) {
+            System.err.println("Server: could not write the event profile to " + eventProfileFile + ": " + e);
+        }
+    }
 
-            GameObject source = (GameObject)root.nodeWithID(event.sourceId).get();
+    /**
+     * Stop ticking after the current tick, which makes <code>run</code> stop the network server and return
+     */
+    public void stop() {
+        ticker.stop();
+    }
+
+    /**
+     * @return loop that runs the ticks, for reading how long they take
+     */
+    TickLoop tickLoop() {
+        return ticker;
+    }
+
+    /**
+     * @return server the clients are connected to
+     */
+    Server<String, EventBox> server() {
+        return server;
+    }
+
+    /**
+     * @return the server's metrics, served as text on <code>Settings.ServerMetricsPort</code> when it is set
+     */
+    MetricsRegistry metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return root of the server's scene graph
+     */
+    TransformNode sceneGraph() {
+        return root;
+    }
+
+    /**
+     * Apply everything received since the last tick then send the results to the clients
+     *
+     * @param tickNumber number of the tick
+     */
+    private void tick(long tickNumber) {
+        if (!server.isRunning()) {
+            ticker.stop();
+            return;
+        }
+
+        // a player's moves since the last tick become one
+        server.drainTo(batch);
+        eventsReceived.add(batch.size());
+        movesCoalesced.add(movesCoalescer.coalesce(batch));
+        List<String> clientIds = server.getClientIds();
+
+        event: for (EventBox event : batch) {
+            if (Settings.ServerLogEvents) {
+                System.out.println(String.format("Got: %s source: %s target: %s data: %s", event.eventName, event.sourceId, event.targetId, event.eventData));
+            }
+
+            boolean applied = false;
             try {
                 switch (event.eventName) {
                     case "playerConnected":
                         createPlayer(event.targetId);
-                        server.sendSnapShot(event.from, root);
+                        joining.add(event.from);
                         break;
                     case "playerDisconnected":
-                        saveState();
+                        eventsProcessed(event.eventName).increment();
                         continue event; // Do not send this to client
-                    case "InteractionPerformed":
-                        interactionPerformed(event);
-                        break;
-                    case "InteractionEnded":
-                        interactionEnded(event);
-                        break;
                     default:
-                        GameObject target = (GameObject) root.nodeWithID(event.targetId).get();
-                        Event e = target.eventWithName(event.eventName);
-                        e.trigger(source, event.eventData);
+                        apply(event);
                         break;
                 }
-                server.sendAll(event, event.from);
-            } catch (Error ex) {
+                // only counted by name once applied, so clients cannot add a counter for every name they make up
+                applied = true;
+                eventsProcessed(event.eventName).increment();
+                journal.append(event);
+                broadcast(event, clientIds);
+
+                Object inputSequence = event.eventData.get(EventDataKeys.InputSequence);
+                if (inputSequence instanceof Integer) {
+                    inputsProcessed.put(event.from, (Integer) inputSequence);
+                }
+            } catch (Error | RuntimeException ex) {
+                if (!applied) {
+                    eventsProcessed("other").increment();
+                }
                 System.out.println("Error occurred in Multilayer server: " + ex.toString());
             }
 
+            eventsCount++;
             if (eventsCount >= Settings.EventsTillServerBackup) {
                 saveState();
-                eventsCount = 0;
             }
-            eventsCount++;
         }
-        server.stop();
+        batch.clear();
+        events.queue().flush();
+        sendSnapshots();
+        journal.commit();
+        acknowledgeInputs();
+        if (interest != null) {
+            interest.update(clientIds, server::send);
+        }
+        server.flush();
+
+        if (tickNumber > 0 && tickNumber % ticksPerReport == 0) {
+            // the exported durations are never reset, so their count and sum only go up
+            System.out.println("Server: " + ticker.summary());
+            ticker.recentDurations().reset();
+            if (events.profiler() != null) {
+                System.out.println("Server: event profile\n" + events.profiler().table());
+            }
+        }
+    }
+
+    /**
+     * Send the clients that joined this tick the state after all of its events. They are sent nothing before it,
+     * and as nothing changes between their snapshots they are all sent the same one, serialized once.
+     */
+    private void sendSnapshots() {
+        for (String clientId : joining) {
+            if (snapshotBaseline != null) {
+                server.sendSnapShot(clientId, root, snapshotBaseline);
+            } else {
+                server.sendSnapShot(clientId, root);
+            }
+        }
+        joining.clear();
+    }
+
+    /**
+     * Tell each client that sent inputs this tick the last one processed and the state it left their player in,
+     * so the client can correct its prediction
+     */
+    private void acknowledgeInputs() {
+        for (Map.Entry<String, Integer> input : inputsProcessed.entrySet()) {
+            String clientId = input.getKey();
+            Optional<SceneNode> node = root.nodeWithID(clientId);
+            if (!node.isPresent() || !(node.get() instanceof Player)) {
+                continue;
+            }
+            Player player = (Player) node.get();
+            TransformNode transform = player.parent().get();
+
+            List<String> items = new ArrayList<>();
+            Inventory inventory = player.inventory();
+            for (int i = 0; i < inventory.capacity(); i++) {
+                inventory.itemAtIndex(i).ifPresent(item -> items.add(item.id));
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put(EventDataKeys.InputSequence, input.getValue());
+            data.put(EventDataKeys.Location, transform.translation());
+            data.put(EventDataKeys.Quaternion, transform.rotation());
+            data.put(EventDataKeys.InventoryItems, items.toArray(new String[items.size()]));
+            server.send(clientId, new EventBox("InputAcknowledged", clientId, clientId, clientId, data));
+        }
+        inputsProcessed.clear();
+    }
+
+    /**
+     * Send an event on to the other clients, only to those near enough to be interested in it unless
+     * it is global. Clients that joined this tick are left out, their snapshot will include it
+     *
+     * @param event event to send
+     * @param clientIds ids of the connected clients
+     */
+    private void broadcast(EventBox event, List<String> clientIds) {
+        if (interest == null || interest.isGlobal(event)) {
+            if (joining.isEmpty()) {
+                server.sendAll(event, event.from);
+            } else {
+                String[] exclude = joining.toArray(new String[joining.size() + 1]);
+                exclude[joining.size()] = event.from;
+                server.sendAll(event, exclude);
+            }
+            return;
+        }
+
+        recipients.clear();
+        interest.interestedClients(event, clientIds, recipients);
+        recipients.removeAll(joining);
+        if (!recipients.isEmpty()) {
+            server.sendTo(recipients, event);
+        }
+    }
+
+    /**
+     * Apply an event a client has sent to the scene graph
+     *
+     * @param event event to apply
+     */
+    private void apply(EventBox event) {
+        switch (event.eventName) {
+            case "InteractionPerformed":
+                interactionPerformed(event);
+                break;
+            case "InteractionEnded":
+                interactionEnded(event);
+                break;
+            default:
+                GameObject source = (GameObject) root.nodeWithID(event.sourceId).get();
+                GameObject target = (GameObject) root.nodeWithID(event.targetId).get();
+                Event e = target.eventWithName(event.eventName);
+                e.trigger(source, event.eventData);
+                break;
+        }
+    }
+
+    /**
+     * Apply a journaled event on top of the saved state while loading, without sending anything
+     *
+     * @param event event from the journal
+     */
+    private void replay(EventBox event) {
+        try {
+            if (event.eventName.equals("playerConnected")) {
+                createPlayer(event.targetId);
+            } else {
+                apply(event);
+            }
+        } catch (Error | RuntimeException ex) {
+            System.out.println("Error occurred replaying the journal: " + ex.toString());
+        }
     }
 
     private void interactionPerformed(EventBox event) {
@@ -157,12 +475,32 @@ public class MultiPlayerServer implements Runnable {
         buildInteraction(event).interactionEndedByPlayer(player);
     }
 
+    /**
+     * @param eventName name of an event that has been applied, or other for those that could not be
+     * @return the counter of events processed with that name
+     */
+    private Counter eventsProcessed(String eventName) {
+        Counter counter = eventsProcessed.get(eventName);
+        if (counter == null) {
+            counter = metrics.counter(MetricsRegistry.name("server_events_processed_total", "event", eventName));
+            eventsProcessed.put(eventName, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * Capture the whole state and hand it to the journal as its new checkpoint, which is serialized and saved in
+     * the background. If the last checkpoint is still being saved this tries again after the next event.
+     */
     private void saveState() {
-        try {
-            SceneGraphSerializer.serializeToFile(root, new File(Utilities.pathForResource(mapName + "-savefile", "xml")));
-        } catch (FileNotFoundException e) {
-            System.err.println("Error while saving server state: " + e);
+        if (journal.isCheckpointing()) {
+            return;
         }
+        long start = System.nanoTime();
+        SceneGraphSerializer.Capture state = SceneGraphSerializer.capture(root);
+        journal.checkpoint(state::writeTo);
+        eventsCount = 0;
+        saveNanos.record(System.nanoTime() - start);
     }
 
     private Interaction buildInteraction(EventBox event) {
@@ -191,6 +529,62 @@ public class MultiPlayerServer implements Runnable {
         });
     }
 
+    /**
+     * Serve a map on a port until the server is stopped, as <code>Settings.ServerShards</code> instances of the
+     * game if it is more than one
+     *
+     * @param port port the clients connect to
+     * @param map name of the map to load
+     */
+    public static void serve(int port, String map) {
+        if (Settings.ServerShards > 1) {
+            serveShards(port, map, Settings.ServerShards);
+        } else {
+            new MultiPlayerServer(port, map).run();
+        }
+    }
+
+    /**
+     * Run several independent instances of the game on one port, each ticking on its own thread. Each player is
+     * put in the instance with the fewest players when they connect, and each instance saves to a file of its own.
+     *
+     * @param port port the clients connect to
+     * @param map name of the map every instance loads
+     * @param shards number of instances
+     */
+    public static void serveShards(int port, String map, int shards) {
+        ShardedServer sharded = new ShardedServer(createNetworkServer(), shards, ShardedServer.LEAST_LOADED);
+        MetricsRegistry metrics = new MetricsRegistry();
+        sharded.registerMetrics(metrics);
+
+        List<Thread> threads = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            MultiPlayerServer instance = new MultiPlayerServer(port, map, map + "-shard" + i + "-savefile",
+                    sharded.shard(i), metrics.labelled("shard", String.valueOf(i)));
+
+            Thread thread = new Thread(instance, "MultiPlayerServer#" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        MetricsEndpoint metricsEndpoint = null;
+        try {
+            if (Settings.ServerMetricsPort > 0) {
+                metricsEndpoint = new MetricsEndpoint(metrics, Settings.ServerMetricsPort);
+                metricsEndpoint.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (IOException | InterruptedException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            if (metricsEndpoint != null) {
+                metricsEndpoint.stop();
+            }
+        }
+    }
+
     public static void main(String[] args) {
         if (args.length != 2) {
             System.err.println("Incorrect number of parameters");
@@ -199,6 +593,6 @@ public class MultiPlayerServer implements Runnable {
         int port = Integer.parseInt(args[0]);
         String map = args[1];
 
-        new MultiPlayerServer(port, map).run();
+        serve(port, map);
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package swen.adventure.game;
+
+import swen.adventure.engine.network.EventBox;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses the PlayerMoved events a player sends within one tick into a single event carrying only the
+ * newest Location and Quaternion, so the server applies and broadcasts one movement per player per tick
+ * however fast the client is sending them.
+ *
+ * Moves are only merged across events from other players, any other event from the same player ends the
+ * run so the player is where they were when they sent it.
+ */
+public class PlayerMovedCoalescer {
+    private static final String PLAYER_MOVED = "PlayerMoved";
+
+    // index in the batch of the move that later moves from a player are merged in to
+    private final Map<String, Integer> pendingMoves = new HashMap<>();
+
+    /**
+     * Merge the PlayerMoved events in the batch in place, each merged event takes the place of the first
+     * move in its run.
+     *
+     * @param batch events received in one tick, in the order they arrived
+     * @return number of events removed from the batch
+     */
+    public int coalesce(List<EventBox> batch) {
+        int merged = 0;
+        int write = 0;
+        for (int read = 0; read < batch.size(); read++) {
+            EventBox event = batch.get(read);
+            if (!PLAYER_MOVED.equals(event.eventName)) {
+                pendingMoves.remove(event.from);
+                batch.set(write++, event);
+                continue;
+            }
+
+            Integer pending = pendingMoves.get(event.from);
+            if (pending == null) {
+                pendingMoves.put(event.from, write);
+                batch.set(write++, event);
+            } else {
+                batch.set(pending, merge(batch.get(pending), event));
+                merged++;
+            }
+        }
+
+        batch.subList(write, batch.size()).clear();
+        pendingMoves.clear();
+        return merged;
+    }
+
+    /**
+     * @param earlier move that was received first
+     * @param later move that was received after it
+     * @return a move with the newer of each of the two events' values
+     */
+    private static EventBox merge(EventBox earlier, EventBox later) {
+        Map<String, Object> data = new HashMap<>(earlier.eventData);
+        data.putAll(later.eventData);
+        return new EventBox(later.eventName, later.sourceId, later.targetId, later.from, data);
+    }
+}
@@ -7,11 +7,12 @@
 
 import swen.adventure.engine.Action;
 import swen.adventure.engine.Event;
+import swen.adventure.engine.InputPayload;
 import swen.adventure.engine.KeyInput;
 import swen.adventure.engine.rendering.maths.Vector3;
 import swen.adventure.game.EventDataKeys;
+import swen.adventure.game.MovementPayload;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public class AdventureGameKeyInput extends KeyInput {
@@ -69,26 +70,34 @@ public class AdventureGameKeyInput extends KeyInput {
 
     public final Event<KeyInput, KeyInput> eventMoveInDirection = new Event<>("MoveInDirection", this);
 
+    private static final Vector3 Forward = new Vector3(0, 0, -1);
+    private static final Vector3 Backward = new Vector3(0, 0, 1);
+    private static final Vector3 Left = new Vector3(-1, 0, 0);
+    private static final Vector3 Right = new Vector3(1, 0, 0);
+
     public final Action<KeyInput, KeyInput, AdventureGameKeyInput> actionMoveKeyPressed = ((eventObject, triggeringObject, listener, data) -> {
-       long elapsedTime = (Long)data.get(EventDataKeys.ElapsedMillis);
+        long elapsedTime;
+        Event<?, ?> event;
+        if (data instanceof InputPayload) {
+            elapsedTime = ((InputPayload) data).elapsedMillis;
+            event = ((InputPayload) data).event;
+        } else {
+            elapsedTime = (Long)data.get(EventDataKeys.ElapsedMillis);
+            event = (Event<?, ?>)data.get(EventDataKeys.Event);
+        }
         Vector3 direction = null;
-        Event<KeyInput, KeyInput> event = (Event<KeyInput, KeyInput>)data.get(EventDataKeys.Event);
 
         if (event == this.eventMoveForwardKeyPressed) {
-            direction = new Vector3(0, 0, -1);
+            direction = Forward;
         } else if (event == this.eventMoveBackwardKeyPressed) {
-            direction = new Vector3(0, 0, 1);
+            direction = Backward;
         } else if (event == this.eventMoveLeftKeyPressed) {
-            direction = new Vector3(-1, 0, 0);
+            direction = Left;
         } else if (event == this.eventMoveRightKeyPressed) {
-            direction = new Vector3(1, 0, 0);
+            direction = Right;
         }
         if (direction != null) {
-            final Vector3 finalDirection = direction;
-            this.eventMoveInDirection.trigger(this, new HashMap<String, Object>(){{
-                put(EventDataKeys.Direction, finalDirection);
-                put(EventDataKeys.ElapsedMillis, elapsedTime);
-            }});
+            this.eventMoveInDirection.trigger(this, MovementPayload.direction(direction, elapsedTime));
         }
     });
 
@@ -75,6 +75,7 @@ public class Chest extends AdventureGameObject {
      */
     public void open(boolean animate, Player player) {
         _isOpen = true;
+        this.stateChanged();
         if (animate) {
             new Animation(_lidRotationProgress, AnimationDuration * Math.abs(0.5f - _lidRotationProgress.value()), 0.0f);
         } else {
@@ -92,6 +93,7 @@ public class Chest extends AdventureGameObject {
      */
     public void close(boolean animate, Player player) {
         _isOpen = false;
+        this.stateChanged();
         if (animate) {
             new Animation(_lidRotationProgress, AnimationDuration * Math.abs(0.5f - _lidRotationProgress.value()), 1.0f);
         } else {
@@ -106,6 +108,19 @@ public class Chest extends AdventureGameObject {
         return _isOpen;
     }
 
+    /**
+     * Sets the chest to be open or closed without animating or triggering
+     * events, for restoring a saved state
+     *
+     * @param isOpen true to set the chest as open, false to set it as closed
+     */
+    public void setIsOpen(boolean isOpen) {
+        _isOpen = isOpen;
+        this.stateChanged();
+        _lidRotationProgress.stopAnimating();
+        _lidRotationProgress.setValue(isOpen ? 0.f : 1.f);
+    }
+
     @Override
     public List<Interaction> possibleInteractions(MeshNode meshNode, Player player) {
         List<Interaction> possibleInteractions = new ArrayList<>();
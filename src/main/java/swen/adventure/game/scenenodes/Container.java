@@ -58,6 +58,7 @@ public class Container extends SceneNode {
     /** If this container should display its top item, then that item will be made visible. */
     public void setShowTopItem(boolean showTopItem) {
         _showTopItem = showTopItem;
+        this.stateChanged();
         this.setVisibilityOnContents();
     }
 
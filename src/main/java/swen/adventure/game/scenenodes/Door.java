@@ -49,11 +49,13 @@ public class Door extends AdventureGameObject {
     // DO NOT REMOVE. This action i unused within the Java code base but is still used in the event connections.
     public static final Action<Item, Player, Door> actionAllowPlayerToOpenDoor = (item, player, door, data) -> {
         door._playersThatCanOpenDoor.add(player);
+        door.stateChanged();
     };
 
     // DO NOT REMOVE. This action is unused within the Java code base but is still used in the event connections.
     public static final Action<Item, Player, Door> actionDisallowPlayerFromOpeningDoor = (item, player, door, data) -> {
         door._playersThatCanOpenDoor.remove(player);
+        door.stateChanged();
     };
 
     // DO NOT REMOVE. This action is unused within the Java code base but is still used in the event connections.
@@ -91,6 +93,7 @@ public class Door extends AdventureGameObject {
      */
     public void open() {
         _isOpen = true;
+        this.stateChanged();
         new Animation(_doorOpenPercentage, AnimationCurve.Sine, DoorAnimationDuration, 0.9f);
     }
 
@@ -99,6 +102,7 @@ public class Door extends AdventureGameObject {
      */
     public void close() {
         _isOpen = false;
+        this.stateChanged();
         new Animation(_doorOpenPercentage, AnimationCurve.Sine, DoorAnimationDuration, 0.0f);
     }
 
@@ -161,6 +165,7 @@ public class Door extends AdventureGameObject {
      */
     public void setCanDirectlyInteractWith(boolean canDirectlyInteractWith) {
         this._canDirectlyInteractWith = canDirectlyInteractWith;
+        this.stateChanged();
     }
 
     /**
@@ -170,6 +175,7 @@ public class Door extends AdventureGameObject {
      */
     public void setRequiresKey(boolean requiresKey) {
         _requiresKey = requiresKey;
+        this.stateChanged();
     }
 
     public boolean requiresKey() {
@@ -48,6 +48,7 @@ public class FlickeringLight extends AdventureGameObject {
                 light._isAnimatingToggle = false;
             });
             light._isOn = true;
+            light.stateChanged();
 
             light.mesh().ifPresent(flameMesh -> flameMesh.setEnabled(true));
             light.eventLightTurnedOn.trigger(player, Collections.emptyMap());
@@ -59,6 +60,7 @@ public class FlickeringLight extends AdventureGameObject {
             light._isAnimatingToggle = true;
             Animation animation = new Animation(light._lightIntensity, LightAnimationTime, 0.f);
             light._isOn = false;
+            light.stateChanged();
             animation.eventAnimationDidComplete.addAction(light, (animation1, animation2, light1, data1) -> {
                 light.mesh().ifPresent(meshNode -> meshNode.setEnabled(false));
                 light._isAnimatingToggle = false;
@@ -132,6 +134,7 @@ public class FlickeringLight extends AdventureGameObject {
      */
     public void setIntensityVariation(float intensityVariation) {
         _intensityVariation = intensityVariation;
+        this.stateChanged();
 
         if (_isOn) {
             float lowIntensity = _baseIntensity - intensityVariation / 2.f;
@@ -148,6 +151,7 @@ public class FlickeringLight extends AdventureGameObject {
      */
     public void setOn(boolean isOn) {
         _isOn = isOn;
+        this.stateChanged();
         if (isOn) {
             this.setIntensity(_baseIntensity);
             this.mesh().ifPresent(flameMesh -> flameMesh.setEnabled(true));
@@ -61,6 +61,7 @@ public class Inventory extends Container {
         }
 
         _selectedSlot = slot;
+        this.stateChanged();
     }
 
     @Override
@@ -54,6 +54,7 @@ public class Item extends AdventureGameObject {
         if (container.push(this)) {
             _containingContainer.ifPresent(Container::pop);
             _containingContainer = Optional.of(container);
+            this.stateChanged();
         }
     }
 
@@ -98,5 +99,6 @@ public class Item extends AdventureGameObject {
      */
     public void setDescription(String description) {
         this.description = Optional.of(description);
+        this.stateChanged();
     }
 }
\ No newline at end of file
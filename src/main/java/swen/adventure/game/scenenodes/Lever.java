@@ -83,6 +83,7 @@ public class Lever extends AdventureGameObject {
      */
     public void moveUp(Player player) {
         _isDown = false;
+        this.stateChanged();
         new Animation(_leverRotationProgress, Math.abs(0.5f - _leverRotationProgress.value()), 0.0f);
         this.eventLeverMovedUp.trigger(player, Collections.emptyMap());
     }
@@ -93,6 +94,7 @@ public class Lever extends AdventureGameObject {
      */
     public void moveDown(Player player) {
         _isDown = true;
+        this.stateChanged();
         new Animation(_leverRotationProgress, Math.abs(0.5f - _leverRotationProgress.value()), 1.0f);
         this.eventLeverMovedDown.trigger(player, Collections.emptyMap());
     }
@@ -103,6 +105,7 @@ public class Lever extends AdventureGameObject {
 
     public void setIsDown(boolean isDown) {
         _isDown = isDown;
+        this.stateChanged();
     }
 
     @Override
@@ -18,6 +18,7 @@ import swen.adventure.engine.scenegraph.TransformNode;
 import swen.adventure.game.EventDataKeys;
 import swen.adventure.game.Interaction;
 import swen.adventure.game.InteractionType;
+import swen.adventure.game.MovementPayload;
 
 import java.util.Collections;
 import java.util.List;
@@ -46,8 +47,15 @@ public class Player extends AdventureGameObject {
      */
     public static final Action<KeyInput, KeyInput, Player> actionMoveInDirection =
             (eventObject, triggeringObject, player, data) -> {
-                Vector3 direction = (Vector3)data.get(EventDataKeys.Direction);
-                long elapsedMillis = (Long)data.get(EventDataKeys.ElapsedMillis);
+                Vector3 direction;
+                long elapsedMillis;
+                if (data instanceof MovementPayload) {
+                    direction = ((MovementPayload) data).direction;
+                    elapsedMillis = ((MovementPayload) data).elapsedMillis;
+                } else {
+                    direction = (Vector3)data.get(EventDataKeys.Direction);
+                    elapsedMillis = (Long)data.get(EventDataKeys.ElapsedMillis);
+                }
                 player.move(direction.multiplyScalar(player._playerSpeed * elapsedMillis / 1000.f));
             };
 
@@ -123,8 +131,7 @@ public class Player extends AdventureGameObject {
         successfullyMoved |= this.attemptMoveDirect(new Vector3(0.f, 0.f, lateralTranslation.z));
 
         if (successfullyMoved) {
-            eventPlayerMoved.trigger(this,
-                    Collections.singletonMap(EventDataKeys.Location, transformNode.translation()));
+            eventPlayerMoved.trigger(this, MovementPayload.location(transformNode.translation()));
         }
     }
 
@@ -163,8 +170,7 @@ public class Player extends AdventureGameObject {
         rotatedNode.setRotation(rotation);
         _meshRotationTransform.setRotation(rotation.invert().multiply(Quaternion.makeWithAngleAndAxis(angleY, -1, 0, 0)));
 
-        eventPlayerMoved.trigger(this,
-                Collections.singletonMap(EventDataKeys.Quaternion, rotatedNode.rotation()));
+        eventPlayerMoved.trigger(this, MovementPayload.rotation(rotatedNode.rotation()));
     }
 
     /**
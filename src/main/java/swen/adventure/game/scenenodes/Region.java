@@ -56,6 +56,14 @@ public class Region extends SceneNode {
        region.playerMovedToLocation(player, playerLocation);
     };
 
+    /**
+     * @param player player to check
+     * @return true iff the player was in the region after they last moved
+     */
+    public boolean containsPlayer(Player player) {
+        return _playersInRegion.contains(player);
+    }
+
     private void playerMovedToLocation(Player player, Vector3 location) {
 
         boolean isInRegion = _worldSpaceBoundingBox.containsPoint(location);
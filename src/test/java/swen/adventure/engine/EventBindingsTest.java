@@ -0,0 +1,82 @@
+package swen.adventure.engine;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EventBindingsTest extends TestCase {
+
+    public static class Bell {
+        public static final Action<Bell, Object, Bell> actionRing = (bell, trigger, listener, data) -> listener.rung++;
+
+        public final Event<Bell, Object> eventRang = new Event<>("Rang", this);
+        public final Action<Bell, Object, Bell> actionSilence = (bell, trigger, listener, data) -> listener.rung = 0;
+        int rung;
+    }
+
+    public static class ChurchBell extends Bell {
+        public final Event<Bell, Object> eventTolled = new Event<>("Tolled", this);
+    }
+
+    public static class Count implements Action<Object, Object, List<Object>> {
+        @Override
+        public void execute(Object eventObject, Object triggeringObject, List<Object> listener, java.util.Map<String, Object> data) {
+            listener.add(eventObject);
+        }
+    }
+
+    @Test
+    public void testEventsFoundByNameAndId() {
+        ChurchBell bell = new ChurchBell();
+        EventBindings bindings = EventBindings.forClass(ChurchBell.class);
+
+        assertSame(bell.eventRang, bindings.event(bell, "Rang"));
+        assertSame(bell.eventTolled, bindings.event(bell, bell.eventTolled.id));
+        assertSame(bell.eventTolled, bindings.event(bell, EventBindings.idForEventName("Tolled")));
+        assertNull(bindings.event(bell, "Cracked"));
+        assertNull(EventBindings.forClass(Bell.class).event(new Bell(), "Tolled"));
+        assertSame(bindings, EventBindings.forClass(ChurchBell.class));
+    }
+
+    @Test
+    public void testIdsAreSharedByName() {
+        Bell first = new Bell();
+        Bell second = new Bell();
+        assertEquals(first.eventRang.id, second.eventRang.id);
+        assertEquals("Rang", EventBindings.eventNameForId(first.eventRang.id));
+        assertTrue(first.eventRang.id != new ChurchBell().eventTolled.id);
+    }
+
+    @Test
+    public void testActionsFoundByName() {
+        Bell bell = new Bell();
+        assertSame(Bell.actionRing, Action.actionWithName("Ring", bell));
+        assertSame(bell.actionSilence, Action.actionWithName("Silence", bell));
+
+        List<Object> counted = new ArrayList<>();
+        Action<?, ?, List<Object>> count = Action.actionWithName(Count.class.getName(), counted);
+        assertTrue(count instanceof Count);
+        assertNotSame(count, Action.actionWithName(Count.class.getName(), counted));
+
+        try {
+            Action.actionWithName("Shatter", bell);
+            fail();
+        } catch (RuntimeException expected) {
+        }
+    }
+
+    @Test
+    public void testBoundActionsRun() {
+        Bell bell = new Bell();
+        Bell listener = new Bell();
+        @SuppressWarnings("unchecked")
+        Action<Bell, Object, Bell> ring = (Action<Bell, Object, Bell>) Action.actionWithName("Ring", listener);
+        bell.eventRang.addAction(listener, ring);
+        bell.eventRang.trigger(this, Collections.emptyMap());
+        bell.eventRang.trigger(this, Collections.emptyMap());
+        assertEquals(2, listener.rung);
+    }
+}
@@ -0,0 +1,82 @@
+package swen.adventure.engine;
+
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import swen.adventure.game.EventDataKeys;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventPayloadTest extends TestCase {
+
+    private EventRegistry.Scope scope;
+
+    @Before
+    public void setup() {
+        scope = new EventRegistry().enter();
+    }
+
+    @After
+    public void tearDown() {
+        scope.close();
+    }
+
+    @Test
+    public void testReadAsMap() {
+        Event<Object, Object> event = new Event<>("Held", this);
+        InputPayload held = InputPayload.obtain(event, 16);
+        assertSame(event, held.get(EventDataKeys.Event));
+        assertEquals(16L, held.get(EventDataKeys.ElapsedMillis));
+        assertNull(held.get(EventDataKeys.Direction));
+
+        InputPayload pressed = InputPayload.obtain(event, -1);
+        assertFalse(pressed.containsKey(EventDataKeys.ElapsedMillis));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put(EventDataKeys.Event, event);
+        assertEquals(expected, new HashMap<>(pressed));
+    }
+
+    @Test
+    public void testReleasedAfterTrigger() {
+        Event<Object, Object> event = new Event<>("Held", this);
+        List<Object> heard = new ArrayList<>();
+        event.addAction(heard, (eventObject, trigger, listener, data) -> listener.add(data.get(EventDataKeys.ElapsedMillis)));
+
+        InputPayload first = InputPayload.obtain(event, 16);
+        event.trigger(this, first);
+        assertNull(first.event);
+        assertSame(first, InputPayload.obtain(event, 17));
+        assertEquals(16L, heard.get(0));
+    }
+
+    @Test
+    public void testDeferredPayloadKeptUntilFlushed() {
+        Event<Object, Object> event = new Event<>("Held", this);
+        event.setDispatch(Event.Dispatch.Deferred);
+        List<Object> heard = new ArrayList<>();
+        event.addAction(heard, (eventObject, trigger, listener, data) -> listener.add(data.get(EventDataKeys.ElapsedMillis)));
+
+        InputPayload first = InputPayload.obtain(event, 16);
+        event.trigger(this, first);
+        assertNotSame(first, InputPayload.obtain(event, 17));
+        EventRegistry.current().queue().flush();
+        assertEquals(16L, heard.get(0));
+        assertNull(first.event);
+    }
+
+    @Test
+    public void testReplacedPayloadReleased() {
+        Event<Object, Object> event = new Event<>("Held", this);
+        event.setDispatch(Event.Dispatch.Coalesced);
+
+        InputPayload first = InputPayload.obtain(event, 16);
+        event.trigger(this, first);
+        event.trigger(this, InputPayload.obtain(event, 17));
+        assertNull(first.event);
+        assertSame(first, InputPayload.obtain(event, 18));
+    }
+}
@@ -0,0 +1,104 @@
+package swen.adventure.engine;
+
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EventProfilerTest extends TestCase {
+
+    public static class Bell {
+        public static final Action<Object, Object, Bell> actionRing = (eventObject, trigger, listener, data) -> listener.rung++;
+
+        public final Event<Bell, Object> eventRang = new Event<>("Rang", this);
+        int rung;
+    }
+
+    private EventRegistry registry;
+    private EventRegistry.Scope scope;
+    private EventProfiler profiler;
+
+    @Before
+    public void setup() {
+        registry = new EventRegistry();
+        profiler = new EventProfiler();
+        registry.setProfiler(profiler);
+        scope = registry.enter();
+    }
+
+    @After
+    public void tearDown() {
+        scope.close();
+    }
+
+    @Test
+    public void testCountsTriggersAndDepth() {
+        Bell bell = new Bell();
+        Bell other = new Bell();
+        Event<Object, Object> pulled = new Event<>("Pulled", this);
+        pulled.addAction(bell, Bell.actionRing);
+        pulled.addAction(other, (eventObject, trigger, listener, data) -> listener.eventRang.trigger(eventObject, Collections.emptyMap()));
+
+        pulled.trigger(this, Collections.emptyMap());
+        pulled.trigger(this, Collections.emptyMap());
+
+        assertEquals(2, profiler.triggers("Pulled"));
+        assertEquals(2, profiler.triggers("Rang"));
+        assertEquals(0, profiler.triggers("Tolled"));
+        assertEquals(1, profiler.maxDepth());
+        assertEquals(2, bell.rung);
+    }
+
+    @Test
+    public void testQueuedCascadeDepth() {
+        Event<Object, Object> first = new Event<>("First", this);
+        Event<Object, Object> second = new Event<>("Second", this);
+        first.setDispatch(Event.Dispatch.Deferred);
+        second.setDispatch(Event.Dispatch.Deferred);
+        first.addAction(second, (eventObject, trigger, listener, data) -> listener.trigger(eventObject, Collections.emptyMap()));
+
+        first.trigger(this, Collections.emptyMap());
+        registry.queue().flush();
+        assertEquals(1, profiler.triggers("Second"));
+        assertEquals(1, profiler.maxDepth());
+    }
+
+    @Test
+    public void testTableAndCsvNameActions() {
+        Bell bell = new Bell();
+        List<Object> heard = new ArrayList<>();
+        Event<Object, Object> pulled = new Event<>("Pulled", this);
+        pulled.addAction(bell, Bell.actionRing);
+        pulled.addAction(heard, (eventObject, trigger, listener, data) -> listener.add(trigger));
+        pulled.trigger(this, Collections.emptyMap());
+
+        String table = profiler.table();
+        assertTrue(table, table.contains("Pulled: Bell.actionRing"));
+        assertTrue(table, table.contains("Pulled: EventProfilerTest lambda"));
+
+        StringBuilder csv = new StringBuilder();
+        profiler.writeCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals("kind,event,action,count,total_nanos,max_nanos,max_listeners,max_depth", lines[0]);
+        assertTrue(lines[1], lines[1].startsWith("event,Pulled,,1,"));
+        assertTrue(lines[1], lines[1].endsWith(",2,0"));
+        assertTrue(csv.toString(), csv.toString().contains("action,Pulled,Bell.actionRing,1,"));
+    }
+
+    @Test
+    public void testStopsWhenRemoved() {
+        Event<Object, Object> pulled = new Event<>("Pulled", this);
+        pulled.trigger(this, Collections.emptyMap());
+        registry.setProfiler(null);
+        pulled.trigger(this, Collections.emptyMap());
+        assertEquals(1, profiler.triggers("Pulled"));
+
+        profiler.reset();
+        assertEquals(0, profiler.triggers("Pulled"));
+        assertEquals(0, profiler.maxDepth());
+    }
+}
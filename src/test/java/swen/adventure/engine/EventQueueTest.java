@@ -0,0 +1,120 @@
+package swen.adventure.engine;
+
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class EventQueueTest extends TestCase {
+
+    private EventRegistry registry;
+    private EventRegistry.Scope scope;
+    private List<Object> heard;
+
+    @Before
+    public void setup() {
+        registry = new EventRegistry();
+        scope = registry.enter();
+        heard = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() {
+        scope.close();
+    }
+
+    private Event<Object, Object> event(String name, Event.Dispatch dispatch) {
+        Event<Object, Object> event = new Event<>(name, name);
+        event.setDispatch(dispatch);
+        event.addAction(heard, (eventObject, trigger, listener, data) -> listener.add(eventObject + ":" + data.get("Value")));
+        return event;
+    }
+
+    private static Map<String, Object> value(Object value) {
+        return Collections.singletonMap("Value", value);
+    }
+
+    @Test
+    public void testDeferredUntilFlushInOrder() {
+        Event<Object, Object> moved = event("Moved", Event.Dispatch.Deferred);
+        Event<Object, Object> turned = event("Turned", Event.Dispatch.Deferred);
+
+        moved.trigger(this, value(1));
+        turned.trigger(this, value(2));
+        moved.trigger(this, value(3));
+        assertTrue(heard.isEmpty());
+
+        assertEquals(3, registry.queue().flush());
+        assertEquals(Arrays.asList("Moved:1", "Turned:2", "Moved:3"), heard);
+        assertEquals(0, registry.queue().flush());
+    }
+
+    @Test
+    public void testCoalescedKeepsNewestBySameObject() {
+        Event<Object, Object> moved = event("Moved", Event.Dispatch.Coalesced);
+        Event<Object, Object> turned = event("Turned", Event.Dispatch.Deferred);
+
+        moved.trigger(this, value(1));
+        turned.trigger(this, value(2));
+        moved.trigger(this, value(3));
+        moved.trigger("other", value(4));
+
+        assertEquals(3, registry.queue().flush());
+        assertEquals(Arrays.asList("Turned:2", "Moved:3", "Moved:4"), heard);
+        assertEquals(1, registry.queue().coalesced());
+    }
+
+    @Test
+    public void testEventSetSetsDispatchOfLaterEvents() {
+        Event.eventSetForName("Moved").setDispatch(Event.Dispatch.Coalesced);
+        Event<Object, Object> moved = new Event<>("Moved", this);
+        assertEquals(Event.Dispatch.Coalesced, moved.dispatch());
+    }
+
+    @Test
+    public void testCascadeDispatchedInSameFlush() {
+        Event<Object, Object> first = event("First", Event.Dispatch.Deferred);
+        Event<Object, Object> second = event("Second", Event.Dispatch.Deferred);
+        first.addAction(second, (eventObject, trigger, listener, data) -> listener.trigger(eventObject, value(2)));
+
+        first.trigger(this, value(1));
+        assertEquals(2, registry.queue().flush());
+        assertEquals(Arrays.asList("First:1", "Second:2"), heard);
+    }
+
+    @Test
+    public void testCascadeBounded() {
+        EventRegistry.Scope bounded = new EventRegistry(3).enter();
+        try {
+            Event<Object, Object> echo = event("Echo", Event.Dispatch.Deferred);
+            echo.addAction(heard, (eventObject, trigger, listener, data) -> echo.trigger(eventObject, value((int) data.get("Value") + 1)));
+
+            echo.trigger(this, value(0));
+            EventQueue queue = EventRegistry.current().queue();
+            assertEquals(4, queue.flush());
+            assertEquals(Arrays.asList("Echo:0", "Echo:1", "Echo:2", "Echo:3"), heard);
+            assertEquals(1, queue.cascadesCut());
+            assertEquals(1, queue.size());
+
+            heard.clear();
+            assertEquals(4, queue.flush());
+            assertEquals(Arrays.asList("Echo:4", "Echo:5", "Echo:6", "Echo:7"), heard);
+        } finally {
+            bounded.close();
+        }
+    }
+
+    @Test
+    public void testImmediateIsNotQueued() {
+        Event<Object, Object> rang = event("Rang", Event.Dispatch.Immediate);
+        rang.trigger(this, value(1));
+        assertEquals(Collections.singletonList("Rang:1"), heard);
+        assertEquals(0, registry.queue().size());
+    }
+}
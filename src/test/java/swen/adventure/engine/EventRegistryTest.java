@@ -0,0 +1,78 @@
+package swen.adventure.engine;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EventRegistryTest extends TestCase {
+
+    @Test
+    public void testWorldsDoNotHearEachOther() {
+        EventRegistry first = new EventRegistry();
+        EventRegistry second = new EventRegistry();
+        List<String> heard = new ArrayList<>();
+
+        Event<String, Object> firstEvent;
+        EventRegistry.Scope firstScope = first.enter();
+        try {
+            firstEvent = new Event<>("Rang", "first");
+            @SuppressWarnings("unchecked")
+            Event.EventSet<String, Object> rang = (Event.EventSet<String, Object>) Event.eventSetForName("Rang");
+            rang.addAction(heard, (bell, trigger, listener, data) -> listener.add(bell));
+        } finally {
+            firstScope.close();
+        }
+
+        Event<String, Object> secondEvent;
+        EventRegistry.Scope secondScope = second.enter();
+        try {
+            secondEvent = new Event<>("Rang", "second");
+        } finally {
+            secondScope.close();
+        }
+
+        firstEvent.trigger(this, Collections.emptyMap());
+        secondEvent.trigger(this, Collections.emptyMap());
+
+        assertEquals(Collections.singletonList("first"), heard);
+    }
+
+    @Test
+    public void testEventKeepsItsRegistry() {
+        EventRegistry registry = new EventRegistry();
+        Event<String, Object> event;
+        EventRegistry.Scope scope = registry.enter();
+        try {
+            event = new Event<>("Rang", "bell");
+        } finally {
+            scope.close();
+        }
+
+        assertSame(registry.eventSetForName("Rang"), event.onAllObjects());
+        assertNotSame(EventRegistry.current().eventSetForName("Rang"), event.onAllObjects());
+    }
+
+    @Test
+    public void testScopesNest() {
+        EventRegistry outer = new EventRegistry();
+        EventRegistry inner = new EventRegistry();
+        EventRegistry shared = EventRegistry.current();
+
+        EventRegistry.Scope outerScope = outer.enter();
+        try {
+            EventRegistry.Scope innerScope = inner.enter();
+            try {
+                assertSame(inner, EventRegistry.current());
+            } finally {
+                innerScope.close();
+            }
+            assertSame(outer, EventRegistry.current());
+        } finally {
+            outerScope.close();
+        }
+        assertSame(shared, EventRegistry.current());
+    }
+}
@@ -0,0 +1,75 @@
+package swen.adventure.engine;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EventTest extends TestCase {
+
+    private static final Action<Object, Object, List<Object>> Record = (eventObject, trigger, listener, data) -> listener.add(trigger);
+
+    @Test
+    public void testListenerThatTriggersIsTold() {
+        List<Object> heard = new ArrayList<>();
+        Event<Object, Object> event = new Event<>("Rang", this);
+        event.addAction(heard, Record);
+        event.trigger(heard, Collections.emptyMap());
+        assertEquals(Collections.singletonList(heard), heard);
+    }
+
+    @Test
+    public void testActionAddedWhileTriggering() {
+        List<Object> heard = new ArrayList<>();
+        List<Object> late = new ArrayList<>();
+        Event<Object, Object> event = new Event<>("Rang", this);
+        event.addAction(heard, (eventObject, trigger, listener, data) -> {
+            listener.add(trigger);
+            event.addAction(late, Record);
+        });
+
+        event.trigger("first", Collections.emptyMap());
+        assertTrue(late.isEmpty());
+        event.trigger("second", Collections.emptyMap());
+        assertEquals(Collections.singletonList("second"), late);
+        assertEquals(2, heard.size());
+    }
+
+    @Test
+    public void testRemoveAction() {
+        List<Object> heard = new ArrayList<>();
+        Event<Object, Object> event = new Event<>("Rang", this);
+        event.addAction(heard, Record);
+        event.removeAction(heard, Record);
+        event.trigger("first", Collections.emptyMap());
+        assertTrue(heard.isEmpty());
+        assertEquals(0, event.actionCount());
+    }
+
+    @Test
+    public void testExpiredListenersRemoved() throws InterruptedException {
+        List<Object> heard = new ArrayList<>();
+        Event<Object, Object> event = new Event<>("Rang", this);
+        event.addAction(heard, Record);
+
+        Object expiring = new ArrayList<>();
+        WeakReference<Object> reference = new WeakReference<>(expiring);
+        event.addAction((List<Object>) expiring, Record);
+        expiring = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        if (reference.get() != null) {
+            return; // the collector would not clear it
+        }
+
+        assertEquals(2, event.actionCount());
+        event.trigger("first", Collections.emptyMap());
+        assertEquals(1, event.actionCount());
+        assertEquals(Collections.singletonList("first"), heard);
+    }
+}
@@ -0,0 +1,67 @@
+package swen.adventure.engine;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to trigger an event with a number of listeners, each only counting the triggers, so the time is that of the
+ * dispatch itself. Run with <code>-prof gc</code> to see that triggering does not allocate.
+ *
+ * <code>expiring</code> gives half the listeners a listener object that is dropped after setup, as happens when
+ * objects listening to an event set leave the world. The first trigger removes them and the rest only pay for the
+ * live half.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventTriggerBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int listeners;
+
+    @Param({"false", "true"})
+    public boolean expiring;
+
+    private Event<Object, Object> event;
+    private List<long[]> live; // keeps the listeners that should stay alive reachable
+    private Map<String, Object> data;
+
+    private static final Action<Object, Object, long[]> Count = (eventObject, trigger, count, data) -> count[0]++;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        event = new Event<>("ValueChanged", this);
+        live = new ArrayList<>();
+        for (int i = 0; i < listeners; i++) {
+            long[] listener = new long[1];
+            if (!expiring || i % 2 == 0) {
+                live.add(listener);
+            }
+            event.addAction(listener, Count);
+        }
+        data = Collections.singletonMap("Value", this);
+        System.gc();
+    }
+
+    @Benchmark
+    public void trigger() {
+        event.trigger(this, data);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventTriggerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
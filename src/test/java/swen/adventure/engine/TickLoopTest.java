@@ -0,0 +1,58 @@
+package swen.adventure.engine;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TickLoopTest extends TestCase {
+
+    @Test
+    public void testFixedRate() throws Exception {
+        final TickLoop[] loop = new TickLoop[1];
+        loop[0] = new TickLoop(100, tick -> {
+            if (tick == 19) {
+                loop[0].stop();
+            }
+        });
+
+        long start = System.nanoTime();
+        loop[0].run();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(20, loop[0].ticks());
+        assertEquals(20, loop[0].durations().count());
+        assertEquals(20, loop[0].recentDurations().count());
+        assertTrue("took " + elapsed + "ms", elapsed >= 180);
+    }
+
+    @Test
+    public void testOverrun() throws Exception {
+        final TickLoop[] loop = new TickLoop[1];
+        loop[0] = new TickLoop(1000, tick -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException ex) {
+            }
+            if (tick == 2) {
+                loop[0].stop();
+            }
+        });
+        loop[0].run();
+
+        assertEquals(3, loop[0].overruns());
+        assertTrue(loop[0].durations().percentile(50) >= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testStopFromAnotherThread() throws Exception {
+        TickLoop loop = new TickLoop(1, tick -> {});
+        Thread thread = new Thread(loop);
+        thread.start();
+        Thread.sleep(50);
+
+        loop.stop();
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+    }
+}
@@ -0,0 +1,120 @@
+package swen.adventure.engine.animation;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+public class InterpolationBufferTest extends TestCase {
+    private static final long MS = 1_000_000;
+    private static final float EPSILON = 1e-4f;
+
+    private final Quaternion facingForward = new Quaternion();
+
+    private static void assertVector(float x, float y, float z, Vector3 actual) {
+        assertEquals(x, actual.x, EPSILON);
+        assertEquals(y, actual.y, EPSILON);
+        assertEquals(z, actual.z, EPSILON);
+    }
+
+    @Test
+    public void testEmpty() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 100, 50);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.positionAt(0));
+        assertNull(buffer.rotationAt(0));
+    }
+
+    @Test
+    public void testFirstStateNeedsPositionAndRotation() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 100, 50);
+        assertFalse(buffer.add(0, new Vector3(1, 2, 3), null));
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.add(0, new Vector3(1, 2, 3), facingForward));
+        assertVector(1, 2, 3, buffer.positionAt(500 * MS));
+    }
+
+    @Test
+    public void testInterpolatesBehindNow() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 100, 50);
+        buffer.add(1000 * MS, new Vector3(0, 0, 0), facingForward);
+        buffer.add(1050 * MS, new Vector3(10, 0, 0), facingForward);
+        buffer.add(1100 * MS, new Vector3(20, 0, 0), facingForward);
+
+        // shown 100ms behind, so at 1175ms it is halfway between the states at 1050ms and 1100ms
+        assertVector(15, 0, 0, buffer.positionAt(1175 * MS));
+        // before the oldest state it stays at the oldest state
+        assertVector(0, 0, 0, buffer.positionAt(1000 * MS));
+    }
+
+    @Test
+    public void testExtrapolatesForAShortTime() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 100, 50);
+        buffer.add(1000 * MS, new Vector3(0, 0, 0), facingForward);
+        buffer.add(1050 * MS, new Vector3(10, 0, 0), facingForward);
+
+        // 25ms past the latest state, moving at 10 units per 50ms
+        assertVector(15, 0, 0, buffer.positionAt(1175 * MS));
+        // no further than 50ms past it
+        assertVector(20, 0, 0, buffer.positionAt(1300 * MS));
+        assertVector(20, 0, 0, buffer.positionAt(2000 * MS));
+    }
+
+    @Test
+    public void testRotationSlerpsTheShortWay() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 0, 0);
+        Quaternion quarterTurn = Quaternion.makeWithAngleAndAxis((float) (Math.PI / 2), 0, 1, 0);
+        Quaternion negatedQuarterTurn = new Quaternion(-quarterTurn.x, -quarterTurn.y, -quarterTurn.z, -quarterTurn.w);
+        buffer.add(0, Vector3.zero, facingForward);
+        buffer.add(100 * MS, Vector3.zero, negatedQuarterTurn);
+
+        Quaternion eighthTurn = Quaternion.makeWithAngleAndAxis((float) (Math.PI / 4), 0, 1, 0);
+        Quaternion halfway = buffer.rotationAt(50 * MS);
+        assertEquals(eighthTurn.y, halfway.y, EPSILON);
+        assertEquals(eighthTurn.w, halfway.w, EPSILON);
+    }
+
+    @Test
+    public void testMissingValuesCarryOver() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 0, 0);
+        Quaternion turned = Quaternion.makeWithAngleAndAxis(1, 0, 1, 0);
+        buffer.add(0, new Vector3(5, 0, 0), facingForward);
+        buffer.add(10 * MS, null, turned);
+        buffer.add(20 * MS, new Vector3(6, 0, 0), null);
+
+        assertVector(6, 0, 0, buffer.positionAt(20 * MS));
+        assertEquals(turned, buffer.rotationAt(20 * MS));
+    }
+
+    @Test
+    public void testOldStatesIgnored() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 0, 0);
+        buffer.add(10 * MS, new Vector3(1, 0, 0), facingForward);
+        assertFalse(buffer.add(5 * MS, new Vector3(2, 0, 0), facingForward));
+        assertVector(1, 0, 0, buffer.positionAt(10 * MS));
+    }
+
+    @Test
+    public void testOverwritesOldestWhenFull() {
+        InterpolationBuffer buffer = new InterpolationBuffer(2, 0, 0);
+        buffer.add(0, new Vector3(0, 0, 0), facingForward);
+        buffer.add(10 * MS, new Vector3(1, 0, 0), facingForward);
+        buffer.add(20 * MS, new Vector3(2, 0, 0), facingForward);
+
+        // the state at 0ms is gone, so the earliest shown is the one at 10ms
+        assertVector(1, 0, 0, buffer.positionAt(0));
+        assertVector(1.5f, 0, 0, buffer.positionAt(15 * MS));
+    }
+
+    @Test
+    public void testLongGapStartsAfresh() {
+        InterpolationBuffer buffer = new InterpolationBuffer(4, 100, 50);
+        buffer.add(0, new Vector3(0, 0, 0), facingForward);
+        buffer.add(50 * MS, new Vector3(10, 0, 0), facingForward);
+        buffer.add(5000 * MS, new Vector3(100, 0, 0), null);
+
+        // no sliding from the old position and no extrapolating from the old velocity
+        assertVector(100, 0, 0, buffer.positionAt(5050 * MS));
+        assertVector(100, 0, 0, buffer.positionAt(5500 * MS));
+    }
+}
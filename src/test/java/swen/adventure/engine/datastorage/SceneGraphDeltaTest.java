@@ -0,0 +1,79 @@
+package swen.adventure.engine.datastorage;
+
+import org.junit.Test;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.scenegraph.TransformNode;
+import swen.adventure.game.scenenodes.Container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SceneGraphDeltaTest {
+
+    private static final String XML_HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+    @Test public void
+    unchanged_graph_should_have_empty_delta() {
+        TransformNode root = createLevel();
+        SceneGraphDelta delta = new SceneGraphDelta(root);
+
+        assertEquals("<root/>", cleanXml(delta.serializeToString(root)));
+    }
+
+    @Test public void
+    moved_node_should_be_sent_with_its_ancestors_only() {
+        TransformNode root = createLevel();
+        SceneGraphDelta delta = new SceneGraphDelta(root);
+
+        ((TransformNode) root.nodeWithID("door").get()).setTranslation(new Vector3(9f, 9f, 9f));
+
+        String xml = delta.serializeToString(root);
+        assertTrue(xml.contains("id=\"room\""));
+        assertTrue(xml.contains("id=\"door\""));
+        assertTrue(xml.contains("9.0, 9.0, 9.0"));
+        assertFalse(xml.contains("id=\"wall\""));
+        assertFalse(xml.contains("id=\"chest\""));
+    }
+
+    @Test public void
+    new_node_should_be_sent() {
+        TransformNode root = createLevel();
+        SceneGraphDelta delta = new SceneGraphDelta(root);
+
+        new Container("bag", root, 3);
+
+        assertEquals("<root><Container capacity=\"3\" id=\"bag\" showTopItem=\"false\"/></root>",
+                cleanXml(delta.serializeToString(root)));
+    }
+
+    @Test public void
+    delta_should_bring_a_pristine_graph_up_to_date() throws Exception {
+        TransformNode server = createLevel();
+        SceneGraphDelta delta = new SceneGraphDelta(server);
+
+        ((TransformNode) server.nodeWithID("door").get()).setRotation(new Quaternion(0f, 1f, 0f, 0f));
+        new Container("bag", (TransformNode) server.nodeWithID("room").get(), 3);
+
+        TransformNode client = SceneGraphParser.parseSceneGraph(delta.serializeToString(server), createLevel());
+
+        assertEquals(SceneGraphSerializer.serializeToString(server), SceneGraphSerializer.serializeToString(client));
+    }
+
+    private static TransformNode createLevel() {
+        TransformNode root = new TransformNode("root", Vector3.zero, new Quaternion(), Vector3.one);
+        TransformNode room = new TransformNode("room", root, false, new Vector3(1f, 0f, 0f), new Quaternion(), Vector3.one);
+        new TransformNode("wall", room, false, new Vector3(0f, 2f, 0f), new Quaternion(), Vector3.one);
+        new TransformNode("door", room, true, new Vector3(0f, 0f, 3f), new Quaternion(), Vector3.one);
+        new Container("chest", room, 5);
+        return root;
+    }
+
+    private static String cleanXml(String xml) {
+        if (xml.startsWith(XML_HEAD))
+            return xml.substring(XML_HEAD.length()).trim();
+        else
+            return xml.trim();
+    }
+}
@@ -11,6 +11,9 @@ import swen.adventure.engine.scenegraph.SceneNode;
 import swen.adventure.engine.scenegraph.TransformNode;
 import swen.adventure.game.scenenodes.Container;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -47,6 +50,21 @@ public class SceneGraphSerializerTest {
                 root);
     }
 
+    @Test public void
+    capture_should_not_see_later_changes() {
+        TransformNode root = createRoot();
+        TransformNode child = createChildTransformNode(root);
+        String before = serialize(root);
+        SceneGraphSerializer.Capture capture = SceneGraphSerializer.capture(root);
+
+        child.setTranslation(new Vector3(7f, 8f, 9f));
+        new Container("container1", root, 45);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        capture.writeTo(out);
+        assertXmlEqual(before, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
     private static TransformNode createRoot(){
         return new TransformNode("root", Vector3.zero, new Quaternion(), Vector3.one);
     }
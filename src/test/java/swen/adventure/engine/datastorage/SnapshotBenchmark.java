@@ -0,0 +1,73 @@
+package swen.adventure.engine.datastorage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import swen.adventure.engine.Utilities;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.scenegraph.SceneNode;
+import swen.adventure.engine.scenegraph.TransformNode;
+import swen.adventure.game.scenenodes.SpawnNode;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what a player joining costs with a full xml snapshot against a delta snapshot: the server
+ * serializing the level plus the client applying it to its own copy of the level.
+ *
+ * The level is the game's SceneGraph with a few players connected who have moved around. Snapshot sizes
+ * are printed during setup. Loading the level twice makes setup take a while.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"4"})
+    public int players;
+
+    private TransformNode server;
+    private TransformNode client;
+    private SceneGraphDelta baseline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Utilities.isHeadlessMode = true;
+        File level = new File(Utilities.pathForResource("SceneGraph", "xml"));
+
+        server = SceneGraphParser.parseSceneGraph(level);
+        baseline = new SceneGraphDelta(server);
+        client = SceneGraphParser.parseSceneGraph(level);
+
+        SpawnNode spawn = (SpawnNode) server.nodeWithID(SpawnNode.ID).get();
+        for (int i = 0; i < players; i++) {
+            spawn.spawnPlayerWithId("player" + i);
+            server.nodeWithID("player" + i).flatMap(SceneNode::parent)
+                    .ifPresent(transform -> transform.setTranslation(new Vector3(10, 0, 10)));
+        }
+
+        System.out.println("Full snapshot: " + SceneGraphSerializer.serializeToString(server).length()
+                + " bytes, delta snapshot: " + baseline.serializeToString(server).length() + " bytes");
+    }
+
+    @Benchmark
+    public TransformNode joinFull() throws ParserException {
+        return SceneGraphParser.parseSceneGraph(SceneGraphSerializer.serializeToString(server), client);
+    }
+
+    @Benchmark
+    public TransformNode joinDelta() throws ParserException {
+        return SceneGraphParser.parseSceneGraph(baseline.serializeToString(server), client);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnapshotBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,62 @@
+package swen.adventure.engine.metrics;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class HistogramTest extends TestCase {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0.0, histogram.mean());
+    }
+
+    @Test
+    public void testSmallValuesExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 4; i++) {
+            histogram.record(i);
+        }
+        assertEquals(2, histogram.percentile(50));
+        assertEquals(4, histogram.percentile(100));
+        assertEquals(2.5, histogram.mean());
+    }
+
+    @Test
+    public void testPercentilesWithinBucketError() {
+        Histogram histogram = new Histogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        long p50 = histogram.percentile(50);
+        long p99 = histogram.percentile(99);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 9 / 8);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 9 / 8);
+        assertEquals(1_000_000, histogram.percentile(100));
+        assertEquals(1_000_000, histogram.max());
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long[] values = {0, 7, 8, 15, 16, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(Histogram.highestValueIn(bucket) >= value);
+            if (bucket > 0) {
+                assertTrue(Histogram.highestValueIn(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testReset() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+}
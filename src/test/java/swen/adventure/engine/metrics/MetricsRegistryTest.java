@@ -0,0 +1,152 @@
+package swen.adventure.engine.metrics;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+public class MetricsRegistryTest extends TestCase {
+
+    @Test
+    public void testCountersAndGauges() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("events_total").add(3);
+        metrics.counter("events_total").increment();
+        metrics.gauge("queue_depth", () -> 7);
+
+        assertEquals("# TYPE events_total counter\n" +
+                "events_total 4\n" +
+                "# TYPE queue_depth gauge\n" +
+                "queue_depth 7\n", metrics.expose());
+    }
+
+    @Test
+    public void testLabels() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter(MetricsRegistry.name("events_total", "event", "PlayerMoved")).increment();
+        metrics.counter(MetricsRegistry.name("events_total", "event", "say \"hi\"")).add(2);
+
+        assertEquals("# TYPE events_total counter\n" +
+                "events_total{event=\"PlayerMoved\"} 1\n" +
+                "events_total{event=\"say \\\"hi\\\"\"} 2\n", metrics.expose());
+    }
+
+    @Test
+    public void testCollector() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.register(samples -> {
+            samples.put(MetricsRegistry.name("bytes_out", "client", "alice"), 10L);
+            samples.put(MetricsRegistry.name("bytes_out", "client", "bob"), 20L);
+        });
+
+        assertEquals("# TYPE bytes_out gauge\n" +
+                "bytes_out{client=\"alice\"} 10\n" +
+                "bytes_out{client=\"bob\"} 20\n", metrics.expose());
+    }
+
+    @Test
+    public void testHistogram() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        Histogram histogram = metrics.histogram("tick_nanos");
+        for (int i = 1; i <= 4; i++) {
+            histogram.record(i);
+        }
+        assertSame(histogram, metrics.histogram("tick_nanos"));
+
+        assertEquals("# TYPE tick_nanos summary\n" +
+                "tick_nanos{quantile=\"0.5\"} 2\n" +
+                "tick_nanos{quantile=\"0.9\"} 4\n" +
+                "tick_nanos{quantile=\"0.99\"} 4\n" +
+                "tick_nanos{quantile=\"0.999\"} 4\n" +
+                "tick_nanos_sum 10\n" +
+                "tick_nanos_count 4\n" +
+                "# TYPE tick_nanos_max gauge\n" +
+                "tick_nanos_max 4\n", metrics.expose());
+    }
+
+    @Test
+    public void testLabelledView() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry first = metrics.labelled("shard", "0");
+        MetricsRegistry second = metrics.labelled("shard", "1");
+        first.counter("events_total").add(2);
+        second.counter(MetricsRegistry.name("events_total", "event", "PlayerMoved")).increment();
+        second.gauge("queue_depth", () -> 3);
+        first.register(samples -> samples.put(MetricsRegistry.name("bytes_out", "client", "alice"), 10L));
+
+        assertSame(first.counter("events_total"), metrics.counter(MetricsRegistry.name("events_total", "shard", "0")));
+        assertEquals("# TYPE events_total counter\n" +
+                "events_total{event=\"PlayerMoved\",shard=\"1\"} 1\n" +
+                "events_total{shard=\"0\"} 2\n" +
+                "# TYPE bytes_out gauge\n" +
+                "bytes_out{client=\"alice\",shard=\"0\"} 10\n" +
+                "# TYPE queue_depth gauge\n" +
+                "queue_depth{shard=\"1\"} 3\n", metrics.expose());
+        assertEquals(metrics.expose(), first.expose());
+    }
+
+    @Test
+    public void testLabelledFamiliesWrittenTogether() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.labelled("shard", "0").histogram("tick_nanos").record(1);
+        metrics.labelled("shard", "1").histogram("tick_nanos").record(2);
+        metrics.counter("events_total").increment();
+        metrics.counter("events_total_dropped").increment();
+        metrics.labelled("shard", "1").counter("events_total").increment();
+
+        assertEquals("# TYPE events_total counter\n" +
+                "events_total 1\n" +
+                "events_total{shard=\"1\"} 1\n" +
+                "# TYPE events_total_dropped counter\n" +
+                "events_total_dropped 1\n" +
+                "# TYPE tick_nanos summary\n" +
+                "tick_nanos{shard=\"0\",quantile=\"0.5\"} 1\n" +
+                "tick_nanos{shard=\"0\",quantile=\"0.9\"} 1\n" +
+                "tick_nanos{shard=\"0\",quantile=\"0.99\"} 1\n" +
+                "tick_nanos{shard=\"0\",quantile=\"0.999\"} 1\n" +
+                "tick_nanos_sum{shard=\"0\"} 1\n" +
+                "tick_nanos_count{shard=\"0\"} 1\n" +
+                "tick_nanos{shard=\"1\",quantile=\"0.5\"} 2\n" +
+                "tick_nanos{shard=\"1\",quantile=\"0.9\"} 2\n" +
+                "tick_nanos{shard=\"1\",quantile=\"0.99\"} 2\n" +
+                "tick_nanos{shard=\"1\",quantile=\"0.999\"} 2\n" +
+                "tick_nanos_sum{shard=\"1\"} 2\n" +
+                "tick_nanos_count{shard=\"1\"} 1\n" +
+                "# TYPE tick_nanos_max gauge\n" +
+                "tick_nanos_max{shard=\"0\"} 1\n" +
+                "tick_nanos_max{shard=\"1\"} 2\n", metrics.expose());
+    }
+
+    @Test
+    public void testEndpoint() throws IOException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("events_total").add(5);
+        MetricsEndpoint endpoint = new MetricsEndpoint(metrics, 0);
+        endpoint.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + endpoint.port() + "/metrics").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain"));
+            assertEquals(metrics.expose(), read(connection.getInputStream()));
+        } finally {
+            endpoint.stop();
+        }
+    }
+
+    private static String read(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import swen.adventure.engine.rendering.maths.BoundingBox;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.rendering.maths.Vector4;
+import swen.adventure.game.InteractionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BinaryEventBoxCodecTest extends TestCase {
+
+    private static EventBox playerMoved(float x) {
+        return new EventBox("PlayerMoved", "player0", "player0", "player0",
+                Collections.singletonMap("Location", new Vector3(x, 2, 3)));
+    }
+
+    @Test
+    public void testRoundTripTypes() throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put("string", "k");
+        data.put("int", -42);
+        data.put("float", 1.5f);
+        data.put("long", Long.MAX_VALUE);
+        data.put("boolean", true);
+        data.put("vector3", new Vector3(1, 2, 3));
+        data.put("quaternion", new Quaternion(0, 0, 0, 1));
+        data.put("interactionType", InteractionType.Pull);
+        data.put("null", null);
+        EventBox box = new EventBox("test", "tester", "testie", null, data);
+
+        EventBox decoded = new BinaryEventBoxCodec().decode(ByteBuffer.wrap(new BinaryEventBoxCodec().encode(box)));
+
+        assertEquals(box, decoded);
+    }
+
+    @Test
+    public void testRoundTripArraysAndBoxes() throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put("strings", new String[] {"a", "b"});
+        data.put("vector4", new Vector4(1, 2, 3, 4));
+        data.put("box", new BoundingBox(new Vector3(0, 0, 0), new Vector3(1, 1, 1)));
+        EventBox box = new EventBox("test", "tester", "testie", "from", data);
+
+        EventBox decoded = new BinaryEventBoxCodec().decode(ByteBuffer.wrap(new BinaryEventBoxCodec().encode(box)));
+
+        Assert.assertArrayEquals(new String[] {"a", "b"}, (String[]) decoded.eventData.get("strings"));
+        assertEquals(4f, ((Vector4) decoded.eventData.get("vector4")).w);
+        assertEquals(1f, ((BoundingBox) decoded.eventData.get("box")).maxPoint.z);
+    }
+
+    @Test
+    public void testDictionaryShrinksRepeatedEvents() throws Exception {
+        BinaryEventBoxCodec sender = new BinaryEventBoxCodec();
+        BinaryEventBoxCodec receiver = new BinaryEventBoxCodec();
+
+        byte[] first = sender.encode(playerMoved(1));
+        byte[] second = sender.encode(playerMoved(2));
+
+        assertTrue(second.length < first.length);
+        assertTrue(second.length < playerMoved(2).getBytes().length / 4);
+
+        // the receiver must see the payloads in order to learn the dictionary
+        assertEquals(playerMoved(1), receiver.decode(ByteBuffer.wrap(first)));
+        assertEquals(playerMoved(2), receiver.decode(ByteBuffer.wrap(second)));
+    }
+
+    @Test
+    public void testStatelessReadableByAnyCodec() throws Exception {
+        byte[] payload = BinaryEventBoxCodec.encodeStateless(playerMoved(1));
+
+        assertEquals(playerMoved(1), new BinaryEventBoxCodec().decode(ByteBuffer.wrap(payload)));
+        assertEquals(playerMoved(1), new BinaryEventBoxCodec().decode(ByteBuffer.wrap(payload)));
+    }
+
+    @Test
+    public void testDecodesTextFormat() throws Exception {
+        EventBox box = new EventBox("test", "tester", "testie", "from", Collections.singletonMap("v", "k"));
+
+        assertEquals(box, new BinaryEventBoxCodec().decode(ByteBuffer.wrap(box.getBytes())));
+    }
+
+    /**
+     * A payload that defines four new strings as the event's name and ids, and has no data
+     */
+    private static byte[] defining(String prefix, int length) {
+        BinaryEventBoxCodec.Output out = new BinaryEventBoxCodec.Output();
+        out.write(BinaryEventBoxCodec.VERSION);
+        for (int i = 0; i < 4; i++) {
+            StringBuilder s = new StringBuilder(prefix).append(i);
+            while (s.length() < length) {
+                s.append('x');
+            }
+            byte[] bytes = s.toString().getBytes();
+            out.writeVarint(bytes.length << 2 | 2); // a string to add to the dictionary
+            out.write(bytes, 0, bytes.length);
+        }
+        out.writeVarint(0);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testDictionaryDefinitionsLimited() throws Exception {
+        BinaryEventBoxCodec receiver = new BinaryEventBoxCodec();
+        for (int i = 0; i < 4096 / 4; i++) {
+            assertEquals("event" + i + "-0", receiver.decode(ByteBuffer.wrap(defining("event" + i + "-", 0))).eventName);
+        }
+        try {
+            receiver.decode(ByteBuffer.wrap(defining("more-", 0)));
+            fail();
+        } catch (IOException ex) {
+        }
+
+        try {
+            new BinaryEventBoxCodec().decode(ByteBuffer.wrap(defining("long-", 65)));
+            fail();
+        } catch (IOException ex) {
+        }
+        assertNotNull(new BinaryEventBoxCodec().decode(ByteBuffer.wrap(defining("long-", 64))));
+    }
+
+    /**
+     * An event with no strings and one data entry, a string array of the given length with nothing in it
+     */
+    private static byte[] stringArray(int count) {
+        BinaryEventBoxCodec.Output out = new BinaryEventBoxCodec.Output();
+        out.write(BinaryEventBoxCodec.VERSION);
+        for (int i = 0; i < 4; i++) {
+            out.writeVarint(0); // null
+        }
+        out.writeVarint(1);
+        out.writeVarint(0); // null key
+        out.write((byte) 11); // string array
+        out.writeVarint(count);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testMalformedStringArrayCount() throws Exception {
+        for (int count : new int[] {-1, Integer.MAX_VALUE, 1}) {
+            try {
+                new BinaryEventBoxCodec().decode(ByteBuffer.wrap(stringArray(count)));
+                fail("decoded a string array of " + count);
+            } catch (IOException ex) {
+            }
+            try {
+                ByteBuffer direct = ByteBuffer.allocateDirect(stringArray(count).length);
+                direct.put(stringArray(count)).flip();
+                new BinaryEventBoxCodec().decode(direct);
+                fail("decoded a string array of " + count);
+            } catch (IOException ex) {
+            }
+        }
+        assertEquals(0, ((String[]) new BinaryEventBoxCodec().decode(ByteBuffer.wrap(stringArray(0))).eventData.get(null)).length);
+    }
+
+    @Test
+    public void testMalformedStringLength() throws Exception {
+        BinaryEventBoxCodec.Output out = new BinaryEventBoxCodec.Output();
+        out.write(BinaryEventBoxCodec.VERSION);
+        out.writeVarint(0x3FFFFFFF << 2 | 3); // an inline string as long as a varint can say
+        byte[] payload = out.toByteArray();
+        ByteBuffer direct = ByteBuffer.allocateDirect(payload.length);
+        direct.put(payload).flip();
+        try {
+            new BinaryEventBoxCodec().decode(direct);
+            fail();
+        } catch (IOException ex) {
+        }
+    }
+
+    @Test
+    public void testMalformedPayload() throws Exception {
+        byte[] payload = new BinaryEventBoxCodec().encode(playerMoved(1));
+        try {
+            new BinaryEventBoxCodec().decode(ByteBuffer.wrap(payload, 0, payload.length - 3));
+            fail();
+        } catch (IOException ex) {
+        }
+    }
+}
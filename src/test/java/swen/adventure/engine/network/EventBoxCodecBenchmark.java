@@ -0,0 +1,71 @@
+package swen.adventure.engine.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the text and binary codecs on PlayerMoved events, the bulk of the game's traffic.
+ * The encoded size of each is printed during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventBoxCodecBenchmark {
+    private EventBox playerMoved;
+    private byte[] text;
+    private BinaryEventBoxCodec sender;
+    private BinaryEventBoxCodec receiver;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        playerMoved = new EventBox("PlayerMoved", "player0", "player0", "player0",
+                Collections.singletonMap("Location", new Vector3(12.5f, 0, -3.25f)));
+        text = playerMoved.getBytes();
+
+        // warm the dictionaries so the steady state is measured
+        sender = new BinaryEventBoxCodec();
+        receiver = new BinaryEventBoxCodec();
+        receiver.decode(ByteBuffer.wrap(sender.encode(playerMoved)));
+        binary = sender.encode(playerMoved);
+
+        System.out.println("PlayerMoved text: " + text.length + " bytes, binary: " + binary.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encodeText() {
+        return playerMoved.getBytes();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return sender.encode(playerMoved);
+    }
+
+    @Benchmark
+    public EventBox decodeText() {
+        return EventBox.fromBytes(text);
+    }
+
+    @Benchmark
+    public EventBox decodeBinary() throws IOException {
+        return receiver.decode(ByteBuffer.wrap(binary));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventBoxCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
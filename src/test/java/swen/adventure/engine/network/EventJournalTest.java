@@ -0,0 +1,197 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class EventJournalTest extends TestCase {
+
+    private File checkpoint;
+    private File journal;
+
+    @Before
+    public void setup() throws IOException {
+        checkpoint = File.createTempFile("journaltest", ".xml");
+        journal = File.createTempFile("journaltest", ".journal");
+        assertTrue(checkpoint.delete());
+    }
+
+    @After
+    public void tearDown() {
+        checkpoint.delete();
+        journal.delete();
+    }
+
+    private static EventBox moved(int step) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("Location", new Vector3(step, 0, -step));
+        data.put("InputSequence", step);
+        return new EventBox("PlayerMoved", "player", "player", "player", data);
+    }
+
+    private List<EventBox> replay() throws IOException {
+        List<EventBox> events = new ArrayList<>();
+        try (EventJournal reopened = new EventJournal(checkpoint, journal)) {
+            reopened.replay(events::add);
+        }
+        return events;
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws IOException {
+        try (EventJournal events = new EventJournal(checkpoint, journal)) {
+            assertEquals(0, events.replay(event -> fail()));
+            events.append(moved(1));
+            events.append(moved(2));
+            events.commit();
+            events.append(moved(3));
+        }
+
+        List<EventBox> replayed = replay();
+        assertEquals(3, replayed.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(moved(i + 1), replayed.get(i));
+        }
+    }
+
+    @Test
+    public void testCheckpointEmptiesJournal() throws IOException {
+        byte[] state = "<SceneGraph/>".getBytes(StandardCharsets.UTF_8);
+        try (EventJournal events = new EventJournal(checkpoint, journal)) {
+            events.replay(event -> fail());
+            events.append(moved(1));
+            events.append(moved(2));
+            assertTrue(events.checkpoint(out -> out.write(state)));
+            events.append(moved(3));
+        }
+
+        assertEquals(2, EventJournal.readCheckpointSequence(checkpoint));
+        String saved = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8);
+        assertTrue(saved.startsWith("<SceneGraph/>"));
+        assertEquals(Collections.singletonList(moved(3)), replay());
+    }
+
+    @Test
+    public void testOneCheckpointAtATime() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        try (EventJournal events = new EventJournal(checkpoint, journal)) {
+            events.replay(event -> fail());
+            events.append(moved(1));
+            assertTrue(events.checkpoint(out -> {
+                writing.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                out.write("<first/>".getBytes(StandardCharsets.UTF_8));
+            }));
+            writing.await();
+            events.append(moved(2));
+            assertTrue(events.isCheckpointing());
+            assertFalse(events.checkpoint(out -> fail()));
+            finish.countDown();
+        }
+
+        assertEquals(1, EventJournal.readCheckpointSequence(checkpoint));
+        assertEquals(Collections.singletonList(moved(2)), replay());
+    }
+
+    @Test
+    public void testFailedCheckpointKeepsLaterWrites() throws Exception {
+        EventJournal events = new EventJournal(checkpoint, journal);
+        events.replay(event -> fail());
+        events.append(moved(1));
+        assertTrue(events.checkpoint(out -> {
+            throw new IOException("disk full");
+        }));
+        while (events.isCheckpointing()) {
+            Thread.sleep(1);
+        }
+        events.append(moved(2));
+        assertTrue(events.checkpoint(out -> {
+            throw new IllegalStateException("scene changed");
+        }));
+        events.append(moved(3));
+
+        Thread closing = new Thread(events::close);
+        closing.start();
+        closing.join(5000);
+        assertFalse("close waits for a writer that has stopped", closing.isAlive());
+        new File(checkpoint.getPath() + ".tmp").delete();
+
+        assertFalse(checkpoint.exists());
+        List<EventBox> replayed = replay();
+        assertEquals(3, replayed.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(moved(i + 1), replayed.get(i));
+        }
+    }
+
+    @Test
+    public void testEventsBeforeCheckpointNotReplayed() throws IOException {
+        try (EventJournal events = new EventJournal(checkpoint, journal)) {
+            events.replay(event -> fail());
+            events.append(moved(1));
+            events.append(moved(2));
+        }
+        // as if the server stopped after saving the checkpoint but before emptying the journal
+        Files.write(checkpoint.toPath(), "<SceneGraph/>\n<!-- journal sequence 1 -->\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Collections.singletonList(moved(2)), replay());
+    }
+
+    @Test
+    public void testIncompleteRecordDiscarded() throws IOException {
+        try (EventJournal events = new EventJournal(checkpoint, journal)) {
+            events.replay(event -> fail());
+            events.append(moved(1));
+            events.append(moved(2));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (EventJournal events = new EventJournal(checkpoint, journal)) {
+            List<EventBox> replayed = new ArrayList<>();
+            assertEquals(1, events.replay(replayed::add));
+            assertEquals(Collections.singletonList(moved(1)), replayed);
+            assertEquals(1, events.sequence());
+            events.append(moved(3));
+        }
+
+        List<EventBox> replayed = replay();
+        assertEquals(2, replayed.size());
+        assertEquals(moved(1), replayed.get(0));
+        assertEquals(moved(3), replayed.get(1));
+    }
+
+    @Test
+    public void testDamagedRecordDiscarded() throws IOException {
+        try (EventJournal events = new EventJournal(checkpoint, journal)) {
+            events.replay(event -> fail());
+            events.append(moved(1));
+            events.append(moved(2));
+        }
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(journal.toPath(), bytes);
+
+        assertEquals(Collections.singletonList(moved(1)), replay());
+    }
+}
@@ -0,0 +1,80 @@
+package swen.adventure.engine.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding a stream of CLIENT_DATA frames delivered in socket sized reads.
+ *
+ * Run with the GC profiler enabled (as <code>main</code> does) and check that gc.alloc.rate.norm is
+ * zero bytes per operation, i.e. decoding does not allocate for each packet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@OperationsPerInvocation(FrameDecoderBenchmark.FRAMES)
+public class FrameDecoderBenchmark {
+    static final int FRAMES = 256;
+
+    @Param({"64", "1024"})
+    public int payloadSize;
+
+    @Param({"1460"})
+    public int readSize;
+
+    private FrameDecoder decoder;
+    private ByteBuffer stream;
+    private FrameDecoder.FrameHandler handler;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] frame = new Packet(Packet.Operation.CLIENT_DATA, new byte[payloadSize]).toBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            out.write(frame, 0, frame.length);
+        }
+        stream = ByteBuffer.wrap(out.toByteArray());
+        decoder = new FrameDecoder();
+
+        this.blackhole = blackhole;
+        handler = packet -> this.blackhole.consume(packet.getPayloadLength());
+    }
+
+    @Benchmark
+    public int decode() throws IOException {
+        int frames = 0;
+        stream.clear();
+        while (stream.hasRemaining()) {
+            // emulate a socket read of at most readSize bytes
+            ByteBuffer into = decoder.buffer();
+            int len = Math.min(Math.min(readSize, stream.remaining()), into.remaining());
+            int limit = stream.limit();
+            stream.limit(stream.position() + len);
+            into.put(stream);
+            stream.limit(limit);
+
+            frames += decoder.decode(handler);
+        }
+        return frames;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FrameDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FrameDecoderTest extends TestCase {
+
+    private static byte[] frames(Packet... packets) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Packet packet : packets) {
+            byte[] bytes = packet.toBytes();
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Packet> decodeInChunks(FrameDecoder decoder, byte[] stream, int chunk) throws IOException {
+        List<Packet> decoded = new ArrayList<>();
+        for (int i = 0; i < stream.length;) {
+            // like a socket read, never more than the decoder has space for
+            int len = Math.min(Math.min(chunk, stream.length - i), decoder.buffer().remaining());
+            decoder.buffer().put(stream, i, len);
+            i += len;
+            // the decoder reuses its packet, so copy each one out
+            decoder.decode(packet -> decoded.add(new Packet(packet.getOperation(), packet.getPayload())));
+        }
+        return decoded;
+    }
+
+    @Test
+    public void testSingleFrame() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        List<Packet> decoded = decodeInChunks(decoder,
+                frames(new Packet(Packet.Operation.CLIENT_DATA, new byte[] {1, 2, 3})), 1024);
+
+        assertEquals(1, decoded.size());
+        assertEquals(Packet.Operation.CLIENT_DATA, decoded.get(0).getOperation());
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, decoded.get(0).getPayload()));
+    }
+
+    @Test
+    public void testFramesSplitAcrossReads() throws Exception {
+        byte[] stream = frames(
+                new Packet(Packet.Operation.CLIENT_CONNECT, "JohnDoe".getBytes()),
+                new Packet(Packet.Operation.CLIENT_KICK),
+                new Packet(Packet.Operation.SERVER_DATA, new byte[] {9, 8, 7, 6}));
+
+        // one byte at a time splits both headers and payloads
+        List<Packet> decoded = decodeInChunks(new FrameDecoder(), stream, 1);
+
+        assertEquals(3, decoded.size());
+        assertEquals("JohnDoe", new String(decoded.get(0).getPayload()));
+        assertEquals(Packet.Operation.CLIENT_KICK, decoded.get(1).getOperation());
+        assertEquals(0, decoded.get(1).getPayloadLength());
+        assertTrue(Arrays.equals(new byte[] {9, 8, 7, 6}, decoded.get(2).getPayload()));
+    }
+
+    @Test
+    public void testFrameLargerThanBuffer() throws Exception {
+        byte[] payload = new byte[10000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        byte[] stream = frames(new Packet(Packet.Operation.SNAPSHOT, payload), new Packet(Packet.Operation.CLIENT_KICK));
+
+        List<Packet> decoded = decodeInChunks(new FrameDecoder(16), stream, 16);
+
+        assertEquals(2, decoded.size());
+        assertTrue(Arrays.equals(payload, decoded.get(0).getPayload()));
+        assertEquals(Packet.Operation.CLIENT_KICK, decoded.get(1).getOperation());
+    }
+
+    @Test
+    public void testReadFromStream() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        ByteArrayInputStream input = new ByteArrayInputStream(
+                frames(new Packet(Packet.Operation.CLIENT_DATA, new byte[] {4, 5})));
+
+        assertEquals(7, decoder.readFrom(input));
+        List<Packet> decoded = new ArrayList<>();
+        assertEquals(1, decoder.decode(packet -> decoded.add(new Packet(packet.getOperation(), packet.getPayload()))));
+        assertTrue(Arrays.equals(new byte[] {4, 5}, decoded.get(0).getPayload()));
+        assertEquals(-1, decoder.readFrom(input));
+    }
+
+    @Test
+    public void testUnknownOperation() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.buffer().put(new byte[] {(byte) 120, 0, 0, 0, 0});
+        try {
+            decoder.decode(packet -> fail());
+            fail();
+        } catch (IOException ex) {
+        }
+    }
+
+    @Test
+    public void testNegativeLength() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.buffer().put(new byte[] {Packet.Operation.CLIENT_DATA.toByte(), (byte) 0xFF, 0, 0, 0});
+        try {
+            decoder.decode(packet -> fail());
+            fail();
+        } catch (IOException ex) {
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.net.BindException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public class LoopbackNetworkTest extends TestCase {
+
+    @Test
+    public void testConnectWithNothingListening() throws Exception {
+        try {
+            new NetworkClient("JohnDoe").connect(LoopbackNetwork.HOST, 61470);
+            fail();
+        } catch (ConnectException ex) {
+        }
+    }
+
+    @Test
+    public void testPortInUse() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.LOOPBACK, 1);
+        srv.start(61471);
+        try {
+            new NetworkServer(NetworkServer.Transport.LOOPBACK, 1).start(61471);
+            fail();
+        } catch (BindException ex) {
+        } finally {
+            srv.stop();
+        }
+        assertFalse(srv.isRunning());
+    }
+
+    @Test
+    public void testManyClients() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.LOOPBACK, 1);
+        srv.start(61472);
+        assertTrue(srv.isRunning());
+
+        List<NetworkClient> clients = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            NetworkClient cli = new NetworkClient("Bot" + i);
+            cli.connect(LoopbackNetwork.HOST, 61472);
+            clients.add(cli);
+            ids.add("Bot" + i);
+        }
+
+        Set<String> connected = new HashSet<>();
+        while (connected.size() < clients.size()) {
+            Optional<EventBox> event = srv.poll();
+            assertTrue(event.isPresent());
+            assertEquals("playerConnected", event.get().eventName);
+            connected.add(event.get().from);
+        }
+        assertEquals(ids, connected);
+
+        EventBox box = new EventBox("hey", "it's", "cool", "guy", Collections.emptyMap());
+        for (String id : ids) {
+            assertTrue(srv.send(id, box));
+        }
+        srv.flush();
+
+        for (NetworkClient cli : clients) {
+            assertEquals(Optional.of(box), pollFor(cli, 1000));
+        }
+
+        srv.stop();
+        assertFalse(srv.isRunning());
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.LOOPBACK, 1);
+        srv.start(61473);
+        LoopbackNetwork.shared().setConditions(100, 0, 0);
+        try {
+            NetworkClient cli = new NetworkClient("JohnDoe");
+            cli.connect(LoopbackNetwork.HOST, 61473);
+            assertEquals("playerConnected", srv.poll().get().eventName);
+
+            EventBox box = new EventBox("hey", "it's", "cool", "guy", Collections.emptyMap());
+            long start = System.nanoTime();
+            assertTrue(srv.send("JohnDoe", box));
+            srv.flush();
+
+            assertEquals(Optional.of(box), pollFor(cli, 1000));
+            assertTrue((System.nanoTime() - start) / 1_000_000 >= 100);
+        } finally {
+            LoopbackNetwork.shared().setConditions(0, 0, 0);
+            srv.stop();
+        }
+    }
+
+    @Test
+    public void testLossKeepsOrder() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.LOOPBACK, 1);
+        srv.start(61474);
+        LoopbackNetwork.shared().setConditions(1, 5, 0.2);
+        try {
+            NetworkClient cli = new NetworkClient("JohnDoe");
+            cli.connect(LoopbackNetwork.HOST, 61474);
+            assertEquals("playerConnected", srv.poll().get().eventName);
+
+            for (int i = 0; i < 20; i++) {
+                srv.send("JohnDoe", new EventBox("count", "server", "JohnDoe", null,
+                        Collections.singletonMap("i", i)));
+                srv.flush();
+            }
+
+            for (int i = 0; i < 20; i++) {
+                Optional<EventBox> received = pollFor(cli, 5000);
+                assertTrue(received.isPresent());
+                assertEquals(i, received.get().eventData.get("i"));
+            }
+        } finally {
+            LoopbackNetwork.shared().setConditions(0, 0, 0);
+            srv.stop();
+        }
+    }
+
+    @Test
+    public void testStopDisconnectsClients() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.LOOPBACK, 1);
+        srv.start(61475);
+
+        NetworkClient cli = new NetworkClient("JohnDoe");
+        cli.connect(LoopbackNetwork.HOST, 61475);
+        assertEquals("playerConnected", srv.poll().get().eventName);
+        assertTrue(cli.isConnected());
+
+        srv.stop();
+        for (int i = 0; i < 100 && cli.isConnected(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(cli.isConnected());
+    }
+
+    private static Optional<EventBox> pollFor(NetworkClient cli, long millis) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        Optional<EventBox> received = cli.poll();
+        while (!received.isPresent() && System.currentTimeMillis() < end) {
+            Thread.sleep(1);
+            received = cli.poll();
+        }
+        return received;
+    }
+}
@@ -0,0 +1,165 @@
+package swen.adventure.engine.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Throughput of the server's received event queue with a number of session threads adding to it as fast as they
+ * can and the server thread draining it.
+ *
+ * <code>ring</code> is the MpscRingBuffer the server uses, <code>linked</code> is the ConcurrentLinkedQueue it
+ * used before, which allocated a node per event and notified a monitor after each one. The linked queue is bounded
+ * with a counter of its own so the producers cannot run it out of memory. The time per operation is the time
+ * to take one event off the queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@OperationsPerInvocation(MpscRingBufferBenchmark.BATCH)
+public class MpscRingBufferBenchmark {
+    static final int BATCH = 256;
+    private static final int CAPACITY = NetworkServer.INBOUND_CAPACITY;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int producers;
+
+    @Param({"ring", "linked"})
+    public String queue;
+
+    @Param({"spin", "yield", "park"})
+    public String idle;
+
+    private MpscRingBuffer<EventBox> ring;
+    private Queue<EventBox> linked;
+    private AtomicInteger linkedSize;
+    private IdleStrategy idleStrategy;
+    private List<Thread> threads;
+    private volatile boolean producing;
+    private volatile Thread waiter;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        idleStrategy = IdleStrategy.named(idle);
+        ring = new MpscRingBuffer<>(CAPACITY);
+        linked = new ConcurrentLinkedQueue<>();
+        linkedSize = new AtomicInteger();
+
+        producing = true;
+        threads = new ArrayList<>(producers);
+        for (int i = 0; i < producers; i++) {
+            EventBox event = new EventBox("PlayerMoved", "player" + i, "player" + i, "player" + i,
+                    Collections.emptyMap());
+            Thread thread = new Thread(queue.equals("ring") ? () -> produceRing(event) : () -> produceLinked(event),
+                    "Producer#" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        producing = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Benchmark
+    public void drain() {
+        if (queue.equals("ring")) {
+            drainRing();
+        } else {
+            drainLinked();
+        }
+    }
+
+    private void drainRing() {
+        int taken = 0;
+        for (int idleCount = 0; taken < BATCH; ) {
+            int count = ring.drain(blackhole::consume, BATCH - taken);
+            if (count > 0) {
+                taken += count;
+                idleCount = 0;
+            } else {
+                idle(idleCount++);
+            }
+        }
+    }
+
+    private void drainLinked() {
+        int taken = 0;
+        for (int idleCount = 0; taken < BATCH; ) {
+            EventBox event = linked.poll();
+            if (event != null) {
+                linkedSize.decrementAndGet();
+                blackhole.consume(event);
+                taken++;
+                idleCount = 0;
+            } else {
+                idle(idleCount++);
+            }
+        }
+    }
+
+    private void idle(int idleCount) {
+        waiter = Thread.currentThread();
+        idleStrategy.idle(idleCount);
+        waiter = null;
+    }
+
+    private void produceRing(EventBox event) {
+        while (producing) {
+            if (ring.offer(event)) {
+                wake();
+            } else {
+                LockSupport.parkNanos(1000);
+            }
+        }
+    }
+
+    private void produceLinked(EventBox event) {
+        while (producing) {
+            if (linkedSize.get() < CAPACITY) {
+                linkedSize.incrementAndGet();
+                linked.add(event);
+                synchronized (linked) {
+                    linked.notifyAll();
+                }
+                wake();
+            } else {
+                LockSupport.parkNanos(1000);
+            }
+        }
+    }
+
+    private void wake() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MpscRingBufferBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MpscRingBufferTest extends TestCase {
+
+    @Test
+    public void testCapacityRoundedUp() {
+        assertEquals(8, new MpscRingBuffer<String>(5).capacity());
+        assertEquals(8, new MpscRingBuffer<String>(8).capacity());
+        assertEquals(1, new MpscRingBuffer<String>(1).capacity());
+    }
+
+    @Test
+    public void testOrder() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        for (int round = 0; round < 3; round++) {
+            buffer.offer(1);
+            buffer.offer(2);
+            buffer.offer(3);
+            assertEquals(3, buffer.size());
+            assertFalse(buffer.isEmpty());
+
+            assertEquals(Integer.valueOf(1), buffer.poll());
+            assertEquals(Integer.valueOf(2), buffer.poll());
+            assertEquals(Integer.valueOf(3), buffer.poll());
+            assertNull(buffer.poll());
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    @Test
+    public void testFull() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(2);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3));
+
+        assertEquals(Integer.valueOf(1), buffer.poll());
+        assertTrue(buffer.offer(3));
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    public void testDrainLimit() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, buffer.drain(drained::add, 3));
+        assertEquals(2, buffer.drain(drained::add, Integer.MAX_VALUE));
+        assertEquals(0, buffer.drain(drained::add, Integer.MAX_VALUE));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testManyProducers() throws Exception {
+        final int producers = 8;
+        final int perProducer = 50_000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(256);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!buffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // each producer's elements must come out in the order it added them
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            received += buffer.drain(element -> {
+                int producer = (int) element[0];
+                assertEquals(next[producer], element[1]);
+                next[producer]++;
+            }, 64);
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(buffer.isEmpty());
+        for (int count : next) {
+            assertEquals(perProducer, count);
+        }
+    }
+}
@@ -8,6 +8,10 @@ import org.junit.Assume;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Created by David Barnett, Student ID 3003123764, on 17/09/15.
@@ -63,4 +67,159 @@ public class NetworkServerTest extends TestCase {
 
         assertFalse(srv.isRunning());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testNonBlockingStop() throws Exception {
+        Server srv = new NetworkServer(NetworkServer.Transport.NON_BLOCKING, 2);
+        try {
+            srv.start(61454);
+        } catch (IOException ex) {
+            Assume.assumeNoException(ex);
+            return;
+        }
+
+        assertTrue(srv.isRunning());
+
+        srv.stop();
+
+        assertFalse(srv.isRunning());
+    }
+
+    @Test
+    public void testNonBlockingConnect() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.NON_BLOCKING, 2);
+        try {
+            srv.start(61455);
+        } catch (IOException ex) {
+            Assume.assumeNoException(ex);
+            return;
+        }
+
+        NetworkClient cli = new NetworkClient("JohnDoe");
+        cli.connect("localhost", 61455);
+
+        Optional<EventBox> connected = srv.poll();
+        assertTrue(connected.isPresent());
+        assertEquals("playerConnected", connected.get().eventName);
+        assertEquals("JohnDoe", connected.get().from);
+
+        EventBox box = new EventBox("hey", "it's", "cool", "guy", Collections.emptyMap());
+        assertTrue(srv.send("JohnDoe", box));
+        srv.flush();
+
+        Optional<EventBox> received = Optional.empty();
+        for (int i = 0; i < 100 && !received.isPresent(); i++) {
+            received = cli.poll();
+            Thread.sleep(10);
+        }
+        assertEquals(Optional.of(box), received);
+
+        srv.stop();
+    }
+
+    @Test
+    public void testSendAllExcludes() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.NON_BLOCKING, 1);
+        try {
+            srv.start(61456);
+        } catch (IOException ex) {
+            Assume.assumeNoException(ex);
+            return;
+        }
+
+        NetworkClient alice = new NetworkClient("Alice");
+        NetworkClient bob = new NetworkClient("Bob");
+        alice.connect("localhost", 61456);
+        srv.poll();
+        bob.connect("localhost", 61456);
+        srv.poll();
+
+        EventBox box = new EventBox("hey", "it's", "cool", "guy", Collections.emptyMap());
+        srv.sendAll(box, "Alice");
+        srv.flush();
+
+        Optional<EventBox> received = Optional.empty();
+        for (int i = 0; i < 100 && !received.isPresent(); i++) {
+            received = bob.poll();
+            Thread.sleep(10);
+        }
+        assertEquals(Optional.of(box), received);
+        assertFalse(alice.poll().isPresent());
+
+        srv.stop();
+    }
+
+    @Test
+    public void testDrainTo() throws Exception {
+        Server<String, EventBox> srv = new NetworkServer(NetworkServer.Transport.NON_BLOCKING, 1);
+        try {
+            srv.start(61457);
+        } catch (IOException ex) {
+            Assume.assumeNoException(ex);
+            return;
+        }
+
+        NetworkClient cli = new NetworkClient("JohnDoe");
+        cli.connect("localhost", 61457);
+        srv.poll();
+
+        for (int i = 0; i < 3; i++) {
+            cli.send(new EventBox("hey" + i, "it's", "cool", "guy", Collections.emptyMap()));
+        }
+
+        List<EventBox> drained = new ArrayList<>();
+        for (int i = 0; i < 100 && drained.size() < 3; i++) {
+            srv.drainTo(drained);
+            Thread.sleep(10);
+        }
+        assertEquals(3, drained.size());
+        assertEquals("hey0", drained.get(0).eventName);
+        assertEquals("hey2", drained.get(2).eventName);
+
+        srv.stop();
+    }
+
+    @Test
+    public void testDatagrams() throws Exception {
+        NetworkServer srv = new NetworkServer(NetworkServer.Transport.NON_BLOCKING, 1);
+        srv.sendAsDatagrams("PlayerMoved");
+        try {
+            srv.start(61458);
+        } catch (IOException ex) {
+            Assume.assumeNoException(ex);
+            return;
+        }
+
+        NetworkClient alice = new NetworkClient("Alice");
+        NetworkClient bob = new NetworkClient("Bob");
+        alice.sendAsDatagrams("PlayerMoved");
+        bob.sendAsDatagrams("PlayerMoved");
+        alice.connect("localhost", 61458);
+        srv.poll();
+        bob.connect("localhost", 61458);
+        srv.poll();
+
+        // replies to the clients are written when the server is flushed, once a tick in a game
+        for (int i = 0; i < 100 && !(alice.isUsingDatagrams() && bob.isUsingDatagrams()); i++) {
+            srv.flush();
+            Thread.sleep(10);
+        }
+        assertTrue(alice.isUsingDatagrams());
+        assertTrue(bob.isUsingDatagrams());
+
+        EventBox moved = new EventBox("PlayerMoved", "Alice", "Alice", "Alice", Collections.singletonMap("Slot", 3));
+        assertTrue(alice.send(moved));
+        Optional<EventBox> received = srv.poll();
+        assertEquals(Optional.of(moved), received);
+
+        srv.sendAll(received.get(), "Alice");
+        received = Optional.empty();
+        for (int i = 0; i < 100 && !received.isPresent(); i++) {
+            received = bob.poll();
+            Thread.sleep(10);
+        }
+        assertEquals(Optional.of(moved), received);
+
+        srv.stop();
+    }
+}
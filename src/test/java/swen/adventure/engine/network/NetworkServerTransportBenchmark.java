@@ -0,0 +1,109 @@
+package swen.adventure.engine.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the thread per client transport against the selector transport with many connected clients.
+ *
+ * Each invocation has every client write one CLIENT_DATA packet then polls the server until all of the
+ * events have been received, an idle load only has a tenth of the clients send anything.
+ *
+ * Run with <code>java -cp ... swen.adventure.engine.network.NetworkServerTransportBenchmark</code>, the
+ * number of open files allowed may need to be raised to connect 1000 clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NetworkServerTransportBenchmark {
+    private static final int PORT = 61460;
+
+    @Param({"BLOCKING", "NON_BLOCKING"})
+    public NetworkServer.Transport transport;
+
+    @Param({"1000"})
+    public int connections;
+
+    @Param({"idle", "chatty"})
+    public String load;
+
+    private NetworkServer server;
+    private List<SocketChannel> clients;
+    private ByteBuffer dataFrame;
+    private int senders;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new NetworkServer(transport, 2);
+        server.start(PORT);
+
+        clients = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+            writeFully(channel, ByteBuffer.wrap(
+                    new Packet(Packet.Operation.CLIENT_CONNECT, ("bot" + i).getBytes()).toBytes()));
+            clients.add(channel);
+        }
+
+        // drain the playerConnected events
+        for (int i = 0; i < connections; i++) {
+            server.poll();
+        }
+        System.out.println(transport + ": " + Thread.activeCount() + " live threads with " + connections + " clients");
+
+        EventBox box = new EventBox("playerMoved", "bot", "bot", "bot", Collections.emptyMap());
+        dataFrame = ByteBuffer.wrap(new Packet(Packet.Operation.CLIENT_DATA, box.getBytes()).toBytes());
+        senders = load.equals("idle") ? Math.max(1, connections / 10) : connections;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop();
+        for (SocketChannel channel : clients) {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        for (int i = 0; i < senders; i++) {
+            writeFully(clients.get(i), dataFrame.duplicate());
+        }
+
+        int received = 0;
+        while (received < senders) {
+            Optional<EventBox> event = server.poll();
+            if (event.isPresent()) {
+                received++;
+            }
+        }
+        return received;
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NetworkServerTransportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,118 @@
+package swen.adventure.engine.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one server tick that broadcasts a number of PlayerMoved events, comparing flushing the outbound
+ * queues once per tick with flushing after every event as the server used to write.
+ *
+ * The clients are raw channels whose incoming bytes are discarded by a background thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OutboundQueueBenchmark {
+    private static final int PORT = 61462;
+    private static final int PLAYERS = 32;
+
+    @Param({"1", "8", "32"})
+    public int eventsPerTick;
+
+    @Param({"tick", "event"})
+    public String flush;
+
+    private NetworkServer server;
+    private List<SocketChannel> clients;
+    private Thread drainer;
+    private volatile boolean draining;
+    private EventBox playerMoved;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new NetworkServer(NetworkServer.Transport.NON_BLOCKING, 2);
+        server.start(PORT);
+
+        clients = new ArrayList<>(PLAYERS);
+        for (int i = 0; i < PLAYERS; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+            ByteBuffer connect = ByteBuffer.wrap(new Packet(Packet.Operation.CLIENT_CONNECT, ("player" + i).getBytes()).toBytes());
+            while (connect.hasRemaining()) {
+                channel.write(connect);
+            }
+            channel.configureBlocking(false);
+            clients.add(channel);
+        }
+        for (int i = 0; i < PLAYERS; i++) {
+            server.poll();
+        }
+
+        draining = true;
+        drainer = new Thread(this::drain);
+        drainer.start();
+
+        playerMoved = new EventBox("PlayerMoved", "player0", "player0", "player0",
+                Collections.singletonMap("Location", new Vector3(12.5f, 0, -3.25f)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.println(server.sessionStats().get("player1"));
+        draining = false;
+        drainer.join();
+        server.stop();
+        for (SocketChannel channel : clients) {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    public void tick() {
+        boolean eachEvent = flush.equals("event");
+        for (int i = 0; i < eventsPerTick; i++) {
+            server.sendAll(playerMoved, "player0");
+            if (eachEvent) {
+                server.flush();
+            }
+        }
+        if (!eachEvent) {
+            server.flush();
+        }
+    }
+
+    private void drain() {
+        ByteBuffer discard = ByteBuffer.allocateDirect(64 * 1024);
+        while (draining) {
+            for (SocketChannel channel : clients) {
+                try {
+                    do {
+                        discard.clear();
+                    } while (channel.read(discard) > 0);
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OutboundQueueBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,206 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Collections;
+
+public class OutboundQueueTest extends TestCase {
+
+    /**
+     * Channel that takes at most a set number of bytes, like a socket whose buffer fills up
+     */
+    private static class CappedChannel implements GatheringByteChannel {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        int capacity;
+        int writes;
+
+        CappedChannel(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            writes++;
+            long total = 0;
+            for (int i = offset; i < offset + length && capacity > 0; i++) {
+                while (srcs[i].hasRemaining() && capacity > 0) {
+                    written.write(srcs[i].get());
+                    capacity--;
+                    total++;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return (int) write(new ByteBuffer[] {src});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Session that only records what it is asked to write
+     */
+    private static class RecordingSession extends Session {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        boolean closed;
+
+        RecordingSession() {
+            super(null);
+        }
+
+        @Override
+        void writeQueued() {
+            ByteBuffer batch = outbound().takeAll(ByteBuffer.allocate(0));
+            written.write(batch.array(), 0, batch.limit());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return !closed;
+        }
+    }
+
+    private static ByteBuffer frame(int length, int value) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) value;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Test
+    public void testOfferPastHighWaterMark() {
+        OutboundQueue queue = new OutboundQueue(10);
+        assertTrue(queue.offer(frame(8, 1)));
+        assertTrue(queue.offer(frame(8, 2)));
+        assertFalse(queue.offer(frame(1, 3)));
+        assertEquals(2, queue.stats().queuedFrames);
+        assertEquals(16, queue.stats().queuedBytes);
+    }
+
+    @Test
+    public void testLargeFrameAcceptedBelowMark() {
+        OutboundQueue queue = new OutboundQueue(10);
+        assertTrue(queue.offer(frame(100, 1)));
+    }
+
+    @Test
+    public void testWriteToGathersFrames() throws IOException {
+        OutboundQueue queue = new OutboundQueue(Integer.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            queue.add(frame(4, i));
+        }
+
+        CappedChannel channel = new CappedChannel(Integer.MAX_VALUE);
+        assertTrue(queue.writeTo(channel));
+        assertEquals(1, channel.writes);
+        assertEquals(20, channel.written.size());
+
+        SessionStats stats = queue.stats();
+        assertEquals(0, stats.queuedFrames);
+        assertEquals(20, stats.lastFlushBytes);
+        assertEquals(1, stats.flushes);
+    }
+
+    @Test
+    public void testWriteToKeepsRemainderWhenFull() throws IOException {
+        OutboundQueue queue = new OutboundQueue(Integer.MAX_VALUE);
+        queue.add(frame(5, 1));
+        queue.add(frame(5, 2));
+
+        CappedChannel channel = new CappedChannel(7);
+        assertFalse(queue.writeTo(channel));
+        assertEquals(1, queue.stats().queuedFrames);
+        assertEquals(3, queue.stats().queuedBytes);
+
+        channel.capacity = Integer.MAX_VALUE;
+        assertTrue(queue.writeTo(channel));
+        assertEquals(10, queue.stats().bytesSent);
+        assertEquals(2, queue.stats().flushes);
+        byte[] written = channel.written.toByteArray();
+        assertEquals(1, written[4]);
+        assertEquals(2, written[5]);
+        assertEquals(2, written[9]);
+    }
+
+    @Test
+    public void testTakeAll() {
+        OutboundQueue queue = new OutboundQueue(Integer.MAX_VALUE);
+        queue.add(frame(3, 1));
+        queue.add(frame(2, 2));
+
+        ByteBuffer batch = queue.takeAll(ByteBuffer.allocate(1));
+        assertEquals(5, batch.remaining());
+        assertEquals(1, batch.get(2));
+        assertEquals(2, batch.get(3));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testSendsHeldUntilFlush() throws IOException {
+        RecordingSession session = new RecordingSession();
+        session.coalesceWrites(Integer.MAX_VALUE, SlowClientPolicy.DISCONNECT);
+
+        session.send(new Packet(Packet.Operation.CLIENT_KICK));
+        session.send(new Packet(Packet.Operation.CLIENT_KICK));
+        assertEquals(0, session.written.size());
+
+        session.flush();
+        assertEquals(2 * Packet.HEADER_LENGTH, session.written.size());
+    }
+
+    @Test
+    public void testSlowClientDisconnected() throws IOException {
+        RecordingSession session = new RecordingSession();
+        session.coalesceWrites(10, SlowClientPolicy.DISCONNECT);
+
+        session.send(new Packet(Packet.Operation.SNAPSHOT, new byte[20]));
+        try {
+            session.send(new Packet(Packet.Operation.CLIENT_KICK));
+            fail();
+        } catch (IOException ex) {
+        }
+        assertTrue(session.closed);
+    }
+
+    @Test
+    public void testSlowClientDropsBroadcasts() throws IOException {
+        RecordingSession session = new RecordingSession();
+        session.coalesceWrites(10, SlowClientPolicy.DROP);
+
+        session.send(new Packet(Packet.Operation.SNAPSHOT, new byte[20]));
+        EventBox box = new EventBox("hey", "it's", "cool", "guy", Collections.emptyMap());
+        session.sendBroadcast(new BroadcastFrame(Packet.Operation.SERVER_DATA, box));
+        session.send(new Packet(Packet.Operation.CLIENT_KICK));
+
+        SessionStats stats = session.stats();
+        assertFalse(session.closed);
+        assertEquals(1, stats.droppedFrames);
+        assertEquals(2, stats.queuedFrames);
+    }
+}
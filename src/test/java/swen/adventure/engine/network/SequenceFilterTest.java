@@ -0,0 +1,32 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class SequenceFilterTest extends TestCase {
+
+    @Test
+    public void testStaleDropped() {
+        SequenceFilter filter = new SequenceFilter();
+        assertTrue(filter.accept("PlayerMoved/alice", 5));
+        assertFalse(filter.accept("PlayerMoved/alice", 3));
+        assertFalse(filter.accept("PlayerMoved/alice", 5));
+        assertTrue(filter.accept("PlayerMoved/alice", 6));
+    }
+
+    @Test
+    public void testKeysIndependent() {
+        SequenceFilter filter = new SequenceFilter();
+        assertTrue(filter.accept("PlayerMoved/alice", 10));
+        assertTrue(filter.accept("PlayerMoved/bob", 4));
+        assertFalse(filter.accept("PlayerMoved/alice", 9));
+    }
+
+    @Test
+    public void testWrapAround() {
+        SequenceFilter filter = new SequenceFilter();
+        assertTrue(filter.accept("PlayerMoved/alice", Integer.MAX_VALUE));
+        assertTrue(filter.accept("PlayerMoved/alice", Integer.MIN_VALUE));
+        assertFalse(filter.accept("PlayerMoved/alice", Integer.MAX_VALUE - 1));
+    }
+}
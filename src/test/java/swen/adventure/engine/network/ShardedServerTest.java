@@ -0,0 +1,124 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public class ShardedServerTest extends TestCase {
+
+    @Test
+    public void testClientsSplitBetweenShards() throws Exception {
+        ShardedServer sharded = new ShardedServer(new NetworkServer(NetworkServer.Transport.LOOPBACK, 1), 2,
+                ShardedServer.LEAST_LOADED);
+        Server<String, EventBox> first = sharded.shard(0);
+        Server<String, EventBox> second = sharded.shard(1);
+        first.start(61476);
+        second.start(61476);
+
+        List<NetworkClient> clients = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            NetworkClient cli = new NetworkClient("Bot" + i);
+            cli.connect(LoopbackNetwork.HOST, 61476);
+            clients.add(cli);
+        }
+
+        Set<String> firstIds = connectedIds(first, second, 4);
+        assertEquals(2, firstIds.size());
+        assertEquals(2, first.getClientIds().size());
+        assertEquals(2, second.getClientIds().size());
+        assertTrue(firstIds.containsAll(first.getClientIds()));
+
+        EventBox box = new EventBox("hey", "it's", "cool", "guy", Collections.emptyMap());
+        first.sendAll(box);
+        first.flush();
+        Thread.sleep(200);
+        for (int i = 0; i < clients.size(); i++) {
+            Optional<EventBox> received = clients.get(i).poll();
+            assertEquals("Bot" + i, firstIds.contains("Bot" + i), received.isPresent());
+        }
+
+        assertFalse(second.send(first.getClientIds().get(0), box));
+
+        first.stop();
+        assertFalse(first.isRunning());
+        assertTrue(second.isRunning());
+        second.stop();
+        assertFalse(second.isRunning());
+    }
+
+    @Test
+    public void testEventsRoutedByConnectionNotByClaimedSender() throws Exception {
+        ShardedServer sharded = new ShardedServer(new NetworkServer(NetworkServer.Transport.LOOPBACK, 1), 2,
+                ShardedServer.LEAST_LOADED);
+        Server<String, EventBox> first = sharded.shard(0);
+        Server<String, EventBox> second = sharded.shard(1);
+        first.start(61477);
+        second.start(61477);
+
+        NetworkClient alice = new NetworkClient("Alice");
+        alice.connect(LoopbackNetwork.HOST, 61477);
+        NetworkClient bob = new NetworkClient("Bob");
+        bob.connect(LoopbackNetwork.HOST, 61477);
+
+        Set<String> firstIds = connectedIds(first, second, 2);
+        Server<String, EventBox> aliceShard = firstIds.contains("Alice") ? first : second;
+        Server<String, EventBox> bobShard = aliceShard == first ? second : first;
+
+        // Alice claims to be Bob, whose world is on the other shard
+        alice.send(new EventBox("PlayerMoved", "BobTransform", "BobTransform", "Bob", Collections.emptyMap()));
+
+        List<EventBox> received = new ArrayList<>();
+        for (int i = 0; i < 100 && received.isEmpty(); i++) {
+            aliceShard.drainTo(received);
+            Thread.sleep(10);
+        }
+        assertEquals(1, received.size());
+        assertEquals("PlayerMoved", received.get(0).eventName);
+        assertEquals("Alice", received.get(0).from);
+
+        received.clear();
+        bobShard.drainTo(received);
+        assertTrue(received.isEmpty());
+
+        alice.disconnect();
+        bob.disconnect();
+        first.stop();
+        second.stop();
+    }
+
+    /**
+     * Wait for the playerConnected events and check each client is only on one shard
+     *
+     * @return ids of the clients on the first shard
+     */
+    private static Set<String> connectedIds(Server<String, EventBox> first, Server<String, EventBox> second,
+                                            int clients) throws InterruptedException {
+        Set<String> firstIds = new HashSet<>();
+        Set<String> secondIds = new HashSet<>();
+        List<EventBox> events = new ArrayList<>();
+        for (int i = 0; i < 200 && firstIds.size() + secondIds.size() < clients; i++) {
+            first.drainTo(events);
+            for (EventBox event : events) {
+                assertEquals("playerConnected", event.eventName);
+                firstIds.add(event.from);
+            }
+            events.clear();
+            second.drainTo(events);
+            for (EventBox event : events) {
+                assertEquals("playerConnected", event.eventName);
+                secondIds.add(event.from);
+            }
+            events.clear();
+            Thread.sleep(10);
+        }
+        assertEquals(clients, firstIds.size() + secondIds.size());
+        assertTrue(Collections.disjoint(firstIds, secondIds));
+        return firstIds;
+    }
+}
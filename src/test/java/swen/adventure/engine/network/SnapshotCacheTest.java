@@ -0,0 +1,96 @@
+package swen.adventure.engine.network;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import swen.adventure.engine.Utilities;
+import swen.adventure.engine.datastorage.SceneGraphDelta;
+import swen.adventure.engine.datastorage.SceneGraphSerializer;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.scenegraph.TransformNode;
+import swen.adventure.game.scenenodes.Chest;
+import swen.adventure.game.scenenodes.Container;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class SnapshotCacheTest extends TestCase {
+
+    private static TransformNode createLevel() {
+        TransformNode root = new TransformNode("root", Vector3.zero, new Quaternion(), Vector3.one);
+        TransformNode room = new TransformNode("room", root, false, new Vector3(1f, 0f, 0f), new Quaternion(), Vector3.one);
+        new TransformNode("door", room, true, new Vector3(0f, 0f, 3f), new Quaternion(), Vector3.one);
+        new Container("chest", room, 5);
+        return root;
+    }
+
+    @Test
+    public void testReusedUntilStateChanges() {
+        TransformNode root = createLevel();
+        SnapshotCache cache = new SnapshotCache();
+
+        byte[] first = cache.snapshot(root, null);
+        assertSame(first, cache.snapshot(root, null));
+        assertEquals(1, cache.misses.get());
+        assertEquals(1, cache.hits.get());
+
+        ((TransformNode) root.nodeWithID("door").get()).setTranslation(new Vector3(9f, 9f, 9f));
+        byte[] second = cache.snapshot(root, null);
+        assertNotSame(first, second);
+        assertTrue(new String(second, StandardCharsets.UTF_8).contains("9.0, 9.0, 9.0"));
+        assertSame(second, cache.snapshot(root, null));
+    }
+
+    @Test
+    public void testOpeningChestChangesState() {
+        Utilities.isHeadlessMode = true;
+        TransformNode root = createLevel();
+        Chest chest = new Chest("lockbox", (TransformNode) root.nodeWithID("room").get());
+        SnapshotCache cache = new SnapshotCache();
+
+        byte[] closed = cache.snapshot(root, null);
+        chest.open(true, null);
+        byte[] open = cache.snapshot(root, null);
+        assertNotSame(closed, open);
+        assertEquals(2, cache.misses.get());
+        assertTrue(new String(open, StandardCharsets.UTF_8).contains("isOpen=\"true\""));
+
+        chest.close(true, null);
+        assertNotSame(open, cache.snapshot(root, null));
+        assertEquals(3, cache.misses.get());
+    }
+
+    @Test
+    public void testNewNodeChangesState() {
+        TransformNode root = createLevel();
+        long version = root.stateVersion();
+        new Container("bag", root, 3);
+        assertTrue(root.stateVersion() != version);
+    }
+
+    @Test
+    public void testBaselineIsPartOfTheKey() {
+        TransformNode root = createLevel();
+        SceneGraphDelta baseline = new SceneGraphDelta(root);
+        SnapshotCache cache = new SnapshotCache();
+
+        byte[] full = cache.snapshot(root, null);
+        byte[] delta = cache.snapshot(root, baseline);
+        assertNotSame(full, delta);
+        assertSame(delta, cache.snapshot(root, baseline));
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        TransformNode root = createLevel();
+        SnapshotCache cache = new SnapshotCache();
+        cache.setCompress(true);
+
+        byte[] compressed = cache.snapshot(root, null);
+        assertEquals(SceneGraphSerializer.serializeToString(root),
+                new String(NetworkClient.decompress(compressed), StandardCharsets.UTF_8));
+
+        byte[] xml = "<root/>".getBytes(StandardCharsets.UTF_8);
+        assertSame(xml, NetworkClient.decompress(xml));
+    }
+}
@@ -0,0 +1,84 @@
+package swen.adventure.game;
+
+import org.junit.Test;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class InputReconcilerTests {
+
+    private static Vector3 at(float x) {
+        return new Vector3(x, 0, 0);
+    }
+
+    @Test
+    public void testSequencesIncrease() {
+        InputReconciler inputs = new InputReconciler(8, 0.5f);
+        assertEquals(1, inputs.record(at(1), false));
+        assertEquals(2, inputs.record(at(2), false));
+        assertEquals(2, inputs.pending());
+    }
+
+    @Test
+    public void testNoCorrectionWhenServerAgrees() {
+        InputReconciler inputs = new InputReconciler(8, 0.5f);
+        inputs.record(at(1), false);
+        int second = inputs.record(at(2), false);
+        inputs.record(at(3), false);
+
+        assertNull(inputs.reconcile(second, at(2.2f), at(3)));
+        assertEquals(1, inputs.pending());
+    }
+
+    @Test
+    public void testDriftReplaysUnacknowledgedMoves() {
+        InputReconciler inputs = new InputReconciler(8, 0.5f);
+        int first = inputs.record(at(1), false);
+        int second = inputs.record(at(2), false);
+        inputs.record(at(3), false);
+
+        // the server has the player 10 further on after the first move, the two moves since are kept
+        Vector3 corrected = inputs.reconcile(first, at(11), at(3));
+        assertEquals(13f, corrected.x, 1e-4f);
+
+        // the moves still waiting were shifted too, so the server agreeing with the correction changes nothing
+        assertNull(inputs.reconcile(second, at(12), at(13)));
+    }
+
+    @Test
+    public void testRepeatedAcknowledgementIgnored() {
+        InputReconciler inputs = new InputReconciler(8, 0.5f);
+        int first = inputs.record(at(1), false);
+        assertNull(inputs.reconcile(first, at(1), at(1)));
+        assertNull(inputs.reconcile(first, at(50), at(1)));
+    }
+
+    @Test
+    public void testPendingInteractions() {
+        InputReconciler inputs = new InputReconciler(8, 0.5f);
+        int move = inputs.record(at(1), false);
+        int interaction = inputs.record(at(1), true);
+        inputs.record(at(2), false);
+
+        inputs.reconcile(move, at(1), at(2));
+        assertTrue(inputs.hasPendingInteractions());
+        inputs.reconcile(interaction, at(1), at(2));
+        assertFalse(inputs.hasPendingInteractions());
+    }
+
+    @Test
+    public void testOldestForgottenWhenFull() {
+        InputReconciler inputs = new InputReconciler(2, 0.5f);
+        int first = inputs.record(at(1), false);
+        inputs.record(at(2), false);
+        int third = inputs.record(at(3), false);
+        assertEquals(2, inputs.pending());
+
+        assertNull(inputs.reconcile(first, at(100), at(3)));
+        assertEquals(2, inputs.pending());
+        assertEquals(103f, inputs.reconcile(third, at(103), at(3)).x, 1e-4f);
+    }
+}
@@ -0,0 +1,102 @@
+package swen.adventure.game;
+
+import org.junit.Before;
+import org.junit.Test;
+import swen.adventure.engine.Utilities;
+import swen.adventure.engine.network.EventBox;
+import swen.adventure.engine.rendering.maths.BoundingBox;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+import swen.adventure.engine.scenegraph.TransformNode;
+import swen.adventure.game.scenenodes.Player;
+import swen.adventure.game.scenenodes.Region;
+
+import java.util.*;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class InterestManagerTests {
+
+    private TransformNode root;
+    private InterestManager interest;
+    private List<String> clients;
+
+    @Before
+    public void setup() {
+        Utilities.isHeadlessMode = true;
+        root = new TransformNode("root", Vector3.zero, new Quaternion(), Vector3.one);
+        interest = new InterestManager(root, 100);
+        clients = Arrays.asList("alice", "bob", "carol");
+
+        addPlayer("alice", new Vector3(0, 0, 0));
+        addPlayer("bob", new Vector3(50, 0, 0));
+        addPlayer("carol", new Vector3(1000, 0, 0));
+    }
+
+    private Player addPlayer(String id, Vector3 location) {
+        TransformNode transform = new TransformNode(id + "Transform", root, true, location, new Quaternion(), Vector3.one);
+        return new Player(id, transform);
+    }
+
+    private static EventBox moved(String player) {
+        return new EventBox("PlayerMoved", player, player, player, new HashMap<>());
+    }
+
+    private List<String> interestedIn(EventBox event) {
+        List<String> interested = new ArrayList<>();
+        interest.interestedClients(event, clients, interested);
+        return interested;
+    }
+
+    @Test
+    public void testOnlyNearbyClientsInterested() {
+        assertEquals(Collections.singletonList("bob"), interestedIn(moved("alice")));
+        assertEquals(Collections.emptyList(), interestedIn(moved("carol")));
+    }
+
+    @Test
+    public void testGlobalEvents() {
+        interest.markGlobal("InteractionPerformed");
+        assertTrue(interest.isGlobal(new EventBox("InteractionPerformed", "chest", "chestMesh", "carol", new HashMap<>())));
+        assertFalse(interest.isGlobal(moved("carol")));
+    }
+
+    @Test
+    public void testSharedRegion() {
+        new Region("hall", new BoundingBox(new Vector3(-10, -10, -10), new Vector3(2000, 10, 10)), root);
+        for (String id : clients) {
+            Player player = (Player) root.nodeWithID(id).get();
+            player.eventPlayerMoved.trigger(player, Collections.emptyMap());
+        }
+
+        List<String> interested = interestedIn(moved("carol"));
+        assertEquals(new HashSet<>(Arrays.asList("alice", "bob")), new HashSet<>(interested));
+    }
+
+    @Test
+    public void testPlayerComingIntoRangeIsSent() {
+        List<String> sent = new ArrayList<>();
+        interest.update(clients, (client, event) -> sent.add(client + ":" + event.from));
+        assertEquals(new HashSet<>(Arrays.asList("alice:bob", "bob:alice")), new HashSet<>(sent));
+
+        sent.clear();
+        interest.update(clients, (client, event) -> sent.add(client + ":" + event.from));
+        assertEquals(Collections.emptyList(), sent);
+
+        Vector3 near = new Vector3(960, 0, 0);
+        ((Player) root.nodeWithID("bob").get()).parent().get().setTranslation(near);
+        List<EventBox> events = new ArrayList<>();
+        interest.update(clients, (client, event) -> {
+            sent.add(client + ":" + event.from);
+            events.add(event);
+        });
+        assertEquals(new HashSet<>(Arrays.asList("carol:bob", "bob:carol")), new HashSet<>(sent));
+        for (EventBox event : events) {
+            if (event.from.equals("bob")) {
+                assertEquals(near, event.eventData.get(EventDataKeys.Location));
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package swen.adventure.game;
+
+import swen.adventure.Settings;
+import swen.adventure.engine.TickLoop;
+import swen.adventure.engine.Utilities;
+import swen.adventure.engine.metrics.Histogram;
+import swen.adventure.engine.network.EventBox;
+import swen.adventure.engine.network.LoopbackNetwork;
+import swen.adventure.engine.network.NetworkServer;
+import swen.adventure.engine.network.Server;
+import swen.adventure.engine.network.SessionStats;
+import swen.adventure.engine.scenegraph.TransformNode;
+import swen.adventure.game.scenenodes.Chest;
+import swen.adventure.game.scenenodes.Door;
+import swen.adventure.game.scenenodes.Item;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test for the multiplayer server. Starts a headless server on this machine and connects a number of
+ * {@link LoadTestBot}s to it over loopback, lets them play for a while then reports how the server coped:
+ * how long its ticks took, how long events took to get from one bot to the others, how many bytes per second
+ * it sent each client and how much CPU its threads used.
+ *
+ * Usage: <code>LoadTest [bots] [seconds] [steps per second] [port] [map]</code>, or
+ * <code>gradle loadTest -Pbots=64 -Pseconds=60</code>. Nothing is rendered so no GL context is needed.
+ *
+ * With <code>-Dswen.adventure.LoopbackServer=true</code> (<code>-Ploopback</code>) the bots connect through the
+ * in-memory {@link LoopbackNetwork} instead of TCP, so the figures leave out the kernel's network stack.
+ *
+ * The server's and clients' own logging goes to a file so it does not bury the report. Any save file the
+ * server writes for the map is put back the way it was afterwards.
+ */
+public class LoadTest {
+
+    private static final String TickReportProperty = "swen.adventure.ServerTickReportSeconds";
+    private static final long WarmUpMillis = 2000;
+    private static final long ConnectTimeoutMillis = 30000;
+    private static final long ReceiveIdleNanos = TimeUnit.MICROSECONDS.toNanos(200);
+
+    // names of the threads the server runs on, the thread running the ticks is named by this class
+    // the loopback delivery thread decodes for the bots as well, so it is counted as the server's
+    private static final String[] ServerThreadPrefixes = {"MultiPlayerServer", "NetworkServer", "SocketSessionWriter",
+            "LoopbackNetwork", "EventJournal"};
+
+    public static void main(String[] args) throws Exception {
+        int botCount = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int stepsPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 61490;
+        String map = args.length > 4 ? args[4] : "SceneGraph";
+
+        // the tick durations are reset after each periodic report, keep them for the whole run instead
+        if (System.getProperty(TickReportProperty) == null) {
+            System.setProperty(TickReportProperty, String.valueOf(24 * 60 * 60));
+        }
+        Utilities.isHeadlessMode = true;
+
+        PrintStream report = System.out;
+        File log = File.createTempFile("loadtest", ".log");
+        System.setOut(new PrintStream(new FileOutputStream(log), true));
+
+        File[] saveFiles = {
+                new File(Utilities.pathForResource(map + "-savefile", "xml")),
+                new File(Utilities.pathForResource(map + "-savefile", "journal"))
+        };
+        byte[][] originalSaves = new byte[saveFiles.length][];
+        for (int i = 0; i < saveFiles.length; i++) {
+            originalSaves[i] = saveFiles[i].exists() ? Files.readAllBytes(saveFiles[i].toPath()) : null;
+        }
+        try {
+            new LoadTest(botCount, seconds, stepsPerSecond, port, map).run(report, log);
+        } finally {
+            System.setOut(report);
+            for (int i = 0; i < saveFiles.length; i++) {
+                if (originalSaves[i] != null) {
+                    Files.write(saveFiles[i].toPath(), originalSaves[i]);
+                } else if (saveFiles[i].exists() && !saveFiles[i].delete()) {
+                    System.err.println("Could not remove the save file left by the load test: " + saveFiles[i]);
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    private final int botCount;
+    private final int seconds;
+    private final int stepsPerSecond;
+    private final int port;
+    private final String map;
+    private final Histogram roundTrips = new Histogram();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private LoadTest(int botCount, int seconds, int stepsPerSecond, int port, String map) {
+        this.botCount = botCount;
+        this.seconds = seconds;
+        this.stepsPerSecond = stepsPerSecond;
+        this.port = port;
+        this.map = map;
+    }
+
+    private void run(PrintStream report, File log) throws IOException, InterruptedException {
+        report.println(String.format("Load test: %d bots taking %d steps/s for %ds on %s, log in %s",
+                botCount, stepsPerSecond, seconds, map, log));
+
+        MultiPlayerServer multiPlayerServer = new MultiPlayerServer(port, map);
+        Thread serverThread = new Thread(multiPlayerServer, "MultiPlayerServer");
+        serverThread.start();
+        Server<String, EventBox> server = multiPlayerServer.server();
+        TickLoop ticker = multiPlayerServer.tickLoop();
+
+        List<LoadTestBot> bots = createBots(multiPlayerServer.sceneGraph());
+        for (LoadTestBot bot : bots) {
+            bot.connect(Settings.LoopbackServer ? LoopbackNetwork.HOST : "localhost", port);
+        }
+        long deadline = System.currentTimeMillis() + ConnectTimeoutMillis;
+        while (server.getClientIds().size() < botCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        if (server.getClientIds().size() < botCount) {
+            report.println("Only " + server.getClientIds().size() + " of " + botCount + " bots connected");
+        }
+
+        AtomicInteger botThreadCount = new AtomicInteger();
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                runnable -> new Thread(runnable, "LoadTestBot#" + botThreadCount.getAndIncrement()));
+        long periodMicros = TimeUnit.SECONDS.toMicros(1) / stepsPerSecond;
+        for (int i = 0; i < bots.size(); i++) {
+            LoadTestBot bot = bots.get(i);
+            // spread the bots over the period so they do not all send at once
+            executor.scheduleAtFixedRate(() -> {
+                try {
+                    bot.step();
+                } catch (RuntimeException ex) {
+                    // the bot was disconnected between checking and sending, it has nothing more to do
+                }
+            }, periodMicros * i / bots.size(), periodMicros, TimeUnit.MICROSECONDS);
+        }
+
+        // events are read as soon as they arrive, so the round trips are not held up by the bots' steps
+        Thread receiver = new Thread(() -> {
+            while (!executor.isShutdown()) {
+                int received = 0;
+                for (LoadTestBot bot : bots) {
+                    try {
+                        received += bot.receive();
+                    } catch (RuntimeException ex) {
+                        // disconnected, as above
+                    }
+                }
+                if (received == 0) {
+                    LockSupport.parkNanos(ReceiveIdleNanos);
+                }
+            }
+        }, "LoadTestReceiver");
+        receiver.start();
+
+        Thread.sleep(WarmUpMillis);
+
+        // measure from here on, leaving out connecting and the snapshots sent then
+        ticker.durations().reset();
+        roundTrips.reset();
+        long ticksBefore = ticker.ticks();
+        long overrunsBefore = ticker.overruns();
+        Map<String, Long> bytesBefore = bytesSent(server);
+        long receivedBefore = eventsReceived(bots);
+        Map<Long, Long> cpuBefore = serverCpuNanos();
+        long start = System.nanoTime();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+        long elapsed = System.nanoTime() - start;
+        Map<Long, Long> cpuAfter = serverCpuNanos();
+        Map<String, Long> bytesAfter = bytesSent(server);
+        long receivedAfter = eventsReceived(bots);
+        long ticks = ticker.ticks() - ticksBefore;
+        long overruns = ticker.overruns() - overrunsBefore;
+        Histogram durations = ticker.durations();
+
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        receiver.join();
+        for (LoadTestBot bot : bots) {
+            bot.disconnect();
+        }
+        multiPlayerServer.stop();
+        serverThread.join(5000);
+
+        double elapsedSeconds = elapsed / 1e9;
+        report.println(String.format("Server tick: p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms overruns=%d/%d",
+                durations.percentile(50) / 1e6, durations.percentile(95) / 1e6, durations.percentile(99) / 1e6,
+                durations.max() / 1e6, overruns, ticks));
+        report.println(String.format("Round trip:  p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms over %d events",
+                roundTrips.percentile(50) / 1e6, roundTrips.percentile(95) / 1e6, roundTrips.percentile(99) / 1e6,
+                roundTrips.max() / 1e6, roundTrips.count()));
+        report.println(String.format("Received:    %.0f events/s per bot",
+                (receivedAfter - receivedBefore) / elapsedSeconds / Math.max(1, bots.size())));
+        reportBytes(report, bytesBefore, bytesAfter, elapsedSeconds);
+        reportCpu(report, cpuBefore, cpuAfter, elapsed);
+    }
+
+    private List<LoadTestBot> createBots(TransformNode sceneGraph) {
+        List<LoadTestBot.Target> doors = new ArrayList<>();
+        for (Door door : sceneGraph.allNodesOfType(Door.class)) {
+            doors.add(new LoadTestBot.Target(door.id, door.id + "DoorMesh"));
+        }
+        List<LoadTestBot.Target> chests = new ArrayList<>();
+        for (Chest chest : sceneGraph.allNodesOfType(Chest.class)) {
+            chests.add(new LoadTestBot.Target(chest.id, chest.id + "ChestMesh"));
+        }
+        List<LoadTestBot.Target> items = new ArrayList<>();
+        for (Item item : sceneGraph.allNodesOfType(Item.class)) {
+            item.mesh().ifPresent(mesh -> items.add(new LoadTestBot.Target(item.id, mesh.id)));
+        }
+
+        // about one action every two seconds
+        int stepsPerAction = 2 * stepsPerSecond;
+        List<LoadTestBot> bots = new ArrayList<>(botCount);
+        for (int i = 0; i < botCount; i++) {
+            bots.add(new LoadTestBot("bot" + i, doors, items, chests, stepsPerAction, roundTrips, i));
+        }
+        return bots;
+    }
+
+    private static long eventsReceived(List<LoadTestBot> bots) {
+        long received = 0;
+        for (LoadTestBot bot : bots) {
+            received += bot.eventsReceived();
+        }
+        return received;
+    }
+
+    private static Map<String, Long> bytesSent(Server<String, EventBox> server) {
+        Map<String, Long> bytes = new HashMap<>();
+        if (server instanceof NetworkServer) {
+            for (Map.Entry<String, SessionStats> client : ((NetworkServer) server).sessionStats().entrySet()) {
+                bytes.put(client.getKey(), client.getValue().bytesSent);
+            }
+        }
+        return bytes;
+    }
+
+    private static void reportBytes(PrintStream report, Map<String, Long> before, Map<String, Long> after, double elapsedSeconds) {
+        long total = 0;
+        long most = 0;
+        for (Map.Entry<String, Long> client : after.entrySet()) {
+            long sent = client.getValue() - before.getOrDefault(client.getKey(), 0L);
+            total += sent;
+            most = Math.max(most, sent);
+        }
+        report.println(String.format("Sent:        mean=%.1fKB/s max=%.1fKB/s per client, %.1fKB/s in total",
+                total / elapsedSeconds / 1024 / Math.max(1, after.size()), most / elapsedSeconds / 1024,
+                total / elapsedSeconds / 1024));
+    }
+
+    /**
+     * @return CPU time used so far by each of the server's threads, by thread id
+     */
+    private Map<Long, Long> serverCpuNanos() {
+        Map<Long, Long> cpu = new HashMap<>();
+        if (!threads.isThreadCpuTimeSupported()) {
+            return cpu;
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            for (String prefix : ServerThreadPrefixes) {
+                if (thread.getName().startsWith(prefix)) {
+                    long nanos = threads.getThreadCpuTime(thread.getId());
+                    if (nanos >= 0) {
+                        cpu.put(thread.getId(), nanos);
+                    }
+                    break;
+                }
+            }
+        }
+        return cpu;
+    }
+
+    private void reportCpu(PrintStream report, Map<Long, Long> before, Map<Long, Long> after, long elapsedNanos) {
+        if (!threads.isThreadCpuTimeSupported()) {
+            report.println("Server CPU:  not measurable on this JVM");
+            return;
+        }
+        long used = 0;
+        for (Map.Entry<Long, Long> thread : after.entrySet()) {
+            used += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        // threads that finished during the run are not counted
+        report.println(String.format("Server CPU:  %.1f%% of one core over %d threads",
+                100.0 * used / elapsedNanos, after.size()));
+    }
+}
@@ -0,0 +1,196 @@
+package swen.adventure.game;
+
+import swen.adventure.engine.metrics.Histogram;
+import swen.adventure.engine.network.EventBox;
+import swen.adventure.engine.network.NetworkClient;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * A headless player for the load test. Each step it walks a little further around a circle near the spawn point,
+ * and every so often it moves on to the next action of its script: open a door then close it again, pick up an
+ * item, then open a chest, drop the item in and close the chest.
+ *
+ * Every event it sends carries the time it was sent, so the bots that receive it from the server can record how
+ * long it took to come back through.
+ */
+class LoadTestBot {
+    /**
+     * Key of the event data that holds the <code>System.nanoTime</code> the event was sent at
+     */
+    static final String SentNanos = "LoadTestSentNanos";
+
+    /**
+     * An object the bots can interact with, the game object and the mesh a player would be looking at
+     */
+    static class Target {
+        final String gameObjectId;
+        final String meshId;
+
+        Target(String gameObjectId, String meshId) {
+            this.gameObjectId = gameObjectId;
+            this.meshId = meshId;
+        }
+    }
+
+    private static final float PlayerHeight = 60; // the height players are spawned at
+    private static final float StepRadians = 0.05f;
+
+    private final String id;
+    private final NetworkClient client;
+    private final List<Target> doors;
+    private final List<Target> items;
+    private final List<Target> chests;
+    private final int stepsPerAction;
+    private final Histogram roundTrips;
+    private final Random random;
+
+    private final float radius;
+    private float angle;
+    private long steps;
+    private int action;
+    private Target door;
+    private Target chest;
+
+    private volatile long eventsReceived;
+
+    /**
+     * @param id network id of the bot's player
+     * @param doors doors the bot may open and close
+     * @param items items the bot may pick up
+     * @param chests chests the bot may drop the items in
+     * @param stepsPerAction number of steps the bot walks between the actions of its script
+     * @param roundTrips histogram the round trip times of the events the bot receives are recorded in
+     * @param seed seed for choosing where the bot walks and what it interacts with
+     */
+    LoadTestBot(String id, List<Target> doors, List<Target> items, List<Target> chests, int stepsPerAction,
+                Histogram roundTrips, long seed) {
+        this.id = id;
+        this.client = new NetworkClient(id);
+        this.doors = doors;
+        this.items = items;
+        this.chests = chests;
+        this.stepsPerAction = Math.max(1, stepsPerAction);
+        this.roundTrips = roundTrips;
+        this.random = new Random(seed);
+        this.radius = 20 + random.nextFloat() * 130;
+        this.angle = random.nextFloat() * (float) (2 * Math.PI);
+        this.action = random.nextInt(6);
+    }
+
+    void connect(String host, int port) throws IOException {
+        client.connect(host, port);
+    }
+
+    void disconnect() {
+        if (client.isConnected()) {
+            client.disconnect();
+        }
+    }
+
+    /**
+     * @return number of events the bot has received from the server
+     */
+    long eventsReceived() {
+        return eventsReceived;
+    }
+
+    /**
+     * Take the next step and the next action of the script when it is due. Must not be called concurrently
+     * for the same bot.
+     */
+    void step() {
+        if (!client.isConnected()) {
+            return;
+        }
+
+        walk();
+        if (++steps % stepsPerAction == 0) {
+            act();
+        }
+    }
+
+    /**
+     * Read everything the server has sent, recording the round trip times. Must not be called concurrently
+     * for the same bot, but can be alongside <code>step</code>.
+     *
+     * @return number of events read
+     */
+    int receive() {
+        if (!client.isConnected()) {
+            return 0;
+        }
+
+        int received = 0;
+        Optional<EventBox> box;
+        while ((box = client.poll()).isPresent()) {
+            received++;
+            Object sent = box.get().eventData.get(SentNanos);
+            if (sent instanceof Long) {
+                roundTrips.record(System.nanoTime() - (Long) sent);
+            }
+        }
+        eventsReceived += received;
+        return received;
+    }
+
+    private void walk() {
+        angle += StepRadians;
+        Map<String, Object> data = new HashMap<>();
+        data.put(EventDataKeys.Location, new Vector3(radius * (float) Math.cos(angle), PlayerHeight, radius * (float) Math.sin(angle)));
+        data.put(EventDataKeys.Quaternion, Quaternion.makeWithAngleAndAxis(-angle, 0, 1, 0));
+        send("PlayerMoved", id, id, data);
+    }
+
+    private void act() {
+        switch (action) {
+            case 0:
+                door = pick(doors);
+                interact(door, InteractionType.Open);
+                break;
+            case 1:
+                interact(door, InteractionType.Close);
+                break;
+            case 2:
+                interact(pick(items), InteractionType.PickUp);
+                break;
+            case 3:
+                chest = pick(chests);
+                interact(chest, InteractionType.Open);
+                break;
+            case 4:
+                // drops whatever is in the selected slot, nothing if another bot took the item first
+                interact(chest, InteractionType.PlaceIn);
+                break;
+            case 5:
+                interact(chest, InteractionType.Close);
+                break;
+        }
+        action = (action + 1) % 6;
+    }
+
+    private Target pick(List<Target> targets) {
+        return targets.isEmpty() ? null : targets.get(random.nextInt(targets.size()));
+    }
+
+    private void interact(Target target, InteractionType interactionType) {
+        if (target == null) {
+            return;
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put(EventDataKeys.InteractionType, interactionType);
+        send("InteractionPerformed", target.gameObjectId, target.meshId, data);
+    }
+
+    private void send(String eventName, String sourceId, String targetId, Map<String, Object> data) {
+        data.put(SentNanos, System.nanoTime());
+        client.send(new EventBox(eventName, sourceId, targetId, id, data));
+    }
+}
@@ -0,0 +1,79 @@
+package swen.adventure.game;
+
+import org.junit.Before;
+import org.junit.Test;
+import swen.adventure.engine.network.EventBox;
+import swen.adventure.engine.rendering.maths.Quaternion;
+import swen.adventure.engine.rendering.maths.Vector3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertSame;
+
+public class PlayerMovedCoalescerTests {
+
+    private PlayerMovedCoalescer coalescer;
+
+    @Before
+    public void setup() {
+        coalescer = new PlayerMovedCoalescer();
+    }
+
+    private static EventBox moved(String player, String key, Object value) {
+        return new EventBox("PlayerMoved", player, player, player, Collections.singletonMap(key, value));
+    }
+
+    private static EventBox interaction(String player) {
+        return new EventBox("InteractionPerformed", player, "chest", player, Collections.emptyMap());
+    }
+
+    @Test
+    public void testMovesMergedLatestWins() {
+        Vector3 last = new Vector3(3, 0, 3);
+        Quaternion rotation = Quaternion.makeWithAngleAndAxis(1, 0, -1, 0);
+
+        List<EventBox> batch = new ArrayList<>();
+        batch.add(moved("alice", EventDataKeys.Location, new Vector3(1, 0, 1)));
+        batch.add(moved("alice", EventDataKeys.Quaternion, rotation));
+        batch.add(moved("alice", EventDataKeys.Location, last));
+
+        assertEquals(2, coalescer.coalesce(batch));
+        assertEquals(1, batch.size());
+        assertSame(last, batch.get(0).eventData.get(EventDataKeys.Location));
+        assertSame(rotation, batch.get(0).eventData.get(EventDataKeys.Quaternion));
+    }
+
+    @Test
+    public void testPlayersKeptApart() {
+        List<EventBox> batch = new ArrayList<>();
+        batch.add(moved("alice", EventDataKeys.Location, new Vector3(1, 0, 1)));
+        batch.add(moved("bob", EventDataKeys.Location, new Vector3(2, 0, 2)));
+        batch.add(moved("alice", EventDataKeys.Location, new Vector3(3, 0, 3)));
+        batch.add(moved("bob", EventDataKeys.Location, new Vector3(4, 0, 4)));
+
+        assertEquals(2, coalescer.coalesce(batch));
+        assertEquals(2, batch.size());
+        assertEquals("alice", batch.get(0).from);
+        assertEquals(new Vector3(3, 0, 3), batch.get(0).eventData.get(EventDataKeys.Location));
+        assertEquals("bob", batch.get(1).from);
+        assertEquals(new Vector3(4, 0, 4), batch.get(1).eventData.get(EventDataKeys.Location));
+    }
+
+    @Test
+    public void testOtherEventEndsRun() {
+        List<EventBox> batch = new ArrayList<>();
+        batch.add(moved("alice", EventDataKeys.Location, new Vector3(1, 0, 1)));
+        batch.add(moved("alice", EventDataKeys.Location, new Vector3(2, 0, 2)));
+        batch.add(interaction("alice"));
+        batch.add(moved("alice", EventDataKeys.Location, new Vector3(3, 0, 3)));
+
+        assertEquals(1, coalescer.coalesce(batch));
+        assertEquals(3, batch.size());
+        assertEquals(new Vector3(2, 0, 2), batch.get(0).eventData.get(EventDataKeys.Location));
+        assertEquals("InteractionPerformed", batch.get(1).eventName);
+        assertEquals(new Vector3(3, 0, 3), batch.get(2).eventData.get(EventDataKeys.Location));
+    }
+}